@@ -0,0 +1,360 @@
+package com.stego;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Logger;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * Non-blocking facade over {@link ImageStego} for services that handle many images at once.
+ * Jobs use {@link StegoEngine#getDefault} unless another engine is given.
+ *
+ * Each job is split into stages: image decode and PNG encode run on a small I/O pool, the
+ * mask scan and DCT embedding/extraction run on a CPU pool sized to the machine. Stages of
+ * different jobs overlap, so one image is being read while another is being transformed.
+ *
+ * A job is only started once its decoded size fits in the in-flight memory budget. The size is
+ * taken from the image header before any pixels are decoded; jobs larger than the whole budget
+ * run alone. Raw PPM/PGM/BMP covers are processed through a memory-mapped file and are not
+ * charged against the budget.
+ *
+ * Cancelling a returned future stops the job at the next stage boundary or, while the image
+ * is being processed, at the next 8x8 block.
+ *
+ * Usage:
+ * <pre>
+ * try (AsyncImageStego stego = new AsyncImageStego(2, 8, 512L &lt;&lt; 20)) {
+ *     CompletableFuture&lt;Void&gt; done = stego.encodeAsync("in.png", "out.png", msg, key, ImageStego.CHANNEL_RED);
+ *     ...
+ * }
+ * </pre>
+ */
+public class AsyncImageStego implements AutoCloseable {
+
+    private static final Logger LOG = Logger.getLogger(AsyncImageStego.class.getName());
+
+    // Decoded pixels are held as 4 bytes each (getRGB/setRGB view of the raster)
+    private static final int BYTES_PER_PIXEL = 4;
+
+    private final StegoEngine engine;
+    private final ExecutorService ioExecutor;
+    private final ExecutorService cpuExecutor;
+    private final MemoryBudget budget;
+
+    // Jobs submitted but not yet completed; guarded by this
+    private int running;
+    private boolean closed;
+
+    private static class Holder {
+        static final AsyncImageStego DEFAULT = new AsyncImageStego(
+            StegoConfig.getInt("ASYNC_IO_THREADS", 2),
+            StegoConfig.getInt("ASYNC_CPU_THREADS", 0),
+            StegoConfig.getInt("ASYNC_MAX_INFLIGHT_MB", 0) * (1L << 20));
+    }
+
+    /**
+     * @param ioThreads Threads for image decode and PNG encode
+     * @param cpuThreads Threads for embedding/extraction (0 = all available processors)
+     * @param maxInFlightBytes Upper bound on decoded image memory across running jobs
+     *                         (0 = half of the maximum heap)
+     */
+    public AsyncImageStego(int ioThreads, int cpuThreads, long maxInFlightBytes) {
+        this(StegoEngine.getDefault(), ioThreads, cpuThreads, maxInFlightBytes);
+    }
+
+    /**
+     * @param engine Embedding parameters for every job of this instance
+     */
+    public AsyncImageStego(StegoEngine engine, int ioThreads, int cpuThreads, long maxInFlightBytes) {
+        if (ioThreads < 1) throw new IllegalArgumentException("ioThreads must be >= 1: " + ioThreads);
+        if (cpuThreads < 0) throw new IllegalArgumentException("cpuThreads must be >= 0: " + cpuThreads);
+        if (maxInFlightBytes < 0) throw new IllegalArgumentException("maxInFlightBytes must be >= 0: " + maxInFlightBytes);
+        this.engine = Objects.requireNonNull(engine, "engine");
+        this.ioExecutor = Executors.newFixedThreadPool(ioThreads, threadFactory("stego-io"));
+        this.cpuExecutor = Executors.newFixedThreadPool(
+            cpuThreads == 0 ? Runtime.getRuntime().availableProcessors() : cpuThreads, threadFactory("stego-cpu"));
+        this.budget = new MemoryBudget(maxInFlightBytes == 0 ? Runtime.getRuntime().maxMemory() / 2 : maxInFlightBytes);
+    }
+
+    /**
+     * Shared instance configured from ASYNC_IO_THREADS, ASYNC_CPU_THREADS and ASYNC_MAX_INFLIGHT_MB
+     * in config.properties. Its threads are daemons; it is never closed.
+     */
+    public static AsyncImageStego getDefault() {
+        return Holder.DEFAULT;
+    }
+
+    private static ThreadFactory threadFactory(String prefix) {
+        AtomicInteger n = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + "-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    // --- ENCODE ---
+
+    public CompletableFuture<Void> encodeAsync(String inputImage, String outputImage, String message, String vigenereKey) {
+        return encodeAsync(inputImage, outputImage, message, vigenereKey, ImageStego.CHANNEL_BLUE);
+    }
+
+    public CompletableFuture<Void> encodeAsync(String inputImage, String outputImage, String message, String vigenereKey, String channel) {
+        return encodeAsync(inputImage, outputImage, message, vigenereKey, channel, PngWriter.getDefault());
+    }
+
+    /**
+     * Asynchronous {@link ImageStego#encode(String, String, String, String, String, PngWriter)}.
+     *
+     * @return A future completed once the stego image is on disk. Cancelling it abandons the job;
+     *         a partially written output file may be left behind.
+     */
+    public CompletableFuture<Void> encodeAsync(String inputImage, String outputImage, String message, String vigenereKey,
+                                               String channel, PngWriter pngWriter) {
+        CompletableFuture<Void> result = newJob();
+        BooleanSupplier cancelled = result::isCancelled;
+        File in = new File(inputImage);
+        File out = new File(outputImage);
+
+        if (!in.exists()) {
+            result.completeExceptionally(new RuntimeException("Image not found: " + inputImage));
+            return result;
+        }
+        if (ImageStego.isMappedRoundTrip(in, out)) {
+            CompletableFuture.runAsync(() -> {
+                checkCancelled(cancelled);
+                try {
+                    byte[] data = PayloadHeader.wrap(vigenereKey, message.getBytes(StandardCharsets.UTF_8));
+                    engine.encodeMapped(in, out, data, vigenereKey, channel, cancelled);
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            }, cpuExecutor).whenComplete((v, ex) -> complete(result, null, ex));
+            return result;
+        }
+
+        long bytes;
+        try {
+            bytes = decodedSize(in);
+        } catch (Exception e) {
+            result.completeExceptionally(e);
+            return result;
+        }
+        budget.acquire(bytes, () -> CompletableFuture
+            .supplyAsync(() -> openCover(in, cancelled), ioExecutor)
+            .thenApplyAsync(cover -> {
+                checkCancelled(cancelled);
+                byte[] data = PayloadHeader.wrap(vigenereKey, message.getBytes(StandardCharsets.UTF_8));
+                engine.embedPayload(cover, data, vigenereKey, channel, cancelled);
+                return cover;
+            }, cpuExecutor)
+            .thenAcceptAsync(cover -> {
+                checkCancelled(cancelled);
+                try {
+                    pngWriter.write(cover.raster, out);
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+                LOG.fine(() -> "DCT Stego: Saved to " + outputImage);
+            }, ioExecutor)
+            .whenComplete((v, ex) -> {
+                budget.release(bytes);
+                complete(result, null, ex);
+            }));
+        return result;
+    }
+
+    // --- DECODE ---
+
+    public CompletableFuture<String> decodeAsync(String inputImage, String vigenereKey) {
+        return decodeAsync(inputImage, vigenereKey, ImageStego.CHANNEL_BLUE);
+    }
+
+    /**
+     * Asynchronous {@link ImageStego#decode(String, String, String)}.
+     */
+    public CompletableFuture<String> decodeAsync(String inputImage, String vigenereKey, String channel) {
+        CompletableFuture<String> result = newJob();
+        BooleanSupplier cancelled = result::isCancelled;
+        File in = new File(inputImage);
+
+        if (MappedRaster.isSupported(in.toPath())) {
+            CompletableFuture.supplyAsync(() -> {
+                checkCancelled(cancelled);
+                try (MappedRaster raster = MappedRaster.open(in.toPath(), false)) {
+                    return engine.extract(raster, vigenereKey, channel, cancelled);
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            }, cpuExecutor).whenComplete((msg, ex) -> complete(result, msg, ex));
+            return result;
+        }
+
+        long bytes;
+        try {
+            bytes = decodedSize(in);
+        } catch (Exception e) {
+            result.completeExceptionally(e);
+            return result;
+        }
+        budget.acquire(bytes, () -> CompletableFuture
+            .supplyAsync(() -> read(in, cancelled), ioExecutor)
+            .thenApplyAsync(img -> {
+                checkCancelled(cancelled);
+                return engine.extract(StegoRaster.of(img), vigenereKey, channel, cancelled);
+            }, cpuExecutor)
+            .whenComplete((msg, ex) -> {
+                budget.release(bytes);
+                complete(result, msg, ex);
+            }));
+        return result;
+    }
+
+    // --- HELPERS ---
+
+    private synchronized <T> CompletableFuture<T> newJob() {
+        if (closed) throw new RejectedExecutionException("AsyncImageStego is closed");
+        running++;
+        CompletableFuture<T> result = new CompletableFuture<>();
+        result.whenComplete((v, ex) -> jobDone());
+        return result;
+    }
+
+    private synchronized void jobDone() {
+        if (--running == 0) notifyAll();
+    }
+
+    private static BufferedImage read(File in, BooleanSupplier cancelled) {
+        checkCancelled(cancelled);
+        try {
+            return ImageStego.readImage(in);
+        } catch (Exception e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private static ImageStego.Cover openCover(File in, BooleanSupplier cancelled) {
+        checkCancelled(cancelled);
+        try {
+            return ImageStego.openCover(in);
+        } catch (Exception e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private static void checkCancelled(BooleanSupplier cancelled) {
+        if (cancelled.getAsBoolean()) throw new CancellationException();
+    }
+
+    private static <T> void complete(CompletableFuture<T> result, T value, Throwable ex) {
+        if (ex == null) {
+            result.complete(value);
+            return;
+        }
+        Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+        result.completeExceptionally(cause);
+    }
+
+    /**
+     * Decoded size of an image, read from its header without decoding any pixels.
+     */
+    static long decodedSize(File f) throws Exception {
+        try (ImageInputStream iis = ImageIO.createImageInputStream(f)) {
+            if (iis == null) throw new RuntimeException("Image not found: " + f);
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+            if (!readers.hasNext()) throw new RuntimeException("Unsupported image format: " + f);
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(iis, true, true);
+                return (long) reader.getWidth(0) * reader.getHeight(0) * BYTES_PER_PIXEL;
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Stops accepting jobs, waits for submitted ones (including those still waiting for memory)
+     * to finish, then shuts the pools down. If the calling thread is interrupted, returns early
+     * with its interrupt status set; jobs already submitted still run to completion.
+     */
+    @Override
+    public void close() {
+        try {
+            synchronized (this) {
+                closed = true;
+                while (running > 0) wait();
+            }
+            ioExecutor.shutdown();
+            cpuExecutor.shutdown();
+            ioExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            cpuExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            ioExecutor.shutdown();
+            cpuExecutor.shutdown();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * FIFO admission control on decoded image bytes. Waiting jobs are queued rather than
+     * blocking a pool thread, so a full budget can never starve the stages that release it.
+     */
+    private static final class MemoryBudget {
+        private final long limit;
+        private long inUse;
+        private final ArrayDeque<Runnable> waiting = new ArrayDeque<>();
+        private final ArrayDeque<Long> waitingBytes = new ArrayDeque<>();
+
+        MemoryBudget(long limit) {
+            this.limit = limit;
+        }
+
+        void acquire(long bytes, Runnable job) {
+            long charge = Math.min(bytes, limit);
+            synchronized (this) {
+                if (!waiting.isEmpty() || !fits(charge)) {
+                    waiting.add(job);
+                    waitingBytes.add(charge);
+                    return;
+                }
+                inUse += charge;
+            }
+            job.run();
+        }
+
+        void release(long bytes) {
+            long charge = Math.min(bytes, limit);
+            ArrayDeque<Runnable> ready = new ArrayDeque<>();
+            synchronized (this) {
+                inUse -= charge;
+                while (!waiting.isEmpty() && fits(waitingBytes.peek())) {
+                    inUse += waitingBytes.poll();
+                    ready.add(waiting.poll());
+                }
+            }
+            ready.forEach(Runnable::run);
+        }
+
+        // A job bigger than the whole budget is admitted once nothing else is running
+        private boolean fits(long charge) {
+            return inUse == 0 || inUse + charge <= limit;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.stego;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * {@link StegoRaster} over a heap image. Alpha is left untouched when a channel is rewritten.
+ */
+class BufferedImageRaster implements StegoRaster {
+
+    private final BufferedImage img;
+
+    BufferedImageRaster(BufferedImage img) {
+        this.img = img;
+    }
+
+    BufferedImage image() {
+        return img;
+    }
+
+    @Override
+    public int getWidth() {
+        return img.getWidth();
+    }
+
+    @Override
+    public int getHeight() {
+        return img.getHeight();
+    }
+
+    @Override
+    public int getSample(int x, int y, int channel) {
+        return (img.getRGB(x, y) >> shift(channel)) & 0xFF;
+    }
+
+    /**
+     * Straight from the raster for the standard RGB layouts, whose bands are R, G, B (then A)
+     * in sRGB, as {@code getRGB} would return them; through {@code getRGB} for anything else.
+     */
+    @Override
+    public void getRow(int y, int channel, int[] out) {
+        switch (img.getType()) {
+            case BufferedImage.TYPE_INT_RGB:
+            case BufferedImage.TYPE_INT_ARGB:
+            case BufferedImage.TYPE_INT_BGR:
+            case BufferedImage.TYPE_3BYTE_BGR:
+            case BufferedImage.TYPE_4BYTE_ABGR:
+                img.getRaster().getSamples(0, y, out.length, 1, channel, out);
+                break;
+            default:
+                StegoRaster.super.getRow(y, channel, out);
+        }
+    }
+
+    @Override
+    public void setSample(int x, int y, int channel, int value) {
+        int shift = shift(channel);
+        int rgb = img.getRGB(x, y);
+        img.setRGB(x, y, (rgb & ~(0xFF << shift)) | ((value & 0xFF) << shift));
+    }
+
+    private static int shift(int channel) {
+        return 16 - 8 * channel;
+    }
+}
@@ -0,0 +1,179 @@
+package com.stego;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Whole-message AES-GCM ciphertext, framed as a single word of text so it travels through the
+ * same split/embed/extract path as the per-word output of {@link FileEncryptor}.
+ *
+ * Format: {@code '@'} followed by unpadded Base64 of
+ * {@code [version:1][codec:1][nonce:12][ciphertext][tag:16]}. The two header bytes are
+ * authenticated as associated data. The codec byte says how the UTF-8 plaintext was compressed
+ * before encryption: 0 none, 1 raw Deflate, 2 {@link LzCodec}. The nonce is random per message, so the AES key may be
+ * reused. A word that merely looks like an envelope fails its tag and is treated as per-word
+ * ciphertext by {@link FileDecryptor}.
+ *
+ * The JDK runs AES/GCM on the AES-NI and carry-less multiply intrinsics where the CPU has them.
+ */
+final class CipherEnvelope {
+
+    static final char PREFIX = '@';
+
+    private static final byte VERSION = 1;
+    private static final byte CODEC_NONE = 0;
+    private static final byte CODEC_DEFLATE = 1;
+    private static final byte CODEC_LZ = 2;
+    private static final int HEADER_BYTES = 2;
+    private static final int NONCE_BYTES = 12;
+    private static final int TAG_BITS = 128;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private CipherEnvelope() {
+    }
+
+    /**
+     * @param aesKey Base64 AES key, as produced by {@link FileEncryptor#generateAESKey}
+     */
+    static String seal(String plaintext, String aesKey) throws GeneralSecurityException {
+        return seal(plaintext, aesKey, FileEncryptor.Compression.NONE, 0);
+    }
+
+    /**
+     * Compresses the plaintext before sealing it, unless that would not make it smaller.
+     *
+     * @param level Deflate level 1 (fastest) to 9 (smallest); ignored by the other codecs
+     */
+    static String seal(String plaintext, String aesKey, FileEncryptor.Compression compression, int level) throws GeneralSecurityException {
+        byte[] message = plaintext.getBytes(StandardCharsets.UTF_8);
+        byte codec = CODEC_NONE;
+        if (compression != FileEncryptor.Compression.NONE) {
+            byte[] packed = compression == FileEncryptor.Compression.DEFLATE ? deflate(message, level) : LzCodec.compress(message);
+            if (packed.length < message.length) {
+                message = packed;
+                codec = compression == FileEncryptor.Compression.DEFLATE ? CODEC_DEFLATE : CODEC_LZ;
+            }
+        }
+
+        byte[] header = {VERSION, codec};
+        byte[] nonce = new byte[NONCE_BYTES];
+        RANDOM.nextBytes(nonce);
+        Cipher cipher = cipher(Cipher.ENCRYPT_MODE, aesKey, header, nonce);
+
+        ByteBuffer frame = ByteBuffer.allocate(HEADER_BYTES + NONCE_BYTES + cipher.getOutputSize(message.length));
+        frame.put(header).put(nonce);
+        cipher.doFinal(ByteBuffer.wrap(message), frame);
+        return PREFIX + Base64.getEncoder().withoutPadding().encodeToString(frame.array());
+    }
+
+    private static byte[] deflate(byte[] message, int level) {
+        // Raw Deflate: the GCM tag already covers integrity, so no zlib header or Adler-32
+        Deflater deflater = new Deflater(level, true);
+        try {
+            deflater.setInput(message);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(message.length / 2 + 16);
+            byte[] buf = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buf, 0, deflater.deflate(buf));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Whether a ciphertext word has the envelope prefix; only {@link #open} can tell for sure.
+     */
+    static boolean isEnvelope(String word) {
+        return word.length() > 1 && word.charAt(0) == PREFIX;
+    }
+
+    /**
+     * @throws GeneralSecurityException if the word is not an envelope sealed with this key,
+     *         or was modified
+     * @throws IOException if an authentic envelope holds data its codec cannot decompress
+     */
+    static String open(String envelope, String aesKey) throws GeneralSecurityException, IOException {
+        StringBuilder message = new StringBuilder();
+        open(envelope, aesKey, message);
+        return message.toString();
+    }
+
+    /**
+     * Opens an envelope, decompressing the plaintext into {@code out} as it is decoded rather
+     * than inflating it into memory first. Nothing is appended unless the tag verifies.
+     *
+     * @throws GeneralSecurityException if the word is not an envelope sealed with this key,
+     *         or was modified
+     * @throws IOException if an authentic envelope holds data its codec cannot decompress
+     */
+    static void open(String envelope, String aesKey, Appendable out) throws GeneralSecurityException, IOException {
+        byte[] frame;
+        try {
+            frame = Base64.getDecoder().decode(envelope.substring(1));
+        } catch (IllegalArgumentException e) {
+            throw new GeneralSecurityException("Not a cipher envelope", e);
+        }
+        if (frame.length < HEADER_BYTES + NONCE_BYTES + TAG_BITS / 8) {
+            throw new GeneralSecurityException("Cipher envelope too short: " + frame.length + " bytes");
+        }
+        if (frame[0] != VERSION) {
+            throw new GeneralSecurityException("Unsupported cipher envelope version: " + frame[0]);
+        }
+        byte[] header = {frame[0], frame[1]};
+        byte[] nonce = new byte[NONCE_BYTES];
+        System.arraycopy(frame, HEADER_BYTES, nonce, 0, NONCE_BYTES);
+        Cipher cipher = cipher(Cipher.DECRYPT_MODE, aesKey, header, nonce);
+        int offset = HEADER_BYTES + NONCE_BYTES;
+        InputStream message = new ByteArrayInputStream(cipher.doFinal(frame, offset, frame.length - offset));
+
+        Inflater inflater = null;
+        try {
+            switch (header[1]) {
+                case CODEC_NONE:
+                    break;
+                case CODEC_DEFLATE:
+                    inflater = new Inflater(true);
+                    message = new InflaterInputStream(message, inflater);
+                    break;
+                case CODEC_LZ:
+                    message = LzCodec.decompress(message);
+                    break;
+                default:
+                    throw new IOException("Unsupported cipher envelope codec: " + header[1]);
+            }
+            Reader reader = new InputStreamReader(message, StandardCharsets.UTF_8);
+            char[] buf = new char[8192];
+            for (int n; (n = reader.read(buf)) >= 0; ) {
+                out.append(new String(buf, 0, n));
+            }
+        } finally {
+            if (inflater != null) inflater.end();
+        }
+    }
+
+    private static Cipher cipher(int mode, String aesKey, byte[] header, byte[] nonce) throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(mode, new SecretKeySpec(Base64.getDecoder().decode(aesKey), "AES"), new GCMParameterSpec(TAG_BITS, nonce));
+        cipher.updateAAD(header);
+        return cipher;
+    }
+}
@@ -0,0 +1,134 @@
+package com.stego;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * How many DCT coefficients of each carrier block a {@link StegoEngine} embeds into: one bit per
+ * coefficient, so one to four payload bytes per block. A payload then needs proportionally fewer
+ * carrier blocks, each transformed once forward and once back, and an image holds
+ * proportionally more.
+ *
+ * {@link #BITS_8} uses exactly the engine's carrier positions ({@code COEFF_X}/{@code COEFF_Y}
+ * by default), as every image from before the profiles existed. The larger profiles keep those
+ * and add mid-frequency positions, nearest the anti-diagonal {@code x + y = 7} first, which
+ * pixel rounding disturbs no more than the others and which are less visible than the low
+ * frequencies. Only the base positions are left out of the {@link TextureMask#DCT_VARIANCE}
+ * score, so every profile selects the same carrier blocks for a key.
+ *
+ * Measured on a 1920x1200 photograph, a 5,000-byte message in the blue channel, four keys, with
+ * the default blue mask channel. Bit errors are over every embedded bit, read back from a
+ * lossless copy and after Gaussian noise on the blue channel alone, with a red mask channel so
+ * the carriers stay in sync:
+ * <pre>
+ *   profile   blocks   capacity   embed ms   extract ms   lossless   noise 1.0   noise 2.0
+ *   BITS_8      5011       5999     83-142       64-102   0          1.3e-5      8.1e-5
+ *   BITS_16     2511      11998      40-41        29-40   0          5.0e-5      1.8e-4
+ *   BITS_24     1678      17997      22-26        14-19   0          1.2e-4      4.6e-4
+ *   BITS_32     1261      23996      16-17        10-13   0          1.8e-4      8.2e-4
+ * </pre>
+ * The blocks include the 11 header blocks of every profile. PSNR is 42.8 dB for every profile:
+ * a message changes as many coefficients whatever block they are in. Noise in the mask channel,
+ * or JPEG recompression, moves blocks across the texture threshold and desynchronizes the
+ * carriers, leaving about half the bits wrong with any profile.
+ *
+ * The profile is recorded in the payload header as its {@link #id}. The header is written one
+ * byte per block, in the base positions, whatever the profile, so a reader learns the profile
+ * from the header and needs only one header read per texture mask.
+ */
+public enum CoefficientProfile {
+
+    BITS_8(0, 8),
+    BITS_16(1, 16),
+    BITS_24(2, 24),
+    BITS_32(3, 32);
+
+    private static final Logger LOG = Logger.getLogger(CoefficientProfile.class.getName());
+
+    private static final int N = 8;
+    // Mid-frequency band the added positions are taken from
+    private static final int BAND_LOW = 4;
+    private static final int BAND_HIGH = 10;
+
+    private final int id;
+    private final int bits;
+
+    CoefficientProfile(int id, int bits) {
+        this.id = id;
+        this.bits = bits;
+    }
+
+    /**
+     * @return The 2-bit code of this profile in the payload header
+     */
+    public int id() {
+        return id;
+    }
+
+    /**
+     * @return Coefficients, and payload bits, per carrier block
+     */
+    public int bits() {
+        return bits;
+    }
+
+    /**
+     * @return Payload bytes per carrier block
+     */
+    public int bytesPerBlock() {
+        return bits / 8;
+    }
+
+    static CoefficientProfile fromId(int id) {
+        for (CoefficientProfile profile : values()) {
+            if (profile.id == id) return profile;
+        }
+        throw new IllegalArgumentException("Unknown coefficient profile id: " + id);
+    }
+
+    // COEFFICIENT_PROFILE in config.properties: default profile of StegoEngine.builder()
+    static CoefficientProfile configured() {
+        String value = StegoConfig.get("COEFFICIENT_PROFILE", BITS_8.name());
+        try {
+            return valueOf(value.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            LOG.warning("Invalid value for COEFFICIENT_PROFILE: " + value + ", using " + BITS_8);
+            return BITS_8;
+        }
+    }
+
+    /**
+     * Carrier positions of this profile: the base positions, then mid-frequency ones in order.
+     *
+     * @param x Row of each base position, as {@link StegoEngine.Builder#coefficients}
+     * @param y Column of each base position
+     * @return {@code {x[], y[]}} of {@link #bits} positions, bit {@code bits - 1} first
+     */
+    int[][] positions(int[] x, int[] y) {
+        boolean[] taken = new boolean[N * N];
+        List<int[]> positions = new ArrayList<>(bits);
+        for (int k = 0; k < x.length; k++) {
+            positions.add(new int[] {x[k], y[k]});
+            taken[x[k] * N + y[k]] = true;
+        }
+        List<int[]> band = new ArrayList<>();
+        for (int u = 0; u < N; u++) {
+            for (int v = 0; v < N; v++) {
+                if (!taken[u * N + v] && u + v >= BAND_LOW && u + v <= BAND_HIGH) band.add(new int[] {u, v});
+            }
+        }
+        band.sort(Comparator.<int[]>comparingInt(p -> Math.abs(p[0] + p[1] - (N - 1)))
+            .thenComparingInt(p -> Math.abs(p[0] - p[1]))
+            .thenComparingInt(p -> p[0]));
+        for (int i = 0; positions.size() < bits; i++) positions.add(band.get(i));
+
+        int[][] xy = new int[2][bits];
+        for (int k = 0; k < bits; k++) {
+            xy[0][k] = positions.get(k)[0];
+            xy[1][k] = positions.get(k)[1];
+        }
+        return xy;
+    }
+}
@@ -0,0 +1,202 @@
+package com.stego;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.logging.Logger;
+
+/**
+ * LRU cache of decoded cover images, keyed by the SHA-256 of the file contents, for workflows
+ * that embed many messages into the same few template covers.
+ *
+ * Besides the pristine pixels, each entry keeps what embedding derives from them: the texture
+ * mask verdict of every block examined so far and the forward DCT of every payload block
+ * embedded so far, per channel and per {@link StegoEngine} configuration. A repeat embed into the same cover then skips the PNG decode,
+ * the mask transforms and the first forward DCT of each carrier. Entries are evicted least
+ * recently used first once their total size exceeds COVER_CACHE_MB (0 disables the cache).
+ * Hits, misses and evictions are counted in {@link StegoMetrics}.
+ */
+final class CoverCache {
+
+    private static final Logger LOG = Logger.getLogger(CoverCache.class.getName());
+
+    private static final int N = 8;
+    private static final int COEFF_BYTES = N * N * Double.BYTES;
+
+    private static final CoverCache DEFAULT = new CoverCache(StegoConfig.getInt("COVER_CACHE_MB", 128) * 1024L * 1024L);
+
+    private final long maxBytes;
+    // Access-ordered: iteration starts at the least recently used entry
+    private final LinkedHashMap<ByteBuffer, Template> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    CoverCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    static CoverCache getDefault() {
+        return DEFAULT;
+    }
+
+    boolean isEnabled() {
+        return maxBytes > 0;
+    }
+
+    /**
+     * Returns the cached cover for this file's contents, decoding it on a miss.
+     */
+    Template get(File f) throws Exception {
+        ByteBuffer key = ByteBuffer.wrap(digest(f));
+        synchronized (this) {
+            Template cached = entries.get(key);
+            if (cached != null) {
+                StegoMetrics.coverCache(true);
+                return cached;
+            }
+        }
+        StegoMetrics.coverCache(false);
+        // Decoded outside the lock; two threads missing on the same cover both decode it once
+        Template loaded = new Template(ImageStego.readCover(f));
+        synchronized (this) {
+            Template raced = entries.putIfAbsent(key, loaded);
+            trim();
+            return raced != null ? raced : loaded;
+        }
+    }
+
+    /**
+     * Evicts least recently used entries until the cache fits its budget again. Called after
+     * each embed, since the coefficient planes of an entry grow as it is used.
+     */
+    synchronized void trim() {
+        long total = 0;
+        for (Template t : entries.values()) total += t.weight();
+        Iterator<Map.Entry<ByteBuffer, Template>> it = entries.entrySet().iterator();
+        // The most recently used entry is kept even if it alone exceeds the budget
+        while (total > maxBytes && entries.size() > 1 && it.hasNext()) {
+            Template evicted = it.next().getValue();
+            it.remove();
+            total -= evicted.weight();
+            StegoMetrics.coverCacheEvicted();
+            LOG.fine(() -> "Evicted cached cover of " + evicted.weight() + " bytes");
+        }
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    private static byte[] digest(File f) throws Exception {
+        if (!f.exists()) throw new RuntimeException("Image not found: " + f.getPath());
+        MessageDigest sha = MessageDigest.getInstance("SHA-256");
+        byte[] buf = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(f.toPath())) {
+            for (int n; (n = in.read(buf)) > 0; ) sha.update(buf, 0, n);
+        }
+        return sha.digest();
+    }
+
+    /**
+     * A pristine cover and the per-block data derived from it. The pixels are never modified:
+     * embedding works on a {@link #copy}. The derived data depends on the engine parameters,
+     * so each {@link StegoEngine} configuration gets its own {@link Planes}.
+     */
+    static final class Template {
+        final StegoRaster pixels;
+        private final ConcurrentHashMap<StegoEngine, Planes> planes = new ConcurrentHashMap<>();
+
+        Template(StegoRaster pixels) {
+            this.pixels = pixels;
+        }
+
+        Planes planes(StegoEngine engine) {
+            return planes.computeIfAbsent(engine, e -> new Planes(pixels.getWidth() / N, pixels.getHeight() / N));
+        }
+
+        /**
+         * A private, writable copy of the pristine pixels.
+         */
+        StegoRaster copy() {
+            if (pixels instanceof OffHeapRaster) {
+                return ((OffHeapRaster) pixels).copy();
+            }
+            BufferedImage img = ((BufferedImageRaster) pixels).image();
+            return StegoRaster.of(new BufferedImage(img.getColorModel(), img.copyData(null), img.isAlphaPremultiplied(), null));
+        }
+
+        long weight() {
+            long pixelBytes = (long) pixels.getWidth() * pixels.getHeight()
+                * (pixels instanceof OffHeapRaster ? ((OffHeapRaster) pixels).getBands() : 4);
+            for (Planes p : planes.values()) pixelBytes += p.weight();
+            return pixelBytes;
+        }
+    }
+
+    /**
+     * Mask verdicts and forward transforms of one cover under one engine configuration. Filled
+     * lazily by {@link StegoEngine} and possibly concurrently; every value stored for a block is
+     * the same whoever computes it.
+     */
+    static final class Planes {
+        static final byte UNKNOWN = 0;
+        static final byte SMOOTH = 1;
+        static final byte TEXTURED = 2;
+
+        private final int blocksX;
+        private final byte[] mask;
+        // Indexed by channel * blocks + block
+        private final AtomicReferenceArray<double[]> coefficients;
+        private final AtomicLong coefficientBlocks = new AtomicLong();
+
+        Planes(int blocksX, int blocksY) {
+            this.blocksX = blocksX;
+            int blocks = blocksX * blocksY;
+            this.mask = new byte[blocks];
+            this.coefficients = new AtomicReferenceArray<>(3 * blocks);
+        }
+
+        private int block(int x, int y) {
+            return (y / N) * blocksX + x / N;
+        }
+
+        private int coefficientIndex(int channel, int x, int y) {
+            return channel * mask.length + block(x, y);
+        }
+
+        /**
+         * @return TEXTURED, SMOOTH or UNKNOWN for the block at pixel (x, y)
+         */
+        byte mask(int x, int y) {
+            return mask[block(x, y)];
+        }
+
+        void setMask(int x, int y, boolean textured) {
+            mask[block(x, y)] = textured ? TEXTURED : SMOOTH;
+        }
+
+        /**
+         * @return The cached forward transform of a block in one channel, or null
+         */
+        double[] coefficients(int channel, int x, int y) {
+            return coefficients.get(coefficientIndex(channel, x, y));
+        }
+
+        void setCoefficients(int channel, int x, int y, double[] coeffs) {
+            if (coefficients.compareAndSet(coefficientIndex(channel, x, y), null, coeffs)) {
+                coefficientBlocks.incrementAndGet();
+            }
+        }
+
+        long weight() {
+            return mask.length + 3L * mask.length * Integer.BYTES + coefficientBlocks.get() * COEFF_BYTES;
+        }
+    }
+}
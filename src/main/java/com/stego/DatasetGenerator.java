@@ -1,9 +1,59 @@
 package com.stego;
 
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.imageio.ImageIO;
 
+/**
+ * Builds cover/stego pairs for steganalysis datasets.
+ *
+ * Without arguments, processes RAW_DIR into COVER_DIR and STEGO_DIR on this machine, naming the
+ * pairs img_N / stego_N in listing order. Datasets that need many machines are built by any
+ * number of {@code work} processes sharing a queue directory, then merged once:
+ * <pre>
+ *   DatasetGenerator work  --source=DIR --output=DIR [--queue=DIR] [--node=NAME] [--threads=N]
+ *                          [--lease-seconds=600] [--key=DEFAULT]
+ *   DatasetGenerator merge --source=DIR --output=DIR [--queue=DIR]
+ *   DatasetGenerator features --output=DIR [--threads=N] [--channel=BLUE]
+ * </pre>
+ * Every process sees the same source and output directories (a network file system across
+ * nodes); the queue defaults to {@code <output>/queue}. Work items are the source images, claimed
+ * through a {@link LeaseQueue}, so a process that dies leaves its items to the others once their
+ * leases expire. A pair is named after the SHA-256 of the source bytes
+ * ({@code cover/<hash>.png}, {@code stego/<hash>.png}) and its message is derived from the same
+ * hash, so an item done twice rewrites identical files and duplicate sources collapse into one
+ * pair. Each process appends its pairs to {@code manifests/<node>.tsv} and its failures to
+ * {@code manifests/<node>.failed.tsv}; {@code merge} combines them into {@code manifest.tsv}.
+ * {@code features} then computes the {@link FeatureExtractor} features of every image in the
+ * manifest, on all cores, into the columnar {@link FeatureFile} {@code features.bin}, so training
+ * runs do not decode and transform the images again every epoch.
+ */
 public class DatasetGenerator {
 
     // --- CONFIGURATION ---
@@ -13,9 +63,45 @@ public class DatasetGenerator {
     static final String COVER_DIR = OUTPUT_BASE + "\\cover";
     static final String STEGO_DIR = OUTPUT_BASE + "\\stego";
 
+    static final String MANIFEST = "manifest.tsv";
+    static final String FEATURES = "features.bin";
+    private static final String MANIFEST_HEADER = "# content\tsource\tcover\tstego\tmessage";
+    private static final String FAILED_SUFFIX = ".failed.tsv";
+
     public static void main(String[] args) {
+        if (args.length == 0) {
+            generateLocal();
+            return;
+        }
+        try {
+            Options options = Options.parse(Arrays.copyOfRange(args, 1, args.length));
+            switch (args[0]) {
+                case "work":
+                    System.exit(work(options, System.out));
+                    break;
+                case "merge":
+                    System.exit(merge(options, System.out));
+                    break;
+                case "features":
+                    System.exit(features(options, System.out));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown command: " + args[0]);
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: DatasetGenerator [work|merge|features] --source=DIR --output=DIR [--queue=DIR] [--node=NAME]"
+                + " [--threads=N] [--lease-seconds=N] [--key=KEY] [--channel=BLUE]");
+            System.exit(2);
+        } catch (Exception e) {
+            e.printStackTrace();
+            System.exit(2);
+        }
+    }
+
+    private static void generateLocal() {
         File folder = new File(RAW_DIR);
-        
+
         if (!folder.exists()) {
             System.err.println("❌ ERROR: Source folder not found: " + RAW_DIR);
             return;
@@ -31,10 +117,13 @@ public class DatasetGenerator {
         if (listOfFiles != null) {
             for (File file : listOfFiles) {
                 String name = file.getName().toLowerCase();
-                if (file.isFile() && (name.endsWith(".png") || name.endsWith(".jpg"))) {
+                if (file.isFile() && isImage(name)) {
                     try {
-                        String cleanName = "img_" + count + ".png";
-                        String stegoName = "stego_" + count + ".png";
+                        // JPEG covers stay JPEG: embed in the quantized coefficients, no pixel round-trip
+                        boolean jpeg = name.endsWith(".jpg") && JpegStego.isJpeg(file);
+                        String ext = jpeg ? ".jpg" : ".png";
+                        String cleanName = "img_" + count + ext;
+                        String stegoName = "stego_" + count + ext;
 
                         File coverOut = new File(COVER_DIR, cleanName);
                         File stegoOut = new File(STEGO_DIR, stegoName);
@@ -47,8 +136,17 @@ public class DatasetGenerator {
                         String secretMsg = "AI_" + count;
                         // Use default key for dataset generation
                         String defaultKey = "DEFAULT";
-                        
-                        ImageStego.encode(coverOut.getPath(), stegoOut.getPath(), secretMsg, defaultKey);
+
+                        if (!jpeg || !encodeJpeg(coverOut.getPath(), stegoOut.getPath(), secretMsg, defaultKey)) {
+                            if (jpeg) {
+                                // Progressive/12-bit JPEG: fall back to the pixel-domain path
+                                coverOut.delete();
+                                coverOut = new File(COVER_DIR, "img_" + count + ".png");
+                                stegoOut = new File(STEGO_DIR, "stego_" + count + ".png");
+                                ImageIO.write(ImageIO.read(file), "png", coverOut);
+                            }
+                            ImageStego.encode(coverOut.getPath(), stegoOut.getPath(), secretMsg, defaultKey);
+                        }
 
                         if (count % 50 == 0) System.out.println("Processed " + count + " pairs...");
                         count++;
@@ -62,4 +160,390 @@ public class DatasetGenerator {
         System.out.println("\n✅ SUCCESS! Dataset Created.");
         System.out.println("Total Pairs: " + count);
     }
-}
\ No newline at end of file
+
+    private static boolean isImage(String lowerCaseName) {
+        return lowerCaseName.endsWith(".png") || lowerCaseName.endsWith(".jpg");
+    }
+
+    // --- DISTRIBUTED MODE ---
+
+    /**
+     * Settings of the {@code work}, {@code merge} and {@code features} commands, from
+     * {@code --name=value} arguments.
+     */
+    static final class Options {
+        Path source;
+        Path output;
+        Path queue;
+        String node = defaultNode();
+        int threads = Runtime.getRuntime().availableProcessors();
+        Duration lease = Duration.ofMinutes(10);
+        String key = "DEFAULT";
+        String channel = ImageStego.CHANNEL_BLUE;
+
+        static Options parse(String[] args) {
+            Options o = new Options();
+            for (String arg : args) {
+                int eq = arg.indexOf('=');
+                if (!arg.startsWith("--") || eq < 0) throw new IllegalArgumentException("Expected --name=value: " + arg);
+                String value = arg.substring(eq + 1);
+                switch (arg.substring(2, eq)) {
+                    case "source": o.source = Path.of(value); break;
+                    case "output": o.output = Path.of(value); break;
+                    case "queue": o.queue = Path.of(value); break;
+                    case "node": o.node = value; break;
+                    case "threads": o.threads = Math.max(1, Integer.parseInt(value)); break;
+                    case "lease-seconds": o.lease = Duration.ofSeconds(Math.max(1, Long.parseLong(value))); break;
+                    case "key": o.key = value; break;
+                    case "channel": o.channel = value; break;
+                    default: throw new IllegalArgumentException("Unknown option: " + arg);
+                }
+            }
+            if (o.output == null) throw new IllegalArgumentException("--output is required");
+            if (o.queue == null) o.queue = o.output.resolve("queue");
+            return o;
+        }
+
+        Path source() {
+            if (source == null) throw new IllegalArgumentException("--source is required");
+            return source;
+        }
+
+        // host-pid, which tells processes apart across a cluster and on one machine
+        private static String defaultNode() {
+            String host;
+            try {
+                host = InetAddress.getLocalHost().getHostName();
+            } catch (IOException e) {
+                host = "node";
+            }
+            return (host + "-" + ProcessHandle.current().pid()).replaceAll("[^A-Za-z0-9._-]", "_");
+        }
+    }
+
+    /**
+     * Source images, sorted, so every process derives the same items.
+     *
+     * @return Item id (hash of the file name) to source file
+     */
+    static Map<String, Path> items(Path source) throws IOException {
+        Map<String, Path> items = new TreeMap<>();
+        try (DirectoryStream<Path> dir = Files.newDirectoryStream(source)) {
+            for (Path p : dir) {
+                String name = p.getFileName().toString();
+                if (Files.isRegularFile(p) && isImage(name.toLowerCase())) {
+                    items.put(sha256(name.getBytes(StandardCharsets.UTF_8)).substring(0, 24), p);
+                }
+            }
+        }
+        return items;
+    }
+
+    /**
+     * Claims and processes items until every item is finished, waiting for items other processes
+     * hold in case their leases expire.
+     *
+     * @return 0 if every item this process claimed succeeded, 1 otherwise
+     */
+    static int work(Options o, PrintStream out) throws Exception {
+        Map<String, Path> items = items(o.source());
+        List<String> ids = new ArrayList<>(items.keySet());
+        LeaseQueue queue = new LeaseQueue(o.queue, o.node, o.lease);
+        Path coverDir = Files.createDirectories(o.output.resolve("cover"));
+        Path stegoDir = Files.createDirectories(o.output.resolve("stego"));
+        Path manifests = Files.createDirectories(o.output.resolve("manifests"));
+        out.println("--- " + o.node + ": " + ids.size() + " items, " + o.threads + " threads, queue " + o.queue + " ---");
+
+        AtomicInteger processed = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        try (BufferedWriter pairs = Files.newBufferedWriter(manifests.resolve(o.node + ".tsv"), StandardCharsets.UTF_8,
+                 StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+             BufferedWriter failures = Files.newBufferedWriter(manifests.resolve(o.node + FAILED_SUFFIX), StandardCharsets.UTF_8,
+                 StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            List<Thread> threads = new ArrayList<>();
+            List<Exception> errors = Collections.synchronizedList(new ArrayList<>());
+            for (int t = 0; t < o.threads; t++) {
+                // Processes and threads start at different items, so they rarely race for a lease
+                int start = Math.floorMod(o.node.hashCode() + t * Math.max(1, ids.size() / o.threads), Math.max(1, ids.size()));
+                Thread thread = new Thread(() -> {
+                    try {
+                        workLoop(o, queue, ids, start, items, coverDir, stegoDir, pairs, failures, processed, failed, out);
+                    } catch (Exception e) {
+                        errors.add(e);
+                    }
+                }, "dataset-" + t);
+                thread.start();
+                threads.add(thread);
+            }
+            for (Thread thread : threads) thread.join();
+            if (!errors.isEmpty()) throw errors.get(0);
+        }
+        out.println(o.node + ": " + processed.get() + " pairs written, " + failed.get() + " items failed");
+        return failed.get() == 0 ? 0 : 1;
+    }
+
+    private static void workLoop(Options o, LeaseQueue queue, List<String> ids, int start, Map<String, Path> items,
+                                 Path coverDir, Path stegoDir, BufferedWriter pairs, BufferedWriter failures,
+                                 AtomicInteger processed, AtomicInteger failed, PrintStream out) throws Exception {
+        long poll = Math.min(5000, Math.max(50, o.lease.toMillis() / 4));
+        while (true) {
+            Set<String> done = queue.doneItems();
+            boolean remaining = false;
+            boolean claimed = false;
+            for (int i = 0; i < ids.size(); i++) {
+                String id = ids.get((start + i) % ids.size());
+                if (done.contains(id)) continue;
+                remaining = true;
+                LeaseQueue.Lease lease = queue.tryClaim(id);
+                if (lease == null) continue;
+                claimed = true;
+                Path source = items.get(id);
+                try {
+                    String line = writePair(source, coverDir, stegoDir, o);
+                    append(pairs, line);
+                    queue.complete(lease, "OK");
+                    int n = processed.incrementAndGet();
+                    if (n % 50 == 0) out.println(o.node + ": processed " + n + " pairs...");
+                } catch (Exception e) {
+                    append(failures, source.getFileName() + "\t" + e);
+                    queue.complete(lease, "FAILED " + e);
+                    failed.incrementAndGet();
+                }
+            }
+            if (!remaining) return;
+            // Everything left is leased by others: wait in case a lease expires
+            if (!claimed) Thread.sleep(poll);
+        }
+    }
+
+    /**
+     * Writes the cover and stego image of one source under content-derived names, each through
+     * a temporary file and an atomic rename, so a repeated or concurrent run leaves whole files.
+     *
+     * @return The manifest line of the pair
+     */
+    static String writePair(Path source, Path coverDir, Path stegoDir, Options o) throws Exception {
+        byte[] content = Files.readAllBytes(source);
+        String hash = sha256(content);
+        String message = "AI_" + hash.substring(0, 8);
+        String name = source.getFileName().toString();
+
+        // JPEG covers stay JPEG: embed in the quantized coefficients, no pixel round-trip
+        boolean jpeg = name.toLowerCase().endsWith(".jpg") && JpegStego.isJpeg(source.toFile());
+        if (jpeg) {
+            Path cover = coverDir.resolve(hash + ".jpg");
+            Path stego = stegoDir.resolve(hash + ".jpg");
+            Path tmp = temp(coverDir, hash, o.node, ".jpg");
+            Files.write(tmp, content);
+            LeaseQueue.move(tmp, cover);
+            Path stegoTmp = temp(stegoDir, hash, o.node, ".jpg");
+            try {
+                if (encodeJpeg(cover.toString(), stegoTmp.toString(), message, o.key)) {
+                    LeaseQueue.move(stegoTmp, stego);
+                    return manifestLine(hash, name, o.output, cover, stego, message);
+                }
+                // Progressive/12-bit JPEG: fall back to the pixel-domain path
+                Files.deleteIfExists(cover);
+            } finally {
+                Files.deleteIfExists(stegoTmp);
+            }
+        }
+
+        Path cover = coverDir.resolve(hash + ".png");
+        Path stego = stegoDir.resolve(hash + ".png");
+        Path tmp = temp(coverDir, hash, o.node, ".png");
+        try {
+            if (jpeg || !name.toLowerCase().endsWith(".png")) {
+                ImageIO.write(ImageIO.read(source.toFile()), "png", tmp.toFile());
+            } else {
+                Files.write(tmp, content);
+            }
+            LeaseQueue.move(tmp, cover);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        Path stegoTmp = temp(stegoDir, hash, o.node, ".png");
+        try {
+            ImageStego.encode(cover.toString(), stegoTmp.toString(), message, o.key);
+            LeaseQueue.move(stegoTmp, stego);
+        } finally {
+            Files.deleteIfExists(stegoTmp);
+        }
+        return manifestLine(hash, name, o.output, cover, stego, message);
+    }
+
+    /**
+     * Embeds into the quantized coefficients of a JPEG cover.
+     *
+     * @return false, with nothing written, if the cover is a JPEG the coefficient path cannot edit
+     *         (progressive, 12-bit) and has to go through the pixel-domain path instead
+     */
+    private static boolean encodeJpeg(String cover, String stego, String message, String key) throws Exception {
+        try {
+            JpegStego.encode(cover, stego, message, key);
+            return true;
+        } catch (UnsupportedJpegException e) {
+            return false;
+        }
+    }
+
+    // The extension stays last: the encoders pick the output format from it
+    private static Path temp(Path dir, String hash, String node, String ext) {
+        return dir.resolve(hash + "." + node + "." + Thread.currentThread().threadId() + ".tmp" + ext);
+    }
+
+    private static String manifestLine(String hash, String source, Path output, Path cover, Path stego, String message) {
+        return hash + "\t" + source + "\t" + output.relativize(cover) + "\t" + output.relativize(stego) + "\t" + message;
+    }
+
+    private static void append(BufferedWriter w, String line) throws IOException {
+        synchronized (w) {
+            w.write(line);
+            w.newLine();
+            // Lines of a process that dies are still merged; its items are redone by the others
+            w.flush();
+        }
+    }
+
+    /**
+     * Combines the per-node manifests into {@code manifest.tsv}, one line per distinct source
+     * content (the first source name, in sort order, for duplicates), sorted by content hash.
+     * Pairs whose files are missing are left out.
+     *
+     * @return 0 if every item is finished and every pair is complete, 1 otherwise
+     */
+    static int merge(Options o, PrintStream out) throws IOException {
+        List<String> ids = new ArrayList<>(items(o.source()).keySet());
+        int pending = new LeaseQueue(o.queue, "merge", o.lease).pending(ids);
+        Path manifests = o.output.resolve("manifests");
+
+        Map<String, String[]> pairs = new TreeMap<>();
+        int lines = 0;
+        int failed = 0;
+        if (Files.isDirectory(manifests)) {
+            try (DirectoryStream<Path> dir = Files.newDirectoryStream(manifests, "*.tsv")) {
+                for (Path manifest : dir) {
+                    boolean failures = manifest.getFileName().toString().endsWith(FAILED_SUFFIX);
+                    for (String line : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+                        if (line.isEmpty()) continue;
+                        if (failures) {
+                            failed++;
+                            continue;
+                        }
+                        String[] f = line.split("\t");
+                        // A node that died mid-line leaves a short one; its item was redone
+                        if (f.length != 5) continue;
+                        lines++;
+                        String[] known = pairs.get(f[0]);
+                        if (known == null || f[1].compareTo(known[1]) < 0) pairs.put(f[0], f);
+                    }
+                }
+            }
+        }
+
+        int missing = 0;
+        StringBuilder merged = new StringBuilder(MANIFEST_HEADER).append('\n');
+        for (String[] f : pairs.values()) {
+            if (!Files.exists(o.output.resolve(f[2])) || !Files.exists(o.output.resolve(f[3]))) {
+                missing++;
+                continue;
+            }
+            merged.append(String.join("\t", f)).append('\n');
+        }
+        Path tmp = o.output.resolve(MANIFEST + ".tmp");
+        Files.write(tmp, merged.toString().getBytes(StandardCharsets.UTF_8));
+        LeaseQueue.move(tmp, o.output.resolve(MANIFEST));
+
+        out.println("--- Merge: " + ids.size() + " items, " + pending + " pending, " + failed + " failed ---");
+        out.println((pairs.size() - missing) + " pairs from " + lines + " manifest lines, " + missing + " with missing files");
+        return pending == 0 && missing == 0 ? 0 : 1;
+    }
+
+    /**
+     * Extracts the features of the cover and the stego image of every pair in
+     * {@code manifest.tsv} into {@code features.bin}: a {@code label} column (0 cover, 1 stego)
+     * followed by the {@link FeatureExtractor} columns, two rows per pair, indexed by content
+     * hash. Images are decoded and transformed on {@code --threads} threads, a few pairs per
+     * thread at a time, and each row goes to a {@link FeatureFile.Writer} as soon as its pair is
+     * done, so memory use does not grow with the manifest. A pair with an unreadable image is
+     * left out.
+     *
+     * @return 0 if every pair was extracted, 1 otherwise
+     */
+    static int features(Options o, PrintStream out) throws Exception {
+        Path manifest = o.output.resolve(MANIFEST);
+        if (!Files.exists(manifest)) throw new IllegalArgumentException("No " + MANIFEST + " in " + o.output + "; run merge first");
+        List<String[]> pairs = new ArrayList<>();
+        for (String line : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            pairs.add(line.split("\t"));
+        }
+        FeatureExtractor extractor = new FeatureExtractor(StegoEngine.getDefault(), o.channel);
+        out.println("--- Features: " + pairs.size() + " pairs, " + extractor.columns().size() + " features, "
+            + o.threads + " threads ---");
+
+        List<String> columns = new ArrayList<>();
+        columns.add("label");
+        columns.addAll(extractor.columns());
+        long start = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(o.threads);
+        Path tmp = o.output.resolve(FEATURES + ".tmp");
+        try (FeatureFile.Writer writer = new FeatureFile.Writer(tmp, columns)) {
+            // Cover and stego futures of the pairs submitted but not yet written, in manifest order;
+            // a few pairs per thread keep every thread busy without queueing the whole manifest
+            ArrayDeque<Future<float[]>> inFlight = new ArrayDeque<>();
+            int window = 4 * o.threads;
+            int submitted = 0;
+            long rows = 0;
+            int failed = 0;
+            for (int i = 0; i < pairs.size(); i++) {
+                for (; submitted < pairs.size() && submitted < i + window; submitted++) {
+                    String[] f = pairs.get(submitted);
+                    for (int label = 0; label < 2; label++) {
+                        Path image = o.output.resolve(f[2 + label]);
+                        float value = label;
+                        inFlight.add(pool.submit(() -> {
+                            float[] features = extractor.extract(StegoRaster.of(ImageStego.readImage(image.toFile())));
+                            float[] row = new float[features.length + 1];
+                            row[0] = value;
+                            System.arraycopy(features, 0, row, 1, features.length);
+                            return row;
+                        }));
+                    }
+                }
+                String[] f = pairs.get(i);
+                Future<float[]> coverResult = inFlight.poll();
+                Future<float[]> stegoResult = inFlight.poll();
+                try {
+                    float[] cover = coverResult.get();
+                    float[] stego = stegoResult.get();
+                    // The manifest is sorted by content hash, as the index needs
+                    writer.add(f[0], cover);
+                    writer.add(f[0], stego);
+                    rows += 2;
+                } catch (ExecutionException e) {
+                    out.println("Skipped " + f[1] + ": " + e.getCause());
+                    failed++;
+                }
+                if ((i + 1) % 500 == 0) out.println("Extracted " + (i + 1) + " pairs...");
+            }
+
+            writer.finish();
+            LeaseQueue.move(tmp, o.output.resolve(FEATURES));
+            out.println(String.format("%d rows x %d columns in %s, %.1f s, %d pairs failed", rows, columns.size(),
+                o.output.resolve(FEATURES), (System.nanoTime() - start) / 1e9, failed));
+            return failed == 0 ? 0 : 1;
+        } finally {
+            pool.shutdownNow();
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static String sha256(byte[] data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.stego;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Per-image steganalysis features of one channel, computed on the 8x8 block transform of a
+ * {@link StegoEngine} and quantized with its persistence, the step the carriers are embedded
+ * with. Every block of the channel is used, whether or not the engine's mask would pass it.
+ *
+ * <ul>
+ *   <li>{@code hist_ac_<q>}, {@code hist_carrier_<q>}: histograms of the quantized AC
+ *       coefficients {@code round(c / persistence)}, clipped to {@code [-T, T]}, outside and at
+ *       the carrier positions. Each sums to 1.</li>
+ *   <li>{@code cooc_<a>_<b>}: co-occurrence of the clipped quantized value {@code a} in a block
+ *       and {@code b} at the same carrier position of its right or lower neighbour. Sums to 1.</li>
+ *   <li>{@code parity_<k>}: fraction of blocks whose carrier {@code k} reads as 1, the bit
+ *       {@link StegoEngine} would extract.</li>
+ *   <li>{@code residual_<k>}, {@code residual_ac}: mean distance of {@code c / persistence} from
+ *       the nearest integer at carrier {@code k} and over the other AC coefficients; about 0.25
+ *       for an untouched cover, and pulled towards 0 at carriers that hold data.</li>
+ * </ul>
+ */
+final class FeatureExtractor {
+
+    /** Clipping of the histograms. */
+    static final int HISTOGRAM_T = 5;
+    /** Clipping of the co-occurrence matrix. */
+    static final int COOCCURRENCE_T = 2;
+
+    private static final int N = 8;
+    private static final int HISTOGRAM_BINS = 2 * HISTOGRAM_T + 1;
+    private static final int COOCCURRENCE_BINS = 2 * COOCCURRENCE_T + 1;
+
+    private final StegoEngine engine;
+    private final int channel;
+    // Block indices of the carriers, bit 7 first
+    private final int[] carriers;
+    private final boolean[] isCarrier = new boolean[N * N];
+    private final List<String> columns;
+
+    /**
+     * @param channel "RED", "GREEN" or "BLUE"
+     */
+    FeatureExtractor(StegoEngine engine, String channel) {
+        this.engine = engine;
+        this.channel = parseChannel(channel);
+        this.carriers = engine.carrierPositions();
+        for (int i : carriers) isCarrier[i] = true;
+
+        List<String> names = new ArrayList<>();
+        for (int q = -HISTOGRAM_T; q <= HISTOGRAM_T; q++) names.add("hist_ac_" + q);
+        for (int q = -HISTOGRAM_T; q <= HISTOGRAM_T; q++) names.add("hist_carrier_" + q);
+        for (int a = -COOCCURRENCE_T; a <= COOCCURRENCE_T; a++) {
+            for (int b = -COOCCURRENCE_T; b <= COOCCURRENCE_T; b++) names.add("cooc_" + a + "_" + b);
+        }
+        for (int k = 0; k < carriers.length; k++) names.add("parity_" + k);
+        for (int k = 0; k < carriers.length; k++) names.add("residual_" + k);
+        names.add("residual_ac");
+        this.columns = Collections.unmodifiableList(names);
+    }
+
+    /**
+     * @return Names of the values {@link #extract} returns, in order
+     */
+    List<String> columns() {
+        return columns;
+    }
+
+    /**
+     * Computes the features of one image in a single pass over its block rows.
+     */
+    float[] extract(StegoRaster img) {
+        int blocksX = img.getWidth() / N;
+        int blocksY = img.getHeight() / N;
+        int width = blocksX * N;
+        int persistence = engine.getPersistence();
+        StegoEngine.BlockTransform transform = engine.getTransform();
+        int bits = carriers.length;
+
+        long[] histAc = new long[HISTOGRAM_BINS];
+        long[] histCarrier = new long[HISTOGRAM_BINS];
+        long[] cooc = new long[COOCCURRENCE_BINS * COOCCURRENCE_BINS];
+        long[] odd = new long[bits];
+        double[] residual = new double[bits];
+        double residualAc = 0;
+
+        int[][] rows = new int[N][width];
+        double[] samples = new double[N * N];
+        double[] coeffs = new double[N * N];
+        double[] tmp = new double[N * N];
+        // Clipped quantized carriers of the block row above and of this one, one per bit and block
+        int[] above = new int[blocksX * bits];
+        int[] current = new int[blocksX * bits];
+
+        for (int by = 0; by < blocksY; by++) {
+            for (int y = 0; y < N; y++) img.getRow(by * N + y, channel, rows[y]);
+            for (int bx = 0; bx < blocksX; bx++) {
+                int x0 = bx * N;
+                for (int y = 0; y < N; y++) {
+                    for (int x = 0; x < N; x++) samples[y * N + x] = rows[y][x0 + x];
+                }
+                transform.forward(samples, coeffs, tmp);
+
+                for (int i = 1; i < N * N; i++) {
+                    if (isCarrier[i]) continue;
+                    double scaled = coeffs[i] / persistence;
+                    long q = Math.round(scaled);
+                    histAc[clip(q, HISTOGRAM_T) + HISTOGRAM_T]++;
+                    residualAc += Math.abs(scaled - q);
+                }
+                for (int k = 0; k < bits; k++) {
+                    double scaled = coeffs[carriers[k]] / persistence;
+                    long q = Math.round(scaled);
+                    histCarrier[clip(q, HISTOGRAM_T) + HISTOGRAM_T]++;
+                    odd[k] += Math.abs(q) % 2;
+                    residual[k] += Math.abs(scaled - q);
+
+                    int c = clip(q, COOCCURRENCE_T) + COOCCURRENCE_T;
+                    current[bx * bits + k] = c;
+                    if (bx > 0) cooc[current[(bx - 1) * bits + k] * COOCCURRENCE_BINS + c]++;
+                    if (by > 0) cooc[above[bx * bits + k] * COOCCURRENCE_BINS + c]++;
+                }
+            }
+            int[] t = above;
+            above = current;
+            current = t;
+        }
+
+        long blocks = (long) blocksX * blocksY;
+        float[] features = new float[columns.size()];
+        int f = 0;
+        f = normalize(histAc, features, f);
+        f = normalize(histCarrier, features, f);
+        f = normalize(cooc, features, f);
+        for (int k = 0; k < bits; k++) features[f++] = blocks == 0 ? 0 : (float) ((double) odd[k] / blocks);
+        for (int k = 0; k < bits; k++) features[f++] = blocks == 0 ? 0 : (float) (residual[k] / blocks);
+        long acCount = blocks * (N * N - 1 - bits);
+        features[f] = acCount == 0 ? 0 : (float) (residualAc / acCount);
+        return features;
+    }
+
+    private static int clip(long q, int t) {
+        return (int) Math.max(-t, Math.min(t, q));
+    }
+
+    private static int normalize(long[] counts, float[] out, int offset) {
+        long total = 0;
+        for (long c : counts) total += c;
+        for (int i = 0; i < counts.length; i++) {
+            out[offset + i] = total == 0 ? 0 : (float) ((double) counts[i] / total);
+        }
+        return offset + counts.length;
+    }
+
+    private static int parseChannel(String channel) {
+        switch (channel.toUpperCase()) {
+            case ImageStego.CHANNEL_RED:
+                return StegoRaster.RED;
+            case ImageStego.CHANNEL_GREEN:
+                return StegoRaster.GREEN;
+            case ImageStego.CHANNEL_BLUE:
+                return StegoRaster.BLUE;
+            default:
+                throw new IllegalArgumentException("Unknown channel: " + channel);
+        }
+    }
+}
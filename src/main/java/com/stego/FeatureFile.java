@@ -0,0 +1,302 @@
+package com.stego;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Columnar file of per-image float features, read through memory-mapped columns so a training
+ * run touches only the columns it uses and never parses the file.
+ *
+ * <pre>
+ *   0                 magic "STGF", version, rows, columns (4 ints)
+ *   16                column names, 32 bytes each, US-ASCII, zero padded
+ *   data offset       one column after the other, rows float32 each
+ *   index offset      rows SHA-256 digests of 32 bytes, ascending, in row order
+ * </pre>
+ * Everything is little-endian, and both offsets are multiples of 8: the data offset is
+ * {@code 16 + 32 * columns}, and the index follows the data, padded to 8 bytes. Outside Java a
+ * column is {@code numpy.memmap(path, '<f4', 'r', dataOffset + 4 * rows * c, (rows,))}.
+ *
+ * A file is written through a {@link Writer}, which spills rows to disk as they come and
+ * transposes them into columns in chunks at the end, so neither side holds all rows in memory.
+ * A reader keeps the file open; close it when done.
+ */
+final class FeatureFile implements AutoCloseable {
+
+    static final int MAGIC = 0x46475453; // "STGF" read little-endian
+    static final int VERSION = 1;
+    static final int NAME_BYTES = 32;
+    static final int DIGEST_BYTES = 32;
+    private static final int HEADER_BYTES = 16;
+    // Index mapping windows; a whole number of digests
+    private static final int WINDOW_SHIFT = 30;
+    private static final long WINDOW_MASK = (1L << WINDOW_SHIFT) - 1;
+    // Rows spilled by a Writer are transposed this many bytes of rows at a time
+    private static final int CHUNK_BYTES = 8 << 20;
+
+    private final FileChannel channel;
+    private final int rows;
+    private final List<String> columns;
+    private final long dataOffset;
+    private final ByteBuffer[] index;
+    private final FloatBuffer[] mapped;
+
+    private FeatureFile(FileChannel channel) throws IOException {
+        this.channel = channel;
+        ByteBuffer head = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, head, 0);
+        if (head.getInt(0) != MAGIC) throw new IOException("Not a feature file");
+        if (head.getInt(4) != VERSION) throw new IOException("Unsupported feature file version: " + head.getInt(4));
+        this.rows = head.getInt(8);
+        int count = head.getInt(12);
+        if (rows < 0 || count < 0) throw new IOException("Corrupt feature file header");
+
+        ByteBuffer names = ByteBuffer.allocate(count * NAME_BYTES);
+        readFully(channel, names, HEADER_BYTES);
+        List<String> list = new ArrayList<>(count);
+        for (int c = 0; c < count; c++) {
+            byte[] name = Arrays.copyOfRange(names.array(), c * NAME_BYTES, (c + 1) * NAME_BYTES);
+            int end = 0;
+            while (end < NAME_BYTES && name[end] != 0) end++;
+            list.add(new String(name, 0, end, StandardCharsets.US_ASCII));
+        }
+        this.columns = Collections.unmodifiableList(list);
+        this.dataOffset = dataOffset(count);
+        long indexOffset = indexOffset(rows, count);
+        long indexBytes = (long) rows * DIGEST_BYTES;
+        if (channel.size() < indexOffset + indexBytes) throw new IOException("Truncated feature file");
+        this.index = new ByteBuffer[(int) ((indexBytes + WINDOW_MASK) >>> WINDOW_SHIFT)];
+        for (int w = 0; w < index.length; w++) {
+            long start = (long) w << WINDOW_SHIFT;
+            index[w] = channel.map(FileChannel.MapMode.READ_ONLY, indexOffset + start, Math.min(WINDOW_MASK + 1, indexBytes - start));
+        }
+        this.mapped = new FloatBuffer[count];
+    }
+
+    /**
+     * Opens a feature file; columns are mapped on first use.
+     */
+    static FeatureFile open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new FeatureFile(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    int rows() {
+        return rows;
+    }
+
+    List<String> columns() {
+        return columns;
+    }
+
+    /**
+     * @return The column as a read-only view of the file
+     * @throws IllegalArgumentException if there is no such column
+     */
+    synchronized FloatBuffer column(String name) throws IOException {
+        int c = columns.indexOf(name);
+        if (c < 0) throw new IllegalArgumentException("No column " + name);
+        if (mapped[c] == null) {
+            long offset = dataOffset + (long) rows * Float.BYTES * c;
+            MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, offset, (long) rows * Float.BYTES);
+            mapped[c] = bytes.order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+        }
+        return mapped[c].duplicate();
+    }
+
+    /**
+     * @return Hex SHA-256 of the image of a row
+     */
+    String digest(int row) {
+        byte[] digest = new byte[DIGEST_BYTES];
+        readDigest(row, digest);
+        return HexFormat.of().formatHex(digest);
+    }
+
+    /**
+     * Binary search of the index.
+     *
+     * @return The first row of an image, or -1 if it is not in the file
+     */
+    int find(String digest) {
+        byte[] key = HexFormat.of().parseHex(digest);
+        byte[] probe = new byte[DIGEST_BYTES];
+        int lo = 0;
+        int hi = rows;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            readDigest(mid, probe);
+            if (Arrays.compareUnsigned(probe, key) < 0) lo = mid + 1;
+            else hi = mid;
+        }
+        if (lo == rows) return -1;
+        readDigest(lo, probe);
+        return Arrays.equals(probe, key) ? lo : -1;
+    }
+
+    private void readDigest(int row, byte[] digest) {
+        long position = (long) row * DIGEST_BYTES;
+        index[(int) (position >>> WINDOW_SHIFT)].get((int) (position & WINDOW_MASK), digest);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private static long dataOffset(int columns) {
+        return HEADER_BYTES + (long) NAME_BYTES * columns;
+    }
+
+    private static long indexOffset(int rows, int columns) {
+        long end = dataOffset(columns) + (long) rows * columns * Float.BYTES;
+        return (end + 7) & ~7L;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            int n = channel.read(buf, position + buf.position());
+            if (n < 0) throw new IOException("Truncated feature file");
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) channel.write(buf);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) channel.write(buf, position + buf.position());
+    }
+
+    /**
+     * Writes a feature file row by row. Rows are appended to a spill file next to the target,
+     * each as its digest followed by its values; {@link #finish} reads the spill back in chunks
+     * of rows and writes each chunk's slice of every column, and the spill file is deleted on
+     * {@link #close}. Memory use is one chunk, whatever the number of rows.
+     */
+    static final class Writer implements AutoCloseable {
+        private final Path path;
+        private final Path spill;
+        private final int count;
+        private final byte[] head;
+        private final int recordBytes;
+        private final int chunkRows;
+        private final FileChannel rows;
+        private final ByteBuffer pending;
+        private byte[] lastDigest;
+        private long written;
+
+        /**
+         * @param columns Names of the values of each row, at most 32 US-ASCII bytes each
+         */
+        Writer(Path path, List<String> columns) throws IOException {
+            this(path, columns, CHUNK_BYTES);
+        }
+
+        Writer(Path path, List<String> columns, int chunkBytes) throws IOException {
+            this.path = path;
+            this.spill = path.resolveSibling(path.getFileName() + ".rows");
+            this.count = columns.size();
+            ByteBuffer names = ByteBuffer.allocate((int) dataOffset(count) - HEADER_BYTES);
+            for (String name : columns) {
+                byte[] bytes = name.getBytes(StandardCharsets.US_ASCII);
+                if (bytes.length > NAME_BYTES) throw new IllegalArgumentException("Column name longer than " + NAME_BYTES + " bytes: " + name);
+                names.put(bytes).put(new byte[NAME_BYTES - bytes.length]);
+            }
+            this.head = names.array();
+            this.recordBytes = DIGEST_BYTES + count * Float.BYTES;
+            this.chunkRows = Math.max(1, chunkBytes / recordBytes);
+            this.pending = ByteBuffer.allocate(Math.max(recordBytes, 64 * 1024) / recordBytes * recordBytes).order(ByteOrder.LITTLE_ENDIAN);
+            this.rows = FileChannel.open(spill, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+
+        /**
+         * Appends a row.
+         *
+         * @param digest Hex SHA-256 of the row's image; not below the previous row's, and rows of
+         *        equal digests keep their order
+         * @param values One value per column
+         */
+        void add(String digest, float[] values) throws IOException {
+            byte[] bytes = HexFormat.of().parseHex(digest);
+            if (bytes.length != DIGEST_BYTES) throw new IllegalArgumentException("Not a SHA-256 digest: " + digest);
+            if (values.length != count) throw new IllegalArgumentException(values.length + " values for " + count + " columns");
+            if (lastDigest != null && Arrays.compareUnsigned(lastDigest, bytes) > 0) {
+                throw new IllegalArgumentException("Digests are not sorted at row " + written);
+            }
+            if (written == Integer.MAX_VALUE) throw new IllegalStateException("More than " + Integer.MAX_VALUE + " rows");
+            if (pending.remaining() < recordBytes) flush();
+            pending.put(bytes);
+            for (float v : values) pending.putFloat(v);
+            lastDigest = bytes;
+            written++;
+        }
+
+        /**
+         * Writes the feature file from the rows added so far.
+         */
+        void finish() throws IOException {
+            flush();
+            int total = (int) written;
+            long dataOffset = dataOffset(count);
+            long indexOffset = indexOffset(total, count);
+            try (FileChannel out = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                     StandardOpenOption.WRITE)) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES + head.length).order(ByteOrder.LITTLE_ENDIAN);
+                header.putInt(MAGIC).putInt(VERSION).putInt(total).putInt(count).put(head);
+                writeFully(out, header.flip(), 0);
+
+                ByteBuffer chunk = ByteBuffer.allocate(chunkRows * recordBytes).order(ByteOrder.LITTLE_ENDIAN);
+                ByteBuffer column = ByteBuffer.allocate(chunkRows * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                ByteBuffer digests = ByteBuffer.allocate(chunkRows * DIGEST_BYTES);
+                for (long first = 0; first < total; first += chunkRows) {
+                    int n = (int) Math.min(chunkRows, total - first);
+                    chunk.clear().limit(n * recordBytes);
+                    readFully(rows, chunk, first * recordBytes);
+
+                    digests.clear();
+                    for (int r = 0; r < n; r++) digests.put(chunk.array(), r * recordBytes, DIGEST_BYTES);
+                    writeFully(out, digests.flip(), indexOffset + first * DIGEST_BYTES);
+                    for (int c = 0; c < count; c++) {
+                        column.clear();
+                        for (int r = 0; r < n; r++) column.putFloat(chunk.getFloat(r * recordBytes + DIGEST_BYTES + c * Float.BYTES));
+                        writeFully(out, column.flip(), dataOffset + ((long) c * total + first) * Float.BYTES);
+                    }
+                }
+            }
+        }
+
+        private void flush() throws IOException {
+            writeFully(rows, pending.flip());
+            pending.clear();
+        }
+
+        /**
+         * Deletes the spill file; the feature file stays.
+         */
+        @Override
+        public void close() throws IOException {
+            rows.close();
+            Files.deleteIfExists(spill);
+        }
+    }
+}
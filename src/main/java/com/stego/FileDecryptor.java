@@ -1,40 +1,122 @@
 package com.stego;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.util.Base64;
 import javax.crypto.Cipher;
 import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public class FileDecryptor {
 
+    private static final Logger LOG = Logger.getLogger(FileDecryptor.class.getName());
+
     public static String decryptText(String encryptedContent, String aesKey, String vigenereKey) throws Exception {
+        try (StegoMetrics.Span span = StegoMetrics.start(StegoMetrics.Stage.TEXT_DECRYPT)) {
+            span.bytes(encryptedContent.length());
+            return decryptWords(encryptedContent, aesKey, vigenereKey);
+        }
+    }
+
+    /**
+     * Decrypts ciphertext word by word as it is read, appending the plaintext to {@code out}.
+     * Gives the same text as {@link #decryptText} without holding the ciphertext in memory, so
+     * it can consume {@link ImageStego#openStream} while extraction is still running.
+     *
+     * @return Number of ciphertext characters read
+     */
+    public static long decryptStream(Reader encryptedContent, String aesKey, String vigenereKey, Appendable out) throws IOException {
+        try (StegoMetrics.Span span = StegoMetrics.start(StegoMetrics.Stage.TEXT_DECRYPT)) {
+            boolean trace = LOG.isLoggable(Level.FINEST);
+            StringBuilder word = new StringBuilder();
+            char[] buf = new char[8192];
+            long read = 0;
+            int index = 0;
+            for (int n; (n = encryptedContent.read(buf)) >= 0; ) {
+                read += n;
+                for (int i = 0; i < n; i++) {
+                    if (!isSeparator(buf[i])) {
+                        word.append(buf[i]);
+                    } else if (word.length() > 0) {
+                        appendWord(word.toString(), aesKey, vigenereKey, index++, trace, out);
+                        word.setLength(0);
+                    }
+                }
+            }
+            if (word.length() > 0) {
+                appendWord(word.toString(), aesKey, vigenereKey, index, trace, out);
+            }
+            span.bytes(read);
+            return read;
+        }
+    }
+
+    private static String decryptWords(String encryptedContent, String aesKey, String vigenereKey) throws IOException {
         StringBuilder decryptedOutput = new StringBuilder();
         String[] encryptedWords = encryptedContent.split("\\s+");
+        // Plaintext is never logged; only the per-word cipher decision at FINEST
+        boolean trace = LOG.isLoggable(Level.FINEST);
+        int index = 0;
 
         for (String word : encryptedWords) {
-            String decryptedWord;
-            
-            // Check if the word is Base64 encoded (AES encrypted)
-            // Base64 strings typically end with '=' padding and contain only valid Base64 characters
-            if (isBase64(word)) {
-                try {
-                    decryptedWord = aesDecrypt(word, aesKey);
-                    System.out.println("Word: " + word + " -> (AES-256) -> " + decryptedWord);
-                } catch (Exception e) {
-                    // If AES decryption fails, fall back to Vigenère
-                    decryptedWord = vigenereDecrypt(word, vigenereKey);
-                    System.out.println("Word: " + word + " -> (Vigenère fallback) -> " + decryptedWord);
-                }
-            } else {
-                // Non-Base64 strings are Vigenère encrypted
-                decryptedWord = vigenereDecrypt(word, vigenereKey);
-                System.out.println("Word: " + word + " -> (Vigenère) -> " + decryptedWord);
-            }
-            
-            decryptedOutput.append(decryptedWord).append(" ");
+            appendWord(word, aesKey, vigenereKey, index++, trace, decryptedOutput);
         }
         return decryptedOutput.toString().trim();
     }
+
+    private static void appendWord(String word, String aesKey, String vigenereKey, int index, boolean trace, Appendable out) throws IOException {
+        if (index > 0) {
+            out.append(' ');
+        } else if (CipherEnvelope.isEnvelope(word) && openEnvelope(word, aesKey, trace, out)) {
+            return;
+        }
+        out.append(decryptWord(word, aesKey, vigenereKey, index, trace));
+    }
+
+    /**
+     * A GCM-mode message is a single envelope word; anything that fails its tag is per-word
+     * ciphertext. An authentic envelope that does not decompress is an error, not a fallback.
+     *
+     * @return Whether the word was an envelope, now decrypted into {@code out}
+     */
+    private static boolean openEnvelope(String word, String aesKey, boolean trace, Appendable out) throws IOException {
+        try {
+            CipherEnvelope.open(word, aesKey, out);
+            if (trace) LOG.finest("Word 0 -> (AES-GCM envelope)");
+            return true;
+        } catch (GeneralSecurityException e) {
+            if (trace) LOG.finest("Word 0 is not an envelope: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // The characters matched by \\s, so words split exactly as in decryptText
+    private static boolean isSeparator(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    private static String decryptWord(String word, String aesKey, String vigenereKey, int index, boolean trace) {
+        // Check if the word is Base64 encoded (AES encrypted)
+        // Base64 strings typically end with '=' padding and contain only valid Base64 characters
+        if (isBase64(word)) {
+            try {
+                String decryptedWord = aesDecrypt(word, aesKey);
+                if (trace) LOG.finest("Word " + index + " -> (AES-256)");
+                return decryptedWord;
+            } catch (Exception e) {
+                // If AES decryption fails, fall back to Vigenère
+                if (trace) LOG.finest("Word " + index + " -> (Vigenère fallback)");
+                return vigenereDecrypt(word, vigenereKey);
+            }
+        }
+        // Non-Base64 strings are Vigenère encrypted
+        if (trace) LOG.finest("Word " + index + " -> (Vigenère)");
+        return vigenereDecrypt(word, vigenereKey);
+    }
     
     /**
      * Checks if a string is likely Base64 encoded.
@@ -87,6 +169,6 @@ public class FileDecryptor {
         IvParameterSpec iv = new IvParameterSpec(new byte[16]);
         Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
         cipher.init(Cipher.DECRYPT_MODE, secretKey, iv);
-        return new String(cipher.doFinal(Base64.getDecoder().decode(encryptedValue)));
+        return new String(cipher.doFinal(Base64.getDecoder().decode(encryptedValue)), StandardCharsets.UTF_8);
     }
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package com.stego;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Base64;
 import javax.crypto.Cipher;
 import javax.crypto.KeyGenerator;
@@ -8,9 +9,13 @@ import javax.crypto.spec.SecretKeySpec;
 
 
 import java.security.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public class FileEncryptor {
 
+    private static final Logger LOG = Logger.getLogger(FileEncryptor.class.getName());
+
     // Entropy threshold for cipher selection (bits per character)
     // Words with entropy > THRESHOLD use AES-256 (High Security)
     // Words with entropy <= THRESHOLD use Vigenère (Standard Security)
@@ -68,15 +73,117 @@ public class FileEncryptor {
         }
     }
 
+    /**
+     * How {@link #encryptText} encrypts a message.
+     */
+    public enum Mode {
+        /** Each word on its own: Vigenère for low-entropy words, AES-CBC for high-entropy ones */
+        ENTROPY,
+        /** The whole text at once with AES-GCM, as one {@link CipherEnvelope}; smallest payload */
+        GCM
+    }
+
+    // TEXT_CIPHER_MODE in config.properties: ENTROPY (default) or GCM
+    private static Mode configuredMode() {
+        String value = StegoConfig.get("TEXT_CIPHER_MODE", Mode.ENTROPY.name());
+        try {
+            return Mode.valueOf(value.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            LOG.warning("Invalid value for TEXT_CIPHER_MODE: " + value + ", using " + Mode.ENTROPY);
+            return Mode.ENTROPY;
+        }
+    }
+
+    /**
+     * How a {@link Mode#GCM} message is compressed before encryption. Every embedded byte costs
+     * a block transform, so a smaller envelope embeds faster and fits smaller covers.
+     */
+    public enum Compression {
+        NONE,
+        /** Deflate at a selectable level; best ratio */
+        DEFLATE,
+        /** {@link LzCodec}; several times faster than Deflate at a lower ratio */
+        LZ
+    }
+
+    /**
+     * Settings from config.properties, read on the first encryption rather than whenever
+     * FileEncryptor is loaded (the decryptor borrows its cipher helpers).
+     */
+    private static final class Defaults {
+        static final Mode MODE = configuredMode();
+        static final Compression COMPRESSION = configuredCompression();
+        static final int COMPRESSION_LEVEL = configuredCompressionLevel();
+    }
+
+    // TEXT_COMPRESSION in config.properties: NONE (default), DEFLATE or LZ
+    private static Compression configuredCompression() {
+        String value = StegoConfig.get("TEXT_COMPRESSION", Compression.NONE.name());
+        try {
+            return Compression.valueOf(value.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            LOG.warning("Invalid value for TEXT_COMPRESSION: " + value + ", using " + Compression.NONE);
+            return Compression.NONE;
+        }
+    }
+
+    private static int configuredCompressionLevel() {
+        int level = StegoConfig.getInt("TEXT_COMPRESSION_LEVEL", 6);
+        if (level < 1 || level > 9) {
+            LOG.warning("Invalid value for TEXT_COMPRESSION_LEVEL: " + level + ", using 6");
+            return 6;
+        }
+        return level;
+    }
+
+    /**
+     * Encrypts with the mode configured by TEXT_CIPHER_MODE.
+     */
     public static Output encryptText(String content) throws Exception{
+        return encryptText(content, Defaults.MODE);
+    }
+
+    /**
+     * GCM messages are compressed as configured by TEXT_COMPRESSION and TEXT_COMPRESSION_LEVEL.
+     */
+    public static Output encryptText(String content, Mode mode) throws Exception{
+        Compression compression = mode == Mode.GCM ? Defaults.COMPRESSION : Compression.NONE;
+        return encryptText(content, mode, compression, Defaults.COMPRESSION_LEVEL);
+    }
+
+    /**
+     * @param compression Applied to the plaintext before encryption; only the single-envelope
+     *        {@link Mode#GCM} output can carry a compressed message
+     * @param level Deflate level 1 (fastest) to 9 (smallest); ignored by the other codecs
+     * @throws IllegalArgumentException if compression is requested in {@link Mode#ENTROPY}
+     */
+    public static Output encryptText(String content, Mode mode, Compression compression, int level) throws Exception{
+        if (compression != Compression.NONE && mode != Mode.GCM) {
+            throw new IllegalArgumentException(compression + " compression needs " + Mode.GCM + " mode, not " + mode);
+        }
+        if (compression == Compression.DEFLATE && (level < 1 || level > 9)) {
+            throw new IllegalArgumentException("Deflate level must be 1-9: " + level);
+        }
+        try (StegoMetrics.Span span = StegoMetrics.start(StegoMetrics.Stage.TEXT_ENCRYPT)) {
+            span.bytes(content.length());
+            if (mode == Mode.GCM) {
+                // The Vigenère key still seeds the carrier order of the embedding
+                String vigenereKey = generateVigenereKey(5);
+                String aesKey = generateAESKey();
+                String envelope = CipherEnvelope.seal(content, aesKey, compression, level);
+                LOG.fine(() -> "Encrypted " + content.length() + " chars into a " + envelope.length() + " char envelope (" + compression + ")");
+                return new Output(envelope, aesKey, vigenereKey);
+            }
+
             StringBuilder finalOutput = new StringBuilder();
             String[] words = content.split("\\s+");
 
             String vigenereKey = generateVigenereKey(5);   
             String aesKey = generateAESKey();             
 
-            System.out.println("\nGenerated Vigenere Key: " + vigenereKey);
-            System.out.println("Generated AES Key: " + aesKey);
+            // Keys and plaintext are never logged; only the per-word cipher decision at FINEST
+            boolean trace = LOG.isLoggable(Level.FINEST);
+            int index = 0;
 
             for (String word : words) {
                 String encryptedWord;
@@ -86,21 +193,20 @@ public class FileEncryptor {
                 // High entropy -> AES-256 (High Security), Low entropy -> Vigenère (Standard Security)
                 if (entropy > ENTROPY_THRESHOLD) {
                     encryptedWord = aesEncrypt(word, aesKey);
-                    System.out.println("Word: " + word + " [Entropy: " + String.format("%.2f", entropy) + "] -> (AES-256) -> " + encryptedWord);
+                    if (trace) LOG.finest("Word " + index + " [Entropy: " + String.format("%.2f", entropy) + "] -> (AES-256)");
                 } else {
                     encryptedWord = vigenereCipher(word, vigenereKey);
-                    System.out.println("Word: " + word + " [Entropy: " + String.format("%.2f", entropy) + "] -> (Vigenère) -> " + encryptedWord);
+                    if (trace) LOG.finest("Word " + index + " [Entropy: " + String.format("%.2f", entropy) + "] -> (Vigenère)");
                 }
+                index++;
 
                 finalOutput.append(encryptedWord).append(" ");
             }
 
-            System.out.println("\n--- Final Encrypted Message ---");
-            System.out.println(finalOutput.toString().trim());
+            LOG.fine(() -> "Encrypted " + words.length + " words into " + finalOutput.length() + " chars");
 
             return new Output(finalOutput.toString().trim(), aesKey, vigenereKey);
-
-
+        }
     }
 
 
@@ -162,6 +268,6 @@ public class FileEncryptor {
         IvParameterSpec iv = new IvParameterSpec(new byte[16]); // Using zero IV for simplicity
         Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
         cipher.init(Cipher.ENCRYPT_MODE, secretKey, iv);
-        return Base64.getEncoder().encodeToString(cipher.doFinal(value.getBytes()));
+        return Base64.getEncoder().encodeToString(cipher.doFinal(value.getBytes(StandardCharsets.UTF_8)));
     }
 }
@@ -8,11 +8,15 @@ import java.util.Base64;
 
 public class HybridDecryptor {
     public static String decryptSessionKey(String hybridData, PrivateKey latticePrivKey) throws Exception {
+        return StegoMetrics.time(StegoMetrics.Stage.KYBER_UNWRAP, () -> unwrap(hybridData, latticePrivKey));
+    }
+
+    private static String unwrap(String hybridData, PrivateKey latticePrivKey) throws Exception {
         String[] parts = hybridData.split(":");
         byte[] wrappedSessionKey = Base64.getDecoder().decode(parts[0]);
         byte[] encryptedTargetData = Base64.getDecoder().decode(parts[1]);
 
-        Cipher kyberCipher = Cipher.getInstance("KYBER", "BCPQC");
+        Cipher kyberCipher = Cipher.getInstance("KYBER", LatticeManager.provider());
         kyberCipher.init(Cipher.UNWRAP_MODE, latticePrivKey);
         SecretKey sessionKey = (SecretKey) kyberCipher.unwrap(wrappedSessionKey, "AES", Cipher.SECRET_KEY);
 
@@ -12,7 +12,10 @@ public class HybridEncryptor {
 
     // Updated to use Kyber (Lattice) Public Key instead of ECC
     public static String encryptAESKey(String targetKeyToHide, PublicKey receiverPubKey) throws Exception {
-        
+        return StegoMetrics.time(StegoMetrics.Stage.KYBER_WRAP, () -> wrap(targetKeyToHide, receiverPubKey));
+    }
+
+    private static String wrap(String targetKeyToHide, PublicKey receiverPubKey) throws Exception {
         // 1. Generate a temporary random AES "Session Key"
         byte[] sessionKeyBytes = new byte[16];
         new SecureRandom().nextBytes(sessionKeyBytes);
@@ -20,7 +23,7 @@ public class HybridEncryptor {
 
         // 2. Encrypt (Wrap) this Session Key using Kyber (Lattice Logic)
         // We use the "KYBER" algorithm from the BCPQC provider
-        Cipher kyberCipher = Cipher.getInstance("KYBER", "BCPQC");
+        Cipher kyberCipher = Cipher.getInstance("KYBER", LatticeManager.provider());
         kyberCipher.init(Cipher.WRAP_MODE, receiverPubKey);
         byte[] wrappedSessionKey = kyberCipher.wrap(sessionKey);
 
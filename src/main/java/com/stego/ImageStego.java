@@ -2,26 +2,32 @@ package com.stego;
 
 import java.awt.image.BufferedImage;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import javax.imageio.ImageIO;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
 
+/**
+ * Static DCT steganography API, backed by {@link StegoEngine#getDefault}. Use a
+ * {@link StegoEngine} built with other parameters for differently tuned embedding.
+ */
 public class ImageStego {
 
-    private static final int N = 8; // 8x8 Blocks
-    
+    // Defaults of StegoEngine.builder()
+
     // Increased Robustness: We modify coefficients by this amount to survive rounding errors.
     // A value of 20 ensures the bit survives the double -> int -> double conversion.
-    private static final int PERSISTENCE = 20; 
+    static final int PERSISTENCE = 20;
 
-    private static final int[] COEFF_X = {3, 4, 3, 4, 2, 5, 2, 5};
-    private static final int[] COEFF_Y = {3, 3, 4, 4, 2, 2, 5, 5};
+    static final int[] COEFF_X = {3, 4, 3, 4, 2, 5, 2, 5};
+    static final int[] COEFF_Y = {3, 3, 4, 4, 2, 2, 5, 5};
     
     // Texture-Adaptive Masking threshold
     // Blocks with variance < THRESHOLD are considered "smooth" and skipped to avoid visible artifacts
     // Reference: ACM TOMM 2024 - "Enhancing Adversarial Embedding"
-    private static final double VARIANCE_THRESHOLD = 200.0;
+    static final double VARIANCE_THRESHOLD = 200.0;
     
     /**
      * Color channel constants for split-payload orchestration
@@ -30,20 +36,18 @@ public class ImageStego {
     public static final String CHANNEL_RED = "RED";
     public static final String CHANNEL_GREEN = "GREEN";
     public static final String CHANNEL_BLUE = "BLUE";
-    
-    /**
-     * Block coordinates for sparse randomized sampling
-     */
-    private static class BlockCoord {
-        int x, y;
-        BlockCoord(int x, int y) { this.x = x; this.y = y; }
+
+    private static final BooleanSupplier NOT_CANCELLED = () -> false;
+
+    private static StegoEngine engine() {
+        return StegoEngine.getDefault();
     }
-    
+
     /**
      * Generates a deterministic seed from the Vigenère key string.
      * Reference: USENIX Security 2025 - "SparSamp"
      */
-    private static long seedFromKey(String key) {
+    static long seedFromKey(String key) {
         long seed = 0;
         for (char c : key.toCharArray()) {
             seed = seed * 31 + (long) c;
@@ -61,83 +65,165 @@ public class ImageStego {
      * @param channel Color channel to use: "RED", "GREEN", or "BLUE" (default: "BLUE")
      */
     public static void encode(String inputImage, String outputImage, String message, String vigenereKey, String channel) throws Exception {
-        File f = new File(inputImage);
-        if (!f.exists()) throw new RuntimeException("Image not found: " + inputImage);
-        
-        BufferedImage img = ImageIO.read(f);
-        int width = img.getWidth();
-        int height = img.getHeight();
-
-        byte[] msgBytes = message.getBytes();
-        int len = msgBytes.length;
-        
-        byte[] data = new byte[4 + len];
-        data[0] = (byte) ((len >> 24) & 0xFF);
-        data[1] = (byte) ((len >> 16) & 0xFF);
-        data[2] = (byte) ((len >> 8) & 0xFF);
-        data[3] = (byte) (len & 0xFF);
-        System.arraycopy(msgBytes, 0, data, 4, len);
-
-        int maxBytes = (width / N) * (height / N);
-        if (data.length > maxBytes) {
-            throw new RuntimeException("Message too long! Need larger image.");
-        }
+        engine().encode(inputImage, outputImage, message, vigenereKey, channel);
+    }
+
+    /**
+     * Encodes a message into an image, writing the PNG with the given writer settings.
+     *
+     * @param pngWriter PNG compression level / filter / parallelism for this job
+     */
+    public static void encode(String inputImage, String outputImage, String message, String vigenereKey, String channel, PngWriter pngWriter) throws Exception {
+        engine().encode(inputImage, outputImage, message, vigenereKey, channel, pngWriter);
+    }
 
-        // Sparse Randomized Sampling: Generate shuffled block order
-        // Reference: USENIX Security 2025 - "SparSamp"
-        List<BlockCoord> blockCoords = new ArrayList<>();
-        for (int y = 0; y <= height - N; y += N) {
-            for (int x = 0; x <= width - N; x += N) {
-                // Use BLUE channel for variance calculation (same channel used for encoding)
-                double[][] testBlock = getChannelLayer(img, x, y, CHANNEL_BLUE);
-                double[][] dctBlock = applyDCT(testBlock);
-                
-                // Texture-Adaptive Masking: Only include textured blocks
-                double variance = getBlockVariance(dctBlock);
-                if (variance >= VARIANCE_THRESHOLD) {
-                    blockCoords.add(new BlockCoord(x, y));
-                }
-            }
+    /**
+     * Embeds header + message bytes as produced by {@link PayloadHeader#wrap} into an image file.
+     */
+    static void encodePayload(File input, File output, byte[] data, String vigenereKey, String channel, PngWriter pngWriter) throws Exception {
+        engine().encodePayload(input, output, data, vigenereKey, channel, pngWriter);
+    }
+
+    /**
+     * A writable cover for one embed, and the {@link CoverCache} entry it was copied from (null if
+     * the cache is disabled).
+     */
+    static final class Cover {
+        final StegoRaster raster;
+        final CoverCache.Template template;
+
+        Cover(StegoRaster raster, CoverCache.Template template) {
+            this.raster = raster;
+            this.template = template;
         }
-        
-        // Shuffle blocks deterministically using Vigenère key as seed
-        long seed = seedFromKey(vigenereKey);
-        Random rand = new Random(seed);
-        for (int i = blockCoords.size() - 1; i > 0; i--) {
-            int j = rand.nextInt(i + 1);
-            BlockCoord temp = blockCoords.get(i);
-            blockCoords.set(i, blockCoords.get(j));
-            blockCoords.set(j, temp);
+    }
+
+    /**
+     * Opens a cover for embedding, through the {@link CoverCache} when it is enabled.
+     */
+    static Cover openCover(File f) throws Exception {
+        CoverCache cache = CoverCache.getDefault();
+        if (!cache.isEnabled()) return new Cover(readCover(f), null);
+        CoverCache.Template template = cache.get(f);
+        return new Cover(template.copy(), template);
+    }
+
+    /**
+     * Embeds into a freshly opened cover, reusing the mask verdicts and coefficients cached for it.
+     */
+    static void embedPayload(Cover cover, byte[] data, String vigenereKey, String channel, BooleanSupplier cancelled) {
+        engine().embedPayload(cover, data, vigenereKey, channel, cancelled);
+    }
+
+    /**
+     * Raw PPM/PGM/BMP covers written back to the same format are processed through a
+     * memory-mapped file instead of a heap image.
+     */
+    static boolean isMappedRoundTrip(File input, File output) {
+        return extension(input).equals(extension(output)) && MappedRaster.isSupported(input.toPath());
+    }
+
+    static BufferedImage readImage(File f) throws Exception {
+        if (!f.exists()) throw new RuntimeException("Image not found: " + f.getPath());
+        try (StegoMetrics.Span span = StegoMetrics.start(StegoMetrics.Stage.IMAGE_READ)) {
+            BufferedImage img = ImageIO.read(f);
+            if (img == null) throw new RuntimeException("Unsupported image format: " + f);
+            span.bytes(f.length());
+            return img;
         }
+    }
 
-        int byteIndex = 0;
-        int bitIndex = 0;
+    /**
+     * Decodes a cover for embedding. Large covers (see {@link OffHeapRaster#isPreferred}) are
+     * copied off-heap, and the decoded image can be collected before embedding starts.
+     */
+    static StegoRaster readCover(File f) throws Exception {
+        BufferedImage img = readImage(f);
+        return OffHeapRaster.isPreferred(img) ? OffHeapRaster.copyOf(img) : StegoRaster.of(img);
+    }
 
-        // Process blocks in randomized order
-        for (BlockCoord coord : blockCoords) {
-            if (byteIndex >= data.length) break;
+    private static String extension(File f) {
+        String name = f.getName().toLowerCase();
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? "" : name.substring(dot);
+    }
 
-            double[][] channelBlock = getChannelLayer(img, coord.x, coord.y, channel);
-            double[][] dctBlock = applyDCT(channelBlock);
+    /**
+     * Embeds in place in the mapped output, see {@link StegoEngine#encodeMapped}. Only embedding
+     * into the cover itself is page-granular; a different output gets a full copy of the cover first.
+     */
+    static void encodeMapped(File input, File output, byte[] data, String vigenereKey, String channel, BooleanSupplier cancelled) throws Exception {
+        engine().encodeMapped(input, output, data, vigenereKey, channel, cancelled);
+    }
 
-            for (int k = 0; k < 8; k++) {
-                if (byteIndex >= data.length) break;
+    /**
+     * Embeds a message into an already decoded image, in place.
+     * Lets callers chain several channels and write the result once.
+     *
+     * @param img Image to modify
+     * @param message Message to embed
+     * @param vigenereKey Key for deterministic randomization
+     * @param channel Color channel to use: "RED", "GREEN", or "BLUE"
+     */
+    public static void embed(BufferedImage img, String message, String vigenereKey, String channel) {
+        embed(StegoRaster.of(img), message, vigenereKey, channel);
+    }
 
-                int bit = (data[byteIndex] >> (7 - bitIndex)) & 1;
-                embedBitRobust(dctBlock, COEFF_X[k], COEFF_Y[k], bit);
+    /**
+     * Embeds a message into a raster (heap image or memory-mapped file), in place.
+     */
+    public static void embed(StegoRaster img, String message, String vigenereKey, String channel) {
+        engine().embed(img, message, vigenereKey, channel);
+    }
 
-                bitIndex++;
-                if (bitIndex == 8) {
-                    bitIndex = 0;
-                    byteIndex++;
-                }
-            }
+    /**
+     * Embeds a message, polling {@code cancelled} between blocks so a long job can be abandoned mid-image.
+     *
+     * @throws CancellationException if {@code cancelled} turns true before the image is finished
+     */
+    static void embed(StegoRaster img, String message, String vigenereKey, String channel, BooleanSupplier cancelled) {
+        engine().embed(img, message, vigenereKey, channel, cancelled);
+    }
 
-            double[][] idctBlock = applyIDCT(dctBlock);
-            setChannelLayer(img, coord.x, coord.y, idctBlock, channel);
-        }
-        ImageIO.write(img, "png", new File(outputImage));
-        System.out.println("✅ DCT Stego: Saved to " + outputImage);
+    /**
+     * Embeds header + message bytes as produced by {@link PayloadHeader#wrap}.
+     */
+    static void embedPayload(StegoRaster img, byte[] data, String vigenereKey, String channel, BooleanSupplier cancelled) {
+        engine().embedPayload(img, data, vigenereKey, channel, cancelled);
+    }
+
+    /**
+     * Replaces the message of a stego image in place, transforming only the carrier blocks whose
+     * byte changes; see {@link StegoEngine#update(StegoRaster, String, String, String)}.
+     *
+     * @return Number of carrier blocks rewritten
+     */
+    public static int update(StegoRaster img, String newMessage, String vigenereKey, String channel) {
+        return engine().update(img, newMessage, vigenereKey, channel);
+    }
+
+    /**
+     * Replaces a known message, comparing against it instead of reading the carriers back; see
+     * {@link StegoEngine#update(StegoRaster, String, String, String, String)}.
+     */
+    public static int update(StegoRaster img, String oldMessage, String newMessage, String vigenereKey, String channel) {
+        return engine().update(img, oldMessage, newMessage, vigenereKey, channel);
+    }
+
+    /**
+     * Replaces the message of a stego image file; see {@link StegoEngine#update(String, String, String, String, String)}.
+     */
+    public static int update(String stegoImage, String outputImage, String newMessage, String vigenereKey, String channel) throws Exception {
+        return engine().update(stegoImage, outputImage, newMessage, vigenereKey, channel);
+    }
+
+    /**
+     * Message bytes one channel of the image can carry, from a full mask scan.
+     * About 1.5% of the carrier blocks is held back for blocks the encoder may have
+     * to skip when embedding into the mask channel.
+     */
+    public static int capacity(StegoRaster img) {
+        return engine().capacity(img);
     }
 
     /**
@@ -146,231 +232,97 @@ public class ImageStego {
      * @param inputImage Input stego image path
      * @param vigenereKey Key for deterministic randomization (must match encoding key)
      * @param channel Color channel to use: "RED", "GREEN", or "BLUE" (default: "BLUE")
-     * @return Decoded message
+     * @return Decoded message, or "" if the image carries no message for this key
      */
     public static String decode(String inputImage, String vigenereKey, String channel) throws Exception {
-        BufferedImage img = ImageIO.read(new File(inputImage));
-        int width = img.getWidth();
-        int height = img.getHeight();
-
-        // Sparse Randomized Sampling: Generate same shuffled block order as encoding
-        // Reference: USENIX Security 2025 - "SparSamp"
-        List<BlockCoord> blockCoords = new ArrayList<>();
-        for (int y = 0; y <= height - N; y += N) {
-            for (int x = 0; x <= width - N; x += N) {
-                // Use BLUE channel for variance calculation (same as encoding)
-                double[][] testBlock = getChannelLayer(img, x, y, CHANNEL_BLUE);
-                double[][] dctBlock = applyDCT(testBlock);
-                
-                // Texture-Adaptive Masking: Only include textured blocks (same as encoding)
-                double variance = getBlockVariance(dctBlock);
-                if (variance >= VARIANCE_THRESHOLD) {
-                    blockCoords.add(new BlockCoord(x, y));
-                }
-            }
-        }
-        
-        // Shuffle blocks deterministically using same seed as encoding
-        long seed = seedFromKey(vigenereKey);
-        Random rand = new Random(seed);
-        for (int i = blockCoords.size() - 1; i > 0; i--) {
-            int j = rand.nextInt(i + 1);
-            BlockCoord temp = blockCoords.get(i);
-            blockCoords.set(i, blockCoords.get(j));
-            blockCoords.set(j, temp);
-        }
+        return engine().decode(inputImage, vigenereKey, channel);
+    }
 
-        int len = 0;
-        byte[] data = null;
-        int byteIndex = 0;
-        int bitIndex = 0;
-        int currentByte = 0;
-        boolean readingLen = true;
-
-        // Process blocks in same randomized order as encoding
-        for (BlockCoord coord : blockCoords) {
-            double[][] channelBlock = getChannelLayer(img, coord.x, coord.y, channel);
-            double[][] dctBlock = applyDCT(channelBlock);
-
-            for (int k = 0; k < 8; k++) {
-                int bit = extractBitRobust(dctBlock, COEFF_X[k], COEFF_Y[k]);
-                currentByte = (currentByte << 1) | bit;
-                bitIndex++;
-
-                if (bitIndex == 8) {
-                    if (readingLen) {
-                        if (byteIndex == 0) len |= (currentByte << 24);
-                        if (byteIndex == 1) len |= (currentByte << 16);
-                        if (byteIndex == 2) len |= (currentByte << 8);
-                        if (byteIndex == 3) {
-                            len |= currentByte;
-                            readingLen = false;
-                            
-                            // Validate Length to prevent crash
-                            if (len <= 0 || len > 200000) { 
-                                System.err.println("⚠️ Error: Corruption detected in image header.");
-                                return ""; 
-                            }
-                            data = new byte[len];
-                        }
-                    } else {
-                        if (byteIndex - 4 < len) {
-                            data[byteIndex - 4] = (byte) currentByte;
-                        } else {
-                            return new String(data);
-                        }
-                    }
-                    
-                    byteIndex++;
-                    bitIndex = 0;
-                    currentByte = 0;
-                    if (!readingLen && (byteIndex - 4) >= len) return new String(data);
-                }
-            }
-        }
-        return (data != null) ? new String(data) : "";
+    /**
+     * Reads the message bytes from an image file.
+     *
+     * @param sharded true to accept only {@link ShardedStego} shards, false to accept only plain messages
+     * @return The message bytes, or null if the image carries no (matching) payload for this key
+     */
+    static byte[] decodePayload(File f, String vigenereKey, String channel, boolean sharded) throws Exception {
+        return engine().decodePayload(f, vigenereKey, channel, sharded);
     }
 
     /**
-     * Calculates the variance of DCT coefficients in a block.
-     * High variance indicates textured areas (good for embedding).
-     * Low variance indicates smooth areas (should be skipped to avoid visible artifacts).
-     * Reference: ACM TOMM 2024 - "Enhancing Adversarial Embedding"
-     * 
-     * @param dctBlock The DCT-transformed 8x8 block
-     * @return Variance of the DCT coefficients
+     * Extracts a message from an already opened raster.
      */
-    private static double getBlockVariance(double[][] dctBlock) {
-        // Calculate mean of DCT coefficients (excluding DC component at [0][0])
-        double sum = 0.0;
-        int count = 0;
-        for (int u = 0; u < N; u++) {
-            for (int v = 0; v < N; v++) {
-                if (u != 0 || v != 0) { // Exclude DC component
-                    sum += Math.abs(dctBlock[u][v]);
-                    count++;
-                }
-            }
-        }
-        if (count == 0) return 0.0;
-        double mean = sum / count;
-        
-        // Calculate variance
-        double sumSqDiff = 0.0;
-        for (int u = 0; u < N; u++) {
-            for (int v = 0; v < N; v++) {
-                if (u != 0 || v != 0) {
-                    double diff = Math.abs(dctBlock[u][v]) - mean;
-                    sumSqDiff += diff * diff;
-                }
-            }
-        }
-        
-        return sumSqDiff / count;
+    public static String extract(StegoRaster img, String vigenereKey, String channel) {
+        return extract(img, vigenereKey, channel, NOT_CANCELLED);
     }
-    
-    // --- ROBUST EMBEDDING LOGIC (Quantization) ---
-    private static void embedBitRobust(double[][] dct, int u, int v, int bit) {
-        double val = dct[u][v];
-        
-        // We quantize the value to the nearest multiple of PERSISTENCE
-        // If we want to hide '0', we force it to an EVEN multiple
-        // If we want to hide '1', we force it to an ODD multiple
-        
-        double quantized = Math.round(val / PERSISTENCE);
-        int parity = (int) Math.abs(quantized) % 2;
-        
-        if (parity != bit) {
-            // Move to the nearest neighbor with correct parity
-            if (val > 0) quantized += 1; // e.g. 4 becomes 5
-            else quantized -= 1;
-        }
-        
-        dct[u][v] = quantized * PERSISTENCE;
+
+    /**
+     * Extracts a message, polling {@code cancelled} between blocks.
+     *
+     * @throws CancellationException if {@code cancelled} turns true before extraction is finished
+     */
+    static String extract(StegoRaster img, String vigenereKey, String channel, BooleanSupplier cancelled) {
+        return engine().extract(img, vigenereKey, channel, cancelled);
     }
-    
-    private static int extractBitRobust(double[][] dct, int u, int v) {
-        double val = dct[u][v];
-        double quantized = Math.round(val / PERSISTENCE);
-        return (int) Math.abs(quantized) % 2;
+
+    /**
+     * Reads and verifies the payload; see {@link #decodePayload}.
+     */
+    static byte[] extractPayload(StegoRaster img, String vigenereKey, String channel, boolean sharded, BooleanSupplier cancelled) {
+        return engine().extractPayload(img, vigenereKey, channel, sharded, cancelled);
     }
 
-    // --- STANDARD MATH HELPERS ---
-    
     /**
-     * Extracts a color channel layer from an image block.
-     * Reference: ACM CCS 2025 - "Split Unlearning"
-     * 
-     * @param img The image
-     * @param startX Starting X coordinate
-     * @param startY Starting Y coordinate
-     * @param channel Color channel: "RED", "GREEN", or "BLUE"
-     * @return 8x8 block of channel values
+     * Writes the message to {@code out} while it is being extracted, one chunk at a time, so
+     * the consumer can start on the first bytes before the last blocks are read. The checksum
+     * covers the whole message and is only checked after the last chunk has been written.
+     *
+     * @return false if the image carries no message for this key (nothing is written)
+     * @throws IOException if the message is truncated or fails its checksum; the bytes already
+     *         written must then be discarded
      */
-    private static double[][] getChannelLayer(BufferedImage img, int startX, int startY, String channel) {
-        double[][] block = new double[N][N];
-        int shift;
-        switch (channel.toUpperCase()) {
-            case "RED":
-                shift = 16;
-                break;
-            case "GREEN":
-                shift = 8;
-                break;
-            case "BLUE":
-            default:
-                shift = 0;
-                break;
-        }
-        
-        for (int y = 0; y < N; y++) {
-            for (int x = 0; x < N; x++) {
-                block[y][x] = (img.getRGB(startX + x, startY + y) >> shift) & 0xFF;
-            }
-        }
-        return block;
+    public static boolean extract(StegoRaster img, String vigenereKey, String channel, OutputStream out) throws IOException {
+        return engine().extract(img, vigenereKey, channel, out);
     }
 
     /**
-     * Sets a color channel layer in an image block.
-     * Reference: ACM CCS 2025 - "Split Unlearning"
-     * 
-     * @param img The image
-     * @param startX Starting X coordinate
-     * @param startY Starting Y coordinate
-     * @param block 8x8 block of channel values
-     * @param channel Color channel: "RED", "GREEN", or "BLUE"
+     * Returns the messages of the given channels, in order, as one stream. Extraction runs on a
+     * background thread and stays at most {@code bufferBytes} ahead of the reader, so the
+     * messages are never held in memory as a whole. Channels without a message for this key
+     * contribute nothing. A truncated or corrupted message is reported by the read that would
+     * otherwise return end of stream. Closing the stream early stops the extraction.
+     *
+     * Usage:
+     * <pre>
+     * try (Reader in = new InputStreamReader(ImageStego.openStream(raster, key, 64 * 1024,
+     *         ImageStego.CHANNEL_RED, ImageStego.CHANNEL_GREEN), StandardCharsets.UTF_8)) {
+     *     ...
+     * }
+     * </pre>
      */
-    private static void setChannelLayer(BufferedImage img, int startX, int startY, double[][] block, String channel) {
-        for (int y = 0; y < N; y++) {
-            for (int x = 0; x < N; x++) {
-                int rgb = img.getRGB(startX + x, startY + y);
-                int r = (rgb >> 16) & 0xFF;
-                int g = (rgb >> 8) & 0xFF;
-                int b = rgb & 0xFF;
-                
-                int value = (int) Math.round(block[y][x]);
-                if (value < 0) value = 0;
-                if (value > 255) value = 255;
-                
-                switch (channel.toUpperCase()) {
-                    case "RED":
-                        r = value;
-                        break;
-                    case "GREEN":
-                        g = value;
-                        break;
-                    case "BLUE":
-                    default:
-                        b = value;
-                        break;
-                }
-                
-                img.setRGB(startX + x, startY + y, (r << 16) | (g << 8) | b);
-            }
-        }
+    public static InputStream openStream(StegoRaster img, String vigenereKey, int bufferBytes, String... channels) throws IOException {
+        return engine().openStream(img, vigenereKey, bufferBytes, channels);
     }
-    
+
+    /**
+     * Quick check whether an image carries a message for this key.
+     * Reads only the header from the first few carrier blocks of each texture mask; a clean image
+     * or a wrong key is usually rejected after one or two blocks per mask. For PNG and other compressed
+     * covers, decoding the file dominates; raw PPM/PGM/BMP covers are probed through a mapping.
+     *
+     * @return true if the tag, format version and length are valid (the CRC is only checked by decode)
+     */
+    public static boolean probe(String inputImage, String vigenereKey, String channel) throws Exception {
+        return engine().probe(inputImage, vigenereKey, channel);
+    }
+
+    public static boolean probe(String inputImage, String vigenereKey) throws Exception {
+        return probe(inputImage, vigenereKey, CHANNEL_BLUE);
+    }
+
+    public static boolean probe(StegoRaster img, String vigenereKey, String channel) {
+        return engine().probe(img, vigenereKey, channel);
+    }
+
     // Backward compatibility: default to BLUE channel
     public static void encode(String inputImage, String outputImage, String message, String vigenereKey) throws Exception {
         encode(inputImage, outputImage, message, vigenereKey, CHANNEL_BLUE);
@@ -379,40 +331,4 @@ public class ImageStego {
     public static String decode(String inputImage, String vigenereKey) throws Exception {
         return decode(inputImage, vigenereKey, CHANNEL_BLUE);
     }
-
-    private static double[][] applyDCT(double[][] matrix) {
-        double[][] dct = new double[N][N];
-        for (int u = 0; u < N; u++) {
-            for (int v = 0; v < N; v++) {
-                double sum = 0.0;
-                double c1 = (u == 0) ? 1.0 / Math.sqrt(2) : 1.0;
-                double c2 = (v == 0) ? 1.0 / Math.sqrt(2) : 1.0;
-                for (int x = 0; x < N; x++) {
-                    for (int y = 0; y < N; y++) {
-                        sum += matrix[x][y] * Math.cos(((2 * x + 1) * u * Math.PI) / 16.0) * Math.cos(((2 * y + 1) * v * Math.PI) / 16.0);
-                    }
-                }
-                dct[u][v] = 0.25 * c1 * c2 * sum;
-            }
-        }
-        return dct;
-    }
-
-    private static double[][] applyIDCT(double[][] dctMatrix) {
-        double[][] matrix = new double[N][N];
-        for (int x = 0; x < N; x++) {
-            for (int y = 0; y < N; y++) {
-                double sum = 0.0;
-                for (int u = 0; u < N; u++) {
-                    for (int v = 0; v < N; v++) {
-                        double c1 = (u == 0) ? 1.0 / Math.sqrt(2) : 1.0;
-                        double c2 = (v == 0) ? 1.0 / Math.sqrt(2) : 1.0;
-                        sum += c1 * c2 * dctMatrix[u][v] * Math.cos(((2 * x + 1) * u * Math.PI) / 16.0) * Math.cos(((2 * y + 1) * v * Math.PI) / 16.0);
-                    }
-                }
-                matrix[x][y] = 0.25 * sum;
-            }
-        }
-        return matrix;
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,711 @@
+package com.stego;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Entropy-layer codec for baseline (Huffman, 8-bit) JPEG files.
+ * Decodes the scans into quantized DCT coefficients and re-encodes them with
+ * optimized Huffman tables, so coefficients can be edited without ever running
+ * an inverse transform or touching the pixel domain.
+ * Reference: ITU-T T.81 - Annex F (sequential Huffman coding), Annex K.2 (optimal tables)
+ */
+public class JpegCodec {
+
+    private static final int SOF0 = 0xC0;
+    private static final int SOF1 = 0xC1;
+    private static final int DHT = 0xC4;
+    private static final int SOI = 0xD8;
+    private static final int EOI = 0xD9;
+    private static final int SOS = 0xDA;
+    private static final int DQT = 0xDB;
+    private static final int DRI = 0xDD;
+
+    /** Natural (row-major) index of the k-th coefficient in zig-zag order. */
+    static final int[] ZIGZAG = {
+         0,  1,  8, 16,  9,  2,  3, 10,
+        17, 24, 32, 25, 18, 11,  4,  5,
+        12, 19, 26, 33, 40, 48, 41, 34,
+        27, 20, 13,  6,  7, 14, 21, 28,
+        35, 42, 49, 56, 57, 50, 43, 36,
+        29, 22, 15, 23, 30, 37, 44, 51,
+        58, 59, 52, 45, 38, 31, 39, 46,
+        53, 60, 61, 54, 47, 55, 62, 63
+    };
+
+    /**
+     * One colour component of the frame with its quantized coefficients.
+     * Blocks are stored in natural order, 64 coefficients per block, on a grid padded to whole MCUs.
+     */
+    public static class Component {
+        int id;
+        int h, v;
+        int quantTable;
+        int blocksPerLine;
+        int blocksPerColumn;
+        // Blocks that actually cover image pixels (the rest is MCU padding)
+        int visibleBlocksPerLine;
+        int visibleBlocksPerColumn;
+        int[] coeffs;
+
+        int blockOffset(int row, int col) {
+            return (row * blocksPerLine + col) * 64;
+        }
+    }
+
+    /** A preserved marker segment (APPn, COM, DQT, SOF, DRI, ...) and the scan it precedes. */
+    private static class Segment {
+        final byte[] raw;
+        final int beforeScan;
+
+        Segment(byte[] raw, int beforeScan) {
+            this.raw = raw;
+            this.beforeScan = beforeScan;
+        }
+    }
+
+    private static class Scan {
+        int[] components;
+        int[] dcTables;
+        int[] acTables;
+        int restartInterval;
+    }
+
+    /** Decoded coefficient-domain view of a JPEG file. */
+    public static class JpegImage {
+        int width, height;
+        int maxH = 1, maxV = 1;
+        int mcusPerLine, mcusPerColumn;
+        final List<Component> components = new ArrayList<>();
+        final int[][] quantTables = new int[4][];
+        private final List<Segment> segments = new ArrayList<>();
+        private final List<Scan> scans = new ArrayList<>();
+
+        public int getWidth() { return width; }
+        public int getHeight() { return height; }
+    }
+
+    /**
+     * Parses a baseline JPEG and entropy-decodes all scans.
+     *
+     * @param data Complete JPEG file contents
+     * @return The coefficient-domain image
+     * @throws UnsupportedJpegException if the file is not a baseline 8-bit Huffman JPEG
+     */
+    public static JpegImage read(byte[] data) throws UnsupportedJpegException {
+        if (data.length < 4 || (data[0] & 0xFF) != 0xFF || (data[1] & 0xFF) != SOI) {
+            throw new RuntimeException("Not a JPEG file (missing SOI marker)");
+        }
+        JpegImage img = new JpegImage();
+        HuffmanDecoder[] dcDecoders = new HuffmanDecoder[4];
+        HuffmanDecoder[] acDecoders = new HuffmanDecoder[4];
+        int restartInterval = 0;
+        boolean frameSeen = false;
+        int pos = 2;
+
+        while (pos < data.length) {
+            if ((data[pos] & 0xFF) != 0xFF) {
+                throw new RuntimeException("Corrupt JPEG: expected marker at offset " + pos);
+            }
+            int marker = data[pos + 1] & 0xFF;
+            if (marker == 0xFF) { // fill byte
+                pos++;
+                continue;
+            }
+            pos += 2;
+            if (marker == EOI) break;
+
+            int segLen = ((data[pos] & 0xFF) << 8) | (data[pos + 1] & 0xFF);
+            int segStart = pos + 2;
+            int segEnd = pos + segLen;
+
+            if (marker == SOF0 || marker == SOF1) {
+                parseFrame(img, data, segStart);
+                frameSeen = true;
+                img.segments.add(new Segment(copyOf(data, pos - 2, segEnd), img.scans.size()));
+            } else if (marker >= 0xC2 && marker <= 0xCF && marker != DHT && marker != 0xC8 && marker != 0xCC) {
+                throw new UnsupportedJpegException(
+                    "Only baseline Huffman JPEG is supported (found SOF marker 0x" + Integer.toHexString(marker) + ")");
+            } else if (marker == DHT) {
+                parseHuffmanTables(data, segStart, segEnd, dcDecoders, acDecoders);
+            } else if (marker == DQT) {
+                parseQuantTables(img, data, segStart, segEnd);
+                img.segments.add(new Segment(copyOf(data, pos - 2, segEnd), img.scans.size()));
+            } else if (marker == DRI) {
+                restartInterval = ((data[segStart] & 0xFF) << 8) | (data[segStart + 1] & 0xFF);
+                img.segments.add(new Segment(copyOf(data, pos - 2, segEnd), img.scans.size()));
+            } else if (marker == SOS) {
+                if (!frameSeen) throw new RuntimeException("Corrupt JPEG: scan before frame header");
+                Scan scan = parseScanHeader(img, data, segStart);
+                scan.restartInterval = restartInterval;
+                pos = decodeScan(img, scan, data, segEnd, dcDecoders, acDecoders);
+                img.scans.add(scan);
+                continue;
+            } else {
+                // APPn, COM and anything else we do not interpret is carried over untouched
+                img.segments.add(new Segment(copyOf(data, pos - 2, segEnd), img.scans.size()));
+            }
+            pos = segEnd;
+        }
+        if (img.scans.isEmpty()) throw new RuntimeException("Corrupt JPEG: no scan data");
+        return img;
+    }
+
+    /**
+     * Re-encodes the (possibly modified) coefficients.
+     * All non-Huffman marker segments are written back unchanged; every scan gets
+     * freshly optimized Huffman tables since edited coefficients may need new symbols.
+     */
+    public static byte[] write(JpegImage img) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(0xFF);
+        out.write(SOI);
+        for (int s = 0; s < img.scans.size(); s++) {
+            for (Segment seg : img.segments) {
+                if (seg.beforeScan == s) out.write(seg.raw, 0, seg.raw.length);
+            }
+            encodeScan(img, img.scans.get(s), out);
+        }
+        for (Segment seg : img.segments) {
+            if (seg.beforeScan == img.scans.size()) out.write(seg.raw, 0, seg.raw.length);
+        }
+        out.write(0xFF);
+        out.write(EOI);
+        return out.toByteArray();
+    }
+
+    // --- HEADER PARSING ---
+
+    private static void parseFrame(JpegImage img, byte[] data, int p) throws UnsupportedJpegException {
+        if ((data[p] & 0xFF) != 8) throw new UnsupportedJpegException("Only 8-bit JPEG is supported");
+        img.height = ((data[p + 1] & 0xFF) << 8) | (data[p + 2] & 0xFF);
+        img.width = ((data[p + 3] & 0xFF) << 8) | (data[p + 4] & 0xFF);
+        if (img.height == 0 || img.width == 0) throw new UnsupportedJpegException("JPEG with DNL height is not supported");
+        int count = data[p + 5] & 0xFF;
+        p += 6;
+        for (int i = 0; i < count; i++, p += 3) {
+            Component c = new Component();
+            c.id = data[p] & 0xFF;
+            c.h = (data[p + 1] >> 4) & 0x0F;
+            c.v = data[p + 1] & 0x0F;
+            c.quantTable = data[p + 2] & 0x0F;
+            img.maxH = Math.max(img.maxH, c.h);
+            img.maxV = Math.max(img.maxV, c.v);
+            img.components.add(c);
+        }
+        img.mcusPerLine = ceilDiv(img.width, 8 * img.maxH);
+        img.mcusPerColumn = ceilDiv(img.height, 8 * img.maxV);
+        for (Component c : img.components) {
+            c.blocksPerLine = img.mcusPerLine * c.h;
+            c.blocksPerColumn = img.mcusPerColumn * c.v;
+            c.visibleBlocksPerLine = ceilDiv(ceilDiv(img.width * c.h, img.maxH), 8);
+            c.visibleBlocksPerColumn = ceilDiv(ceilDiv(img.height * c.v, img.maxV), 8);
+            c.coeffs = new int[c.blocksPerLine * c.blocksPerColumn * 64];
+        }
+    }
+
+    private static void parseQuantTables(JpegImage img, byte[] data, int p, int end) {
+        while (p < end) {
+            int precision = (data[p] >> 4) & 0x0F;
+            int id = data[p] & 0x0F;
+            p++;
+            int[] table = new int[64];
+            for (int k = 0; k < 64; k++) {
+                if (precision == 0) {
+                    table[ZIGZAG[k]] = data[p++] & 0xFF;
+                } else {
+                    table[ZIGZAG[k]] = ((data[p] & 0xFF) << 8) | (data[p + 1] & 0xFF);
+                    p += 2;
+                }
+            }
+            img.quantTables[id] = table;
+        }
+    }
+
+    private static void parseHuffmanTables(byte[] data, int p, int end, HuffmanDecoder[] dc, HuffmanDecoder[] ac) {
+        while (p < end) {
+            int tableClass = (data[p] >> 4) & 0x0F;
+            int id = data[p] & 0x0F;
+            p++;
+            int[] bits = new int[17];
+            int total = 0;
+            for (int i = 1; i <= 16; i++) {
+                bits[i] = data[p++] & 0xFF;
+                total += bits[i];
+            }
+            int[] values = new int[total];
+            for (int i = 0; i < total; i++) values[i] = data[p++] & 0xFF;
+            HuffmanDecoder decoder = new HuffmanDecoder(bits, values);
+            if (tableClass == 0) dc[id] = decoder;
+            else ac[id] = decoder;
+        }
+    }
+
+    private static Scan parseScanHeader(JpegImage img, byte[] data, int p) throws UnsupportedJpegException {
+        int count = data[p] & 0xFF;
+        Scan scan = new Scan();
+        scan.components = new int[count];
+        scan.dcTables = new int[count];
+        scan.acTables = new int[count];
+        p++;
+        for (int i = 0; i < count; i++, p += 2) {
+            int id = data[p] & 0xFF;
+            int index = -1;
+            for (int c = 0; c < img.components.size(); c++) {
+                if (img.components.get(c).id == id) index = c;
+            }
+            if (index < 0) throw new RuntimeException("Corrupt JPEG: scan references unknown component " + id);
+            scan.components[i] = index;
+            scan.dcTables[i] = (data[p + 1] >> 4) & 0x0F;
+            scan.acTables[i] = data[p + 1] & 0x0F;
+        }
+        int ss = data[p] & 0xFF;
+        int se = data[p + 1] & 0xFF;
+        int ahal = data[p + 2] & 0xFF;
+        if (ss != 0 || se != 63 || ahal != 0) {
+            throw new UnsupportedJpegException("Progressive/spectral-selection scans are not supported");
+        }
+        return scan;
+    }
+
+    // --- SCAN TRAVERSAL ---
+
+    /** Visits every block of a scan in coding order. */
+    private interface BlockVisitor {
+        void visit(int scanComponent, Component comp, int offset);
+    }
+
+    /** Walks the MCUs of a scan in coding order; each MCU hands out its blocks. */
+    private static void forEachMcu(JpegImage img, Scan scan, McuVisitor visitor) {
+        if (scan.components.length == 1) {
+            // Non-interleaved: one block per MCU, only the blocks that cover the image
+            Component c = img.components.get(scan.components[0]);
+            int mcu = 0;
+            for (int row = 0; row < c.visibleBlocksPerColumn; row++) {
+                for (int col = 0; col < c.visibleBlocksPerLine; col++) {
+                    final int r = row, cl = col;
+                    visitor.visit(mcu++, v -> v.visit(0, c, c.blockOffset(r, cl)));
+                }
+            }
+            return;
+        }
+        int mcu = 0;
+        for (int my = 0; my < img.mcusPerColumn; my++) {
+            for (int mx = 0; mx < img.mcusPerLine; mx++) {
+                final int fx = mx, fy = my;
+                visitor.visit(mcu++, v -> {
+                    for (int i = 0; i < scan.components.length; i++) {
+                        Component c = img.components.get(scan.components[i]);
+                        for (int by = 0; by < c.v; by++) {
+                            for (int bx = 0; bx < c.h; bx++) {
+                                v.visit(i, c, c.blockOffset(fy * c.v + by, fx * c.h + bx));
+                            }
+                        }
+                    }
+                });
+            }
+        }
+    }
+
+    private interface McuVisitor {
+        void visit(int mcuIndex, Consumer<BlockVisitor> blocks);
+    }
+
+    // --- DECODING ---
+
+    private static int decodeScan(JpegImage img, Scan scan, byte[] data, int start,
+                                  HuffmanDecoder[] dcDecoders, HuffmanDecoder[] acDecoders) {
+        BitReader reader = new BitReader(data, start);
+        int[] pred = new int[scan.components.length];
+        forEachMcu(img, scan, (mcu, blocks) -> {
+            if (scan.restartInterval > 0 && mcu > 0 && mcu % scan.restartInterval == 0) {
+                reader.restart();
+                Arrays.fill(pred, 0);
+            }
+            blocks.accept((i, comp, offset) -> {
+                HuffmanDecoder dc = dcDecoders[scan.dcTables[i]];
+                HuffmanDecoder ac = acDecoders[scan.acTables[i]];
+                if (dc == null || ac == null) throw new RuntimeException("Corrupt JPEG: missing Huffman table");
+                int t = dc.decode(reader);
+                int diff = t == 0 ? 0 : extend(reader.bits(t), t);
+                pred[i] += diff;
+                comp.coeffs[offset] = pred[i];
+                for (int k = 1; k < 64; k++) {
+                    int rs = ac.decode(reader);
+                    int r = rs >> 4;
+                    int s = rs & 0x0F;
+                    if (s == 0) {
+                        if (r != 15) break;
+                        k += 15;
+                        continue;
+                    }
+                    k += r;
+                    if (k > 63) throw new RuntimeException("Corrupt JPEG: coefficient index out of range");
+                    comp.coeffs[offset + ZIGZAG[k]] = extend(reader.bits(s), s);
+                }
+            });
+        });
+        return reader.endOfScan();
+    }
+
+    private static int extend(int value, int size) {
+        return value < (1 << (size - 1)) ? value - (1 << size) + 1 : value;
+    }
+
+    private static class HuffmanDecoder {
+        private final int[] maxCode = new int[18];
+        private final int[] valPtr = new int[17];
+        private final int[] minCode = new int[17];
+        private final int[] values;
+
+        HuffmanDecoder(int[] bits, int[] values) {
+            this.values = values;
+            int code = 0;
+            int k = 0;
+            for (int len = 1; len <= 16; len++) {
+                valPtr[len] = k;
+                minCode[len] = code;
+                code += bits[len];
+                k += bits[len];
+                maxCode[len] = bits[len] == 0 ? -1 : code - 1;
+                code <<= 1;
+            }
+            maxCode[17] = Integer.MAX_VALUE;
+        }
+
+        int decode(BitReader reader) {
+            int code = reader.bit();
+            for (int len = 1; len <= 16; len++) {
+                if (code <= maxCode[len]) {
+                    return values[valPtr[len] + code - minCode[len]];
+                }
+                code = (code << 1) | reader.bit();
+            }
+            throw new RuntimeException("Corrupt JPEG: invalid Huffman code");
+        }
+    }
+
+    private static class BitReader {
+        private final byte[] data;
+        private int pos;
+        private int buffer;
+        private int count;
+        private boolean hitMarker;
+
+        BitReader(byte[] data, int pos) {
+            this.data = data;
+            this.pos = pos;
+        }
+
+        int bit() {
+            if (count == 0) fill();
+            count--;
+            return (buffer >> count) & 1;
+        }
+
+        int bits(int n) {
+            int v = 0;
+            for (int i = 0; i < n; i++) v = (v << 1) | bit();
+            return v;
+        }
+
+        private void fill() {
+            if (hitMarker || pos >= data.length) {
+                // Past the end of entropy-coded data: decoders feed zero bits
+                buffer = 0;
+                count = 8;
+                return;
+            }
+            int b = data[pos] & 0xFF;
+            if (b == 0xFF) {
+                int next = pos + 1 < data.length ? data[pos + 1] & 0xFF : 0;
+                if (next == 0x00) {
+                    pos += 2;
+                } else {
+                    hitMarker = true;
+                    buffer = 0;
+                    count = 8;
+                    return;
+                }
+            } else {
+                pos++;
+            }
+            buffer = b;
+            count = 8;
+        }
+
+        /** Discards buffered bits and consumes the expected RSTn marker. */
+        void restart() {
+            count = 0;
+            hitMarker = false;
+            while (pos + 1 < data.length && (data[pos] & 0xFF) == 0xFF && (data[pos + 1] & 0xFF) == 0xFF) pos++;
+            if (pos + 1 < data.length && (data[pos] & 0xFF) == 0xFF
+                    && (data[pos + 1] & 0xFF) >= 0xD0 && (data[pos + 1] & 0xFF) <= 0xD7) {
+                pos += 2;
+            }
+        }
+
+        /** Position of the first marker after the entropy-coded segment. */
+        int endOfScan() {
+            int p = pos;
+            while (p + 1 < data.length) {
+                if ((data[p] & 0xFF) == 0xFF) {
+                    int next = data[p + 1] & 0xFF;
+                    if (next != 0x00 && (next < 0xD0 || next > 0xD7)) return p;
+                    p += 2;
+                } else {
+                    p++;
+                }
+            }
+            return data.length;
+        }
+    }
+
+    // --- ENCODING ---
+
+    private static void encodeScan(JpegImage img, Scan scan, ByteArrayOutputStream out) {
+        // Pass 1: gather symbol statistics for every table referenced by this scan
+        long[][] dcFreq = new long[4][257];
+        long[][] acFreq = new long[4][257];
+        int[] pred = new int[scan.components.length];
+        forEachMcu(img, scan, (mcu, blocks) -> {
+            if (scan.restartInterval > 0 && mcu > 0 && mcu % scan.restartInterval == 0) {
+                Arrays.fill(pred, 0);
+            }
+            blocks.accept((i, comp, offset) -> {
+                int dc = comp.coeffs[offset];
+                dcFreq[scan.dcTables[i]][bitLength(dc - pred[i])]++;
+                pred[i] = dc;
+                int run = 0;
+                for (int k = 1; k < 64; k++) {
+                    int coef = comp.coeffs[offset + ZIGZAG[k]];
+                    if (coef == 0) {
+                        run++;
+                        continue;
+                    }
+                    while (run > 15) {
+                        acFreq[scan.acTables[i]][0xF0]++;
+                        run -= 16;
+                    }
+                    acFreq[scan.acTables[i]][(run << 4) | bitLength(coef)]++;
+                    run = 0;
+                }
+                if (run > 0) acFreq[scan.acTables[i]][0x00]++;
+            });
+        });
+
+        HuffmanEncoder[] dcEncoders = new HuffmanEncoder[4];
+        HuffmanEncoder[] acEncoders = new HuffmanEncoder[4];
+        ByteArrayOutputStream dht = new ByteArrayOutputStream();
+        for (int i = 0; i < scan.components.length; i++) {
+            int dcId = scan.dcTables[i];
+            int acId = scan.acTables[i];
+            if (dcEncoders[dcId] == null) {
+                dcEncoders[dcId] = HuffmanEncoder.optimal(dcFreq[dcId]);
+                dcEncoders[dcId].writeTable(dht, 0, dcId);
+            }
+            if (acEncoders[acId] == null) {
+                acEncoders[acId] = HuffmanEncoder.optimal(acFreq[acId]);
+                acEncoders[acId].writeTable(dht, 1, acId);
+            }
+        }
+        byte[] tables = dht.toByteArray();
+        out.write(0xFF);
+        out.write(DHT);
+        out.write((tables.length + 2) >> 8);
+        out.write((tables.length + 2) & 0xFF);
+        out.write(tables, 0, tables.length);
+
+        int n = scan.components.length;
+        int sosLen = 6 + 2 * n;
+        out.write(0xFF);
+        out.write(SOS);
+        out.write(sosLen >> 8);
+        out.write(sosLen & 0xFF);
+        out.write(n);
+        for (int i = 0; i < n; i++) {
+            out.write(img.components.get(scan.components[i]).id);
+            out.write((scan.dcTables[i] << 4) | scan.acTables[i]);
+        }
+        out.write(0);
+        out.write(63);
+        out.write(0);
+
+        // Pass 2: entropy-code the blocks
+        BitWriter writer = new BitWriter(out);
+        Arrays.fill(pred, 0);
+        int[] restartCount = {0};
+        forEachMcu(img, scan, (mcu, blocks) -> {
+            if (scan.restartInterval > 0 && mcu > 0 && mcu % scan.restartInterval == 0) {
+                writer.flush();
+                out.write(0xFF);
+                out.write(0xD0 + (restartCount[0]++ & 7));
+                Arrays.fill(pred, 0);
+            }
+            blocks.accept((i, comp, offset) -> {
+                HuffmanEncoder dcEnc = dcEncoders[scan.dcTables[i]];
+                HuffmanEncoder acEnc = acEncoders[scan.acTables[i]];
+                int dc = comp.coeffs[offset];
+                int diff = dc - pred[i];
+                pred[i] = dc;
+                int size = bitLength(diff);
+                dcEnc.emit(writer, size);
+                if (size > 0) writer.write(diff < 0 ? diff - 1 : diff, size);
+                int run = 0;
+                for (int k = 1; k < 64; k++) {
+                    int coef = comp.coeffs[offset + ZIGZAG[k]];
+                    if (coef == 0) {
+                        run++;
+                        continue;
+                    }
+                    while (run > 15) {
+                        acEnc.emit(writer, 0xF0);
+                        run -= 16;
+                    }
+                    int s = bitLength(coef);
+                    acEnc.emit(writer, (run << 4) | s);
+                    writer.write(coef < 0 ? coef - 1 : coef, s);
+                    run = 0;
+                }
+                if (run > 0) acEnc.emit(writer, 0x00);
+            });
+        });
+        writer.flush();
+    }
+
+    private static int bitLength(int value) {
+        return 32 - Integer.numberOfLeadingZeros(Math.abs(value));
+    }
+
+    private static class HuffmanEncoder {
+        private final int[] bits;
+        private final int[] values;
+        private final int[] codes = new int[256];
+        private final int[] sizes = new int[256];
+
+        private HuffmanEncoder(int[] bits, int[] values) {
+            this.bits = bits;
+            this.values = values;
+            int code = 0;
+            int k = 0;
+            for (int len = 1; len <= 16; len++) {
+                for (int i = 0; i < bits[len]; i++) {
+                    codes[values[k]] = code++;
+                    sizes[values[k]] = len;
+                    k++;
+                }
+                code <<= 1;
+            }
+        }
+
+        /**
+         * Builds a length-limited optimal table from symbol frequencies.
+         * Reference: ITU-T T.81 Annex K.2 (same procedure as libjpeg's jpeg_gen_optimal_table)
+         */
+        static HuffmanEncoder optimal(long[] symbolFreq) {
+            long[] freq = Arrays.copyOf(symbolFreq, 257);
+            freq[256] = 1; // reserved so no real symbol gets the all-ones code
+            int[] codeSize = new int[257];
+            int[] others = new int[257];
+            Arrays.fill(others, -1);
+
+            while (true) {
+                int c1 = -1;
+                long v = Long.MAX_VALUE;
+                for (int i = 0; i <= 256; i++) {
+                    if (freq[i] != 0 && freq[i] <= v) { v = freq[i]; c1 = i; }
+                }
+                int c2 = -1;
+                v = Long.MAX_VALUE;
+                for (int i = 0; i <= 256; i++) {
+                    if (freq[i] != 0 && freq[i] <= v && i != c1) { v = freq[i]; c2 = i; }
+                }
+                if (c2 < 0) break;
+                freq[c1] += freq[c2];
+                freq[c2] = 0;
+                codeSize[c1]++;
+                while (others[c1] >= 0) { c1 = others[c1]; codeSize[c1]++; }
+                others[c1] = c2;
+                codeSize[c2]++;
+                while (others[c2] >= 0) { c2 = others[c2]; codeSize[c2]++; }
+            }
+
+            int[] bits = new int[33];
+            for (int i = 0; i <= 256; i++) {
+                if (codeSize[i] > 0) bits[codeSize[i]]++;
+            }
+            for (int i = 32; i > 16; i--) {
+                while (bits[i] > 0) {
+                    int j = i - 2;
+                    while (bits[j] == 0) j--;
+                    bits[i] -= 2;
+                    bits[i - 1]++;
+                    bits[j + 1] += 2;
+                    bits[j]--;
+                }
+            }
+            int i = 16;
+            while (bits[i] == 0) i--;
+            bits[i]--; // drop the reserved symbol
+
+            List<Integer> ordered = new ArrayList<>();
+            for (int len = 1; len <= 32; len++) {
+                for (int s = 0; s < 256; s++) {
+                    if (codeSize[s] == len) ordered.add(s);
+                }
+            }
+            int[] values = new int[ordered.size()];
+            for (int k = 0; k < values.length; k++) values[k] = ordered.get(k);
+            return new HuffmanEncoder(Arrays.copyOf(bits, 17), values);
+        }
+
+        void writeTable(ByteArrayOutputStream out, int tableClass, int id) {
+            out.write((tableClass << 4) | id);
+            for (int len = 1; len <= 16; len++) out.write(bits[len]);
+            for (int value : values) out.write(value);
+        }
+
+        void emit(BitWriter writer, int symbol) {
+            if (sizes[symbol] == 0) throw new IllegalStateException("Symbol missing from Huffman table: " + symbol);
+            writer.write(codes[symbol], sizes[symbol]);
+        }
+    }
+
+    private static class BitWriter {
+        private final ByteArrayOutputStream out;
+        private int buffer;
+        private int count;
+
+        BitWriter(ByteArrayOutputStream out) {
+            this.out = out;
+        }
+
+        void write(int value, int size) {
+            for (int i = size - 1; i >= 0; i--) {
+                buffer = (buffer << 1) | ((value >> i) & 1);
+                if (++count == 8) {
+                    out.write(buffer);
+                    if (buffer == 0xFF) out.write(0x00); // byte stuffing
+                    buffer = 0;
+                    count = 0;
+                }
+            }
+        }
+
+        /** Pads the last partial byte with 1-bits. */
+        void flush() {
+            if (count > 0) write(0x7F, 8 - count);
+        }
+    }
+
+    private static int ceilDiv(int a, int b) {
+        return (a + b - 1) / b;
+    }
+
+    private static byte[] copyOf(byte[] data, int from, int to) {
+        return Arrays.copyOfRange(data, from, to);
+    }
+}
@@ -0,0 +1,244 @@
+package com.stego;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.logging.Logger;
+
+/**
+ * JPEG-native steganography: embeds directly into the quantized DCT coefficients
+ * of the luminance component. The file is never decoded to pixels, so there is no
+ * forward/inverse transform and the output stays a JPEG of roughly the input size.
+ *
+ * Uses the same payload layout ({@link PayloadHeader} + message), the same texture mask
+ * threshold, the same mid-frequency positions and the same key-seeded block order
+ * as {@link ImageStego}, a {@link KeyedPermutation} of the block grid masked block by block;
+ * only the quantization step changes from PERSISTENCE to the file's own quantization table.
+ */
+public class JpegStego {
+
+    private static final Logger LOG = Logger.getLogger(JpegStego.class.getName());
+
+    private static final int N = 8;
+
+    // Largest magnitude a baseline AC coefficient may take (size category 10)
+    private static final int MAX_AC = 1023;
+
+    /**
+     * Encodes a message into the luminance coefficients of a baseline JPEG.
+     *
+     * @param inputImage Input JPEG path
+     * @param outputImage Output stego JPEG path
+     * @param message Message to embed
+     * @param vigenereKey Key for deterministic randomization
+     */
+    public static void encode(String inputImage, String outputImage, String message, String vigenereKey) throws Exception {
+        File f = new File(inputImage);
+        if (!f.exists()) throw new RuntimeException("Image not found: " + inputImage);
+
+        JpegCodec.JpegImage img = readJpeg(f);
+        JpegCodec.Component luma = img.components.get(0);
+
+        byte[] data = PayloadHeader.wrap(vigenereKey, message.getBytes(StandardCharsets.UTF_8));
+
+        LumaBlocks blocks = new LumaBlocks(img, luma, vigenereKey);
+        if (data.length > blocks.total()) {
+            throw new RuntimeException("Message too long! Need larger image.");
+        }
+
+        int touched = 0;
+        long start = System.nanoTime();
+        try {
+            for (byte b : data) {
+                int offset = blocks.next();
+                if (offset < 0) {
+                    throw new RuntimeException("Message too long! Need larger image.");
+                }
+                touched++;
+                for (int k = 0; k < 8; k++) {
+                    int bit = (b >> (7 - k)) & 1;
+                    int pos = offset + ImageStego.COEFF_X[k] * N + ImageStego.COEFF_Y[k];
+                    luma.coeffs[pos] = embedParity(luma.coeffs[pos], bit);
+                }
+            }
+        } finally {
+            blocks.recordMetrics();
+            StegoMetrics.record(StegoMetrics.Stage.BIT_EMBED, System.nanoTime() - start - blocks.maskNanos, touched);
+        }
+        StegoMetrics.embedded(data.length, blocks.estimatedCapacity());
+
+        try (StegoMetrics.Span span = StegoMetrics.start(StegoMetrics.Stage.JPEG_WRITE)) {
+            byte[] out = JpegCodec.write(img);
+            Files.write(new File(outputImage).toPath(), out);
+            span.bytes(out.length);
+        }
+        LOG.fine(() -> "JPEG Stego: Saved to " + outputImage);
+    }
+
+    /**
+     * Decodes a message embedded by {@link #encode}.
+     *
+     * @param inputImage Input stego JPEG path
+     * @param vigenereKey Key for deterministic randomization (must match encoding key)
+     * @return Decoded message
+     */
+    public static String decode(String inputImage, String vigenereKey) throws Exception {
+        JpegCodec.JpegImage img = readJpeg(new File(inputImage));
+        JpegCodec.Component luma = img.components.get(0);
+        LumaBlocks blocks = new LumaBlocks(img, luma, vigenereKey);
+        long start = System.nanoTime();
+        int[] touched = {0};
+        PayloadHeader.Source in = () -> {
+            int offset = blocks.next();
+            if (offset < 0) return -1;
+            touched[0]++;
+            int currentByte = 0;
+            for (int k = 0; k < 8; k++) {
+                int pos = offset + ImageStego.COEFF_X[k] * N + ImageStego.COEFF_Y[k];
+                currentByte = (currentByte << 1) | (Math.abs(luma.coeffs[pos]) % 2);
+            }
+            return currentByte;
+        };
+        try {
+            byte[] header = PayloadHeader.read(in, vigenereKey, blocks.total() - PayloadHeader.SIZE);
+            if (header == null) {
+                LOG.fine("No message for this key in the image.");
+                return "";
+            }
+            byte[] data = new byte[PayloadHeader.length(header)];
+            for (int i = 0; i < data.length; i++) {
+                int b = in.read();
+                if (b < 0) {
+                    LOG.warning("Corruption detected in image payload: truncated.");
+                    return "";
+                }
+                data[i] = (byte) b;
+            }
+            if (PayloadHeader.crc(data) != PayloadHeader.storedCrc(header)) {
+                LOG.warning("Corruption detected in image payload: checksum mismatch.");
+                return "";
+            }
+            StegoMetrics.extracted(PayloadHeader.SIZE + data.length);
+            return new String(data, StandardCharsets.UTF_8);
+        } finally {
+            blocks.recordMetrics();
+            StegoMetrics.record(StegoMetrics.Stage.BIT_EXTRACT, System.nanoTime() - start - blocks.maskNanos, touched[0]);
+        }
+    }
+
+    private static JpegCodec.JpegImage readJpeg(File f) throws Exception {
+        try (StegoMetrics.Span span = StegoMetrics.start(StegoMetrics.Stage.IMAGE_READ)) {
+            byte[] data = Files.readAllBytes(f.toPath());
+            span.bytes(data.length);
+            return JpegCodec.read(data);
+        }
+    }
+
+    /**
+     * Returns true if the file starts with a JPEG SOI marker.
+     */
+    public static boolean isJpeg(File file) throws Exception {
+        byte[] magic = new byte[2];
+        try (InputStream in = new FileInputStream(file)) {
+            if (in.read(magic) != 2) return false;
+        }
+        return (magic[0] & 0xFF) == 0xFF && (magic[1] & 0xFF) == 0xD8;
+    }
+
+    /**
+     * Texture-masked luminance blocks in the key-seeded order shared by encoder and decoder.
+     *
+     * As in {@link StegoEngine}, the order is a {@link KeyedPermutation} of the block grid and
+     * the mask is evaluated only on blocks as they are reached, so reading the header costs a
+     * handful of variance checks whatever the image size. The variance ignores the embedding
+     * positions, so the mask is identical before and after embedding.
+     * Reference: ACM TOMM 2024 - "Enhancing Adversarial Embedding", USENIX Security 2025 - "SparSamp"
+     */
+    private static final class LumaBlocks {
+        private final JpegCodec.Component luma;
+        private final int[] quant;
+        private final boolean[] embedPos = new boolean[N * N];
+        private final KeyedPermutation order;
+        // Next permutation position to examine
+        private int drawn;
+        private int carriers;
+        long maskNanos;
+
+        LumaBlocks(JpegCodec.JpegImage img, JpegCodec.Component luma, String vigenereKey) {
+            this.luma = luma;
+            this.quant = img.quantTables[luma.quantTable];
+            if (quant == null) throw new RuntimeException("Corrupt JPEG: missing quantization table " + luma.quantTable);
+            for (int k = 0; k < 8; k++) embedPos[ImageStego.COEFF_X[k] * N + ImageStego.COEFF_Y[k]] = true;
+            this.order = new KeyedPermutation(ImageStego.seedFromKey(vigenereKey),
+                luma.visibleBlocksPerColumn * luma.visibleBlocksPerLine);
+        }
+
+        int total() {
+            return order.size();
+        }
+
+        /**
+         * @return Coefficient offset of the next textured block, or -1 once every block has been examined
+         */
+        int next() {
+            long t0 = System.nanoTime();
+            try {
+                while (drawn < total()) {
+                    int index = order.get(drawn++);
+                    int offset = luma.blockOffset(index / luma.visibleBlocksPerLine, index % luma.visibleBlocksPerLine);
+                    if (getBlockVariance(luma.coeffs, offset, quant, embedPos) >= ImageStego.VARIANCE_THRESHOLD) {
+                        carriers++;
+                        return offset;
+                    }
+                }
+                return -1;
+            } finally {
+                maskNanos += System.nanoTime() - t0;
+            }
+        }
+
+        /**
+         * Carrier bytes the whole image would hold, extrapolated from the blocks examined so far.
+         */
+        long estimatedCapacity() {
+            return drawn == 0 ? 0 : (long) carriers * total() / drawn;
+        }
+
+        void recordMetrics() {
+            StegoMetrics.record(StegoMetrics.Stage.MASK_SCAN, maskNanos, drawn);
+            StegoMetrics.blocks(drawn, drawn - carriers);
+        }
+    }
+
+    /**
+     * Variance of the absolute dequantized AC coefficients, skipping the embedding positions.
+     * Dequantized JPEG coefficients use the same scaling as ImageStego's DCT, so the same threshold applies.
+     */
+    private static double getBlockVariance(int[] coeffs, int offset, int[] quant, boolean[] skip) {
+        double sum = 0.0;
+        int count = 0;
+        for (int i = 1; i < N * N; i++) {
+            if (skip[i]) continue;
+            sum += Math.abs(coeffs[offset + i] * quant[i]);
+            count++;
+        }
+        double mean = sum / count;
+
+        double sumSqDiff = 0.0;
+        for (int i = 1; i < N * N; i++) {
+            if (skip[i]) continue;
+            double diff = Math.abs(coeffs[offset + i] * quant[i]) - mean;
+            sumSqDiff += diff * diff;
+        }
+        return sumSqDiff / count;
+    }
+
+    // Same parity rule as ImageStego.embedBitRobust, with the quantization already applied by the JPEG encoder
+    private static int embedParity(int q, int bit) {
+        if (Math.abs(q) % 2 == bit) return q;
+        if (Math.abs(q) >= MAX_AC) return q > 0 ? q - 1 : q + 1;
+        return q > 0 ? q + 1 : q - 1;
+    }
+}
@@ -8,54 +8,45 @@ import java.security.spec.AlgorithmParameterSpec;
 import java.security.spec.PKCS8EncodedKeySpec;
 import java.security.spec.X509EncodedKeySpec;
 import java.util.Base64;
-import java.util.Properties;
-import java.io.InputStream;
+import java.util.logging.Logger;
 
 public class LatticeManager {
 
-    // 0. IMPORTANT: Register the Bouncy Castle PQC Provider
-    // This tells Java how to do "Lattice Math" (Kyber)
-    static {
-        Security.addProvider(new BouncyCastlePQCProvider());
+    private static final Logger LOG = Logger.getLogger(LatticeManager.class.getName());
+
+    // 0. The Bouncy Castle PQC Provider tells Java how to do "Lattice Math" (Kyber).
+    // It is built on first use and handed to each lookup instead of being registered with
+    // Security up front: constructing it maps every PQC algorithm it has, which loads hundreds
+    // of classes, and a run only pays for that once it actually needs a Kyber operation.
+    private static final class ProviderHolder {
+        static final Provider PROVIDER = new BouncyCastlePQCProvider();
     }
-    
-    private static final String CONFIG_FILE = "/config.properties";
+
+    /**
+     * @return The provider for the Kyber key pair generator, key factory and cipher
+     */
+    static Provider provider() {
+        return ProviderHolder.PROVIDER;
+    }
+
     private static final String DEFAULT_ALGORITHM = "Kyber768";
-    private static String cachedAlgorithm = null;
-    
+
     /**
-     * Loads the PQC algorithm configuration from config.properties.
+     * The PQC algorithm configuration from config.properties, read once on first use.
      * Reference: ACM CCS 2024 - "Testing Side-channel Security"
-     * Uses caching to avoid reloading on every call.
-     * 
+     * Immutable, so concurrent key generation and parsing share it without synchronization.
+     */
+    private static final class Holder {
+        static final String ALGORITHM = loadPQCAlgorithm();
+    }
+
+    /**
      * @return The configured algorithm name (e.g., "Kyber768", "Kyber1024")
      */
     private static String loadPQCAlgorithm() {
-        if (cachedAlgorithm != null) {
-            return cachedAlgorithm;
-        }
-        
-        try {
-            InputStream configStream = LatticeManager.class.getResourceAsStream(CONFIG_FILE);
-            if (configStream == null) {
-                System.out.println("⚠️ Warning: config.properties not found, using default: " + DEFAULT_ALGORITHM);
-                cachedAlgorithm = DEFAULT_ALGORITHM;
-                return cachedAlgorithm;
-            }
-            
-            Properties props = new Properties();
-            props.load(configStream);
-            configStream.close();
-            
-            String algorithm = props.getProperty("PQC_ALGORITHM", DEFAULT_ALGORITHM).trim();
-            System.out.println("📋 Loaded PQC Algorithm: " + algorithm);
-            cachedAlgorithm = algorithm;
-            return cachedAlgorithm;
-        } catch (Exception e) {
-            System.err.println("⚠️ Warning: Failed to load config.properties: " + e.getMessage());
-            cachedAlgorithm = DEFAULT_ALGORITHM;
-            return cachedAlgorithm;
-        }
+        String algorithm = StegoConfig.get("PQC_ALGORITHM", DEFAULT_ALGORITHM);
+        LOG.config("Loaded PQC Algorithm: " + algorithm);
+        return algorithm;
     }
     
     /**
@@ -97,13 +88,17 @@ public class LatticeManager {
     // 1. Generate a fresh Pair of Lattice Keys (Configuration-Driven)
     // Reference: ACM CCS 2024 - "Testing Side-channel Security"
     public static KeyPair generateLatticeKeyPair() throws Exception {
+        return StegoMetrics.time(StegoMetrics.Stage.KYBER_KEYGEN, LatticeManager::generate);
+    }
+
+    private static KeyPair generate() throws Exception {
         // Load algorithm from configuration
-        String algorithm = loadPQCAlgorithm();
+        String algorithm = Holder.ALGORITHM;
         String algoName = getAlgorithmName(algorithm);
         AlgorithmParameterSpec paramSpec = getParameterSpec(algorithm);
         
-        // Use configured algorithm from "BCPQC" (Bouncy Castle Post-Quantum) provider
-        KeyPairGenerator keyGen = KeyPairGenerator.getInstance(algoName, "BCPQC");
+        // Use configured algorithm from the BCPQC (Bouncy Castle Post-Quantum) provider
+        KeyPairGenerator keyGen = KeyPairGenerator.getInstance(algoName, provider());
         keyGen.initialize(paramSpec);
         
         return keyGen.generateKeyPair();
@@ -118,9 +113,9 @@ public class LatticeManager {
     // Uses configured algorithm name
     public static PublicKey stringToPublicKey(String keyStr) throws Exception {
         byte[] byteKey = Base64.getDecoder().decode(keyStr);
-        String algorithm = loadPQCAlgorithm();
+        String algorithm = Holder.ALGORITHM;
         String algoName = getAlgorithmName(algorithm);
-        KeyFactory keyFactory = KeyFactory.getInstance(algoName, "BCPQC");
+        KeyFactory keyFactory = KeyFactory.getInstance(algoName, provider());
         return keyFactory.generatePublic(new X509EncodedKeySpec(byteKey));
     }
 
@@ -128,9 +123,9 @@ public class LatticeManager {
     // Uses configured algorithm name
     public static PrivateKey stringToPrivateKey(String keyStr) throws Exception {
         byte[] byteKey = Base64.getDecoder().decode(keyStr);
-        String algorithm = loadPQCAlgorithm();
+        String algorithm = Holder.ALGORITHM;
         String algoName = getAlgorithmName(algorithm);
-        KeyFactory keyFactory = KeyFactory.getInstance(algoName, "BCPQC");
+        KeyFactory keyFactory = KeyFactory.getInstance(algoName, provider());
         return keyFactory.generatePrivate(new PKCS8EncodedKeySpec(byteKey));
     }
 
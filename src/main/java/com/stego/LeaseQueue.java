@@ -0,0 +1,190 @@
+package com.stego;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Work queue shared by processes through a directory, on one machine or on a network file
+ * system mounted by many.
+ *
+ * <pre>
+ *   leases/&lt;item&gt;   node, owner token and expiry (epoch ms) of the process working on an item
+ *   done/&lt;item&gt;     "OK" or "FAILED &lt;reason&gt;" once an item is finished
+ * </pre>
+ *
+ * A lease is taken by hard-linking a fully written temporary file to its name, which fails if the
+ * lease exists, so it is never seen half written. An expired lease, left by a process that died,
+ * is replaced by an atomic rename and read back: whoever's token is in it owns the item. Two
+ * processes replacing the same expired lease at the same moment can both end up working on the
+ * item, so the work done for an item must be idempotent; {@link DatasetGenerator} writes every
+ * output under a content-derived name with an atomic rename. Expiry compares wall clocks, which
+ * must agree across nodes to well within the lease duration.
+ */
+final class LeaseQueue {
+
+    private static final String TMP_SUFFIX = ".tmp";
+
+    private final Path leases;
+    private final Path done;
+    private final String node;
+    private final Duration duration;
+
+    /**
+     * @param dir Queue directory, created if needed
+     * @param node Name of this process in leases, for whoever inspects the queue
+     * @param duration How long a claimed item stays claimed; longer than an item takes
+     */
+    LeaseQueue(Path dir, String node, Duration duration) throws IOException {
+        if (!node.matches("[A-Za-z0-9._-]+")) throw new IllegalArgumentException("Node names are letters, digits, ., _ and -: " + node);
+        this.leases = Files.createDirectories(dir.resolve("leases"));
+        this.done = Files.createDirectories(dir.resolve("done"));
+        this.node = node;
+        this.duration = duration;
+    }
+
+    /**
+     * A claimed item; the claim holds until {@link #complete}, {@link #release} or expiry.
+     */
+    static final class Lease {
+        final String item;
+        private final String token;
+
+        private Lease(String item, String token) {
+            this.item = item;
+            this.token = token;
+        }
+    }
+
+    /**
+     * @param item File-name-safe item id
+     * @return The lease, or null if the item is finished or another live process holds it
+     */
+    Lease tryClaim(String item) throws IOException {
+        if (isDone(item)) return null;
+        Path lease = leases.resolve(item);
+        String token = UUID.randomUUID().toString();
+        Path tmp = writeTemp(leases, item, node + "\t" + token + "\t" + (System.currentTimeMillis() + duration.toMillis()));
+        try {
+            try {
+                Files.createLink(lease, tmp);
+                return new Lease(item, token);
+            } catch (FileAlreadyExistsException e) {
+                String[] held = read(lease);
+                if (held != null && !isExpired(held)) return null;
+                // Expired, or released since: take it over and see whose token survived
+                move(tmp, lease);
+                String[] now = read(lease);
+                return now != null && token.equals(now[1]) ? new Lease(item, token) : null;
+            } catch (UnsupportedOperationException e) {
+                throw new IOException("The queue directory needs a file system with hard links: " + leases, e);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Marks the item finished and drops the lease, if it is still this process's.
+     *
+     * @param status "OK", or "FAILED " and a reason; failed items are not retried
+     */
+    void complete(Lease lease, String status) throws IOException {
+        Path tmp = writeTemp(done, lease.item, status.replace('\n', ' '));
+        try {
+            move(tmp, done.resolve(lease.item));
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        release(lease);
+    }
+
+    /**
+     * Gives an item back without finishing it.
+     */
+    void release(Lease lease) throws IOException {
+        Path path = leases.resolve(lease.item);
+        String[] held = read(path);
+        if (held != null && lease.token.equals(held[1])) Files.deleteIfExists(path);
+    }
+
+    boolean isDone(String item) {
+        return Files.exists(done.resolve(item));
+    }
+
+    /**
+     * Finished items, from one directory listing; cheaper than {@link #isDone} per item on a
+     * network file system.
+     */
+    Set<String> doneItems() throws IOException {
+        Set<String> items = new HashSet<>();
+        try (DirectoryStream<Path> dir = Files.newDirectoryStream(done)) {
+            for (Path p : dir) {
+                String name = p.getFileName().toString();
+                if (!name.endsWith(TMP_SUFFIX)) items.add(name);
+            }
+        }
+        return items;
+    }
+
+    /**
+     * @return How many of the items are not finished
+     */
+    int pending(List<String> items) throws IOException {
+        Set<String> finished = doneItems();
+        int n = 0;
+        for (String item : items) {
+            if (!finished.contains(item)) n++;
+        }
+        return n;
+    }
+
+    private boolean isExpired(String[] lease) {
+        try {
+            return Long.parseLong(lease[2]) < System.currentTimeMillis();
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    /**
+     * @return node, token and expiry of a lease; null if there is none
+     */
+    private static String[] read(Path lease) throws IOException {
+        try {
+            String[] fields = new String(Files.readAllBytes(lease), StandardCharsets.UTF_8).split("\t");
+            // A lease is written before it is linked, so a short one is corrupt: treat it as expired
+            return fields.length == 3 ? fields : new String[] {"", "", "0"};
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    private Path writeTemp(Path dir, String item, String content) throws IOException {
+        Path tmp = dir.resolve(item + "." + node + "." + UUID.randomUUID() + TMP_SUFFIX);
+        Files.write(tmp, content.getBytes(StandardCharsets.UTF_8));
+        return tmp;
+    }
+
+    /**
+     * Replaces {@code target} atomically where the file system can.
+     */
+    static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
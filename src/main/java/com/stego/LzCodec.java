@@ -0,0 +1,230 @@
+package com.stego;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Fast byte-oriented LZ77 codec in the style of LZ4: greedy matching through a hash table of
+ * 4-byte sequences, no entropy coding. Several times faster than Deflate at a lower ratio.
+ *
+ * The input is cut into independent blocks of at most 64 KB, each stored as
+ * {@code [raw length][compressed length]} (unsigned LEB128) followed by sequences of
+ * {@code [token][literal length ext][literals][offset:2 LE][match length ext]}. The token holds
+ * the literal length in its high nibble and the match length minus 4 in its low nibble, with
+ * 15 meaning that extension bytes follow (each adds up to 255). The last sequence of a block
+ * has literals only. Because blocks are independent, {@link #decompress} needs only one block
+ * of memory whatever the message size.
+ */
+final class LzCodec {
+
+    private static final int BLOCK_SIZE = 1 << 16;
+    private static final int MIN_MATCH = 4;
+    private static final int MAX_OFFSET = 0xFFFF;
+    private static final int HASH_BITS = 12;
+
+    private LzCodec() {
+    }
+
+    static byte[] compress(byte[] in) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(in.length / 2 + 16);
+        int[] table = new int[1 << HASH_BITS];
+        byte[] block = new byte[BLOCK_SIZE + BLOCK_SIZE / 255 + 16];
+        for (int start = 0; start < in.length; start += BLOCK_SIZE) {
+            int end = Math.min(in.length, start + BLOCK_SIZE);
+            int length = compressBlock(in, start, end, table, block);
+            writeVarint(out, end - start);
+            writeVarint(out, length);
+            out.write(block, 0, length);
+        }
+        return out.toByteArray();
+    }
+
+    private static int compressBlock(byte[] in, int start, int end, int[] table, byte[] out) {
+        Arrays.fill(table, -1);
+        int o = 0;
+        int anchor = start;
+        int i = start;
+        while (i + MIN_MATCH <= end) {
+            int h = hash(in, i);
+            int ref = table[h];
+            table[h] = i;
+            if (ref >= 0 && i - ref <= MAX_OFFSET && read32(in, ref) == read32(in, i)) {
+                int length = MIN_MATCH;
+                while (i + length < end && in[ref + length] == in[i + length]) length++;
+                o = writeSequence(in, anchor, i - anchor, out, o, i - ref, length);
+                i += length;
+                anchor = i;
+            } else {
+                i++;
+            }
+        }
+        return writeSequence(in, anchor, end - anchor, out, o, 0, 0);
+    }
+
+    /**
+     * @param offset 0 for the final, literals-only sequence of a block
+     */
+    private static int writeSequence(byte[] in, int literalsFrom, int literals, byte[] out, int o, int offset, int matchLength) {
+        int matchCode = offset == 0 ? 0 : matchLength - MIN_MATCH;
+        out[o++] = (byte) (Math.min(literals, 15) << 4 | Math.min(matchCode, 15));
+        o = writeLengthExtension(out, o, literals);
+        System.arraycopy(in, literalsFrom, out, o, literals);
+        o += literals;
+        if (offset != 0) {
+            out[o++] = (byte) offset;
+            out[o++] = (byte) (offset >>> 8);
+            o = writeLengthExtension(out, o, matchCode);
+        }
+        return o;
+    }
+
+    private static int writeLengthExtension(byte[] out, int o, int length) {
+        if (length < 15) return o;
+        for (length -= 15; length >= 255; length -= 255) out[o++] = (byte) 255;
+        out[o++] = (byte) length;
+        return o;
+    }
+
+    private static int hash(byte[] in, int i) {
+        return (read32(in, i) * 0x9E3779B1) >>> (32 - HASH_BITS);
+    }
+
+    private static int read32(byte[] in, int i) {
+        return (in[i] & 0xFF) | (in[i + 1] & 0xFF) << 8 | (in[i + 2] & 0xFF) << 16 | in[i + 3] << 24;
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    /**
+     * Returns a stream of the original bytes, decoding one block at a time.
+     */
+    static InputStream decompress(InputStream compressed) {
+        return new BlockInputStream(compressed);
+    }
+
+    private static final class BlockInputStream extends InputStream {
+        private final InputStream in;
+        private final byte[] raw = new byte[BLOCK_SIZE];
+        private byte[] packed = new byte[0];
+        private int pos;
+        private int limit;
+
+        BlockInputStream(InputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (pos == limit && !nextBlock()) return -1;
+            return raw[pos++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            if (pos == limit && !nextBlock()) return -1;
+            int n = Math.min(len, limit - pos);
+            System.arraycopy(raw, pos, b, off, n);
+            pos += n;
+            return n;
+        }
+
+        private boolean nextBlock() throws IOException {
+            int rawLength = readVarint(true);
+            if (rawLength < 0) return false;
+            int length = readVarint(false);
+            if (rawLength > BLOCK_SIZE || length < 1) throw new IOException("Corrupt LZ block header");
+            if (packed.length < length) packed = new byte[length];
+            readFully(packed, length);
+            pos = 0;
+            limit = decodeBlock(packed, length, raw, rawLength);
+            return limit > 0 || nextBlock();
+        }
+
+        private void readFully(byte[] b, int len) throws IOException {
+            for (int done = 0; done < len; ) {
+                int n = in.read(b, done, len - done);
+                if (n < 0) throw new EOFException("Truncated LZ block");
+                done += n;
+            }
+        }
+
+        /**
+         * @param eofAllowed true at a block boundary, where end of input ends the stream
+         * @return The value, or -1 at end of input
+         */
+        private int readVarint(boolean eofAllowed) throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                int b = in.read();
+                if (b < 0) {
+                    if (eofAllowed && shift == 0) return -1;
+                    throw new EOFException("Truncated LZ block header");
+                }
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return value;
+            }
+            throw new IOException("Corrupt LZ block header");
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    private static int decodeBlock(byte[] in, int length, byte[] out, int rawLength) throws IOException {
+        int i = 0;
+        int o = 0;
+        try {
+            while (true) {
+                int token = in[i++] & 0xFF;
+                int literals = token >>> 4;
+                if (literals == 15) {
+                    literals += readLengthExtension(in, i);
+                    i += (literals - 15) / 255 + 1;
+                }
+                if (o + literals > rawLength || i + literals > length) throw new IOException("Corrupt LZ block");
+                System.arraycopy(in, i, out, o, literals);
+                i += literals;
+                o += literals;
+                if (i == length) break;
+
+                int offset = (in[i] & 0xFF) | (in[i + 1] & 0xFF) << 8;
+                i += 2;
+                int match = token & 0x0F;
+                if (match == 15) {
+                    match += readLengthExtension(in, i);
+                    i += (match - 15) / 255 + 1;
+                }
+                match += MIN_MATCH;
+                if (offset == 0 || offset > o || o + match > rawLength) throw new IOException("Corrupt LZ block");
+                // Byte by byte: the match may overlap the bytes it produces
+                for (int end = o + match; o < end; o++) out[o] = out[o - offset];
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Corrupt LZ block", e);
+        }
+        if (o != rawLength) throw new IOException("Corrupt LZ block: " + o + " of " + rawLength + " bytes");
+        return o;
+    }
+
+    private static int readLengthExtension(byte[] in, int i) {
+        int length = 0;
+        int b;
+        do {
+            b = in[i++] & 0xFF;
+            length += b;
+        } while (b == 255);
+        return length;
+    }
+}
@@ -1,17 +1,21 @@
 package com.stego;
 
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.security.KeyPair;
 import java.security.PublicKey;
 import java.security.PrivateKey;
 import java.awt.image.BufferedImage;
-import java.io.File;
-import javax.imageio.ImageIO;
+import java.io.PrintStream;
 import com.stego.FileEncryptor.Output;
+import java.util.logging.Logger;
 
 public class Main {
 
+    private static final Logger LOG = Logger.getLogger(Main.class.getName());
+
     private static final String MESSAGE_FILE = "message.txt";
     private static final String IMAGE_FILE = "image.png";
     private static final String ENC_FILE = "encrypted_text.txt";
@@ -20,89 +24,87 @@ public class Main {
 
     public static void main(String[] args) {
         try {
-            System.out.println("--- 1. Reading Message ---");
             if (!Files.exists(Paths.get(MESSAGE_FILE))) {
+                System.out.println("--- 1. Reading Message ---");
                 System.out.println("❌ Create message.txt first!");
                 return;
             }
-            String content = new String(Files.readAllBytes(Paths.get(MESSAGE_FILE)));
+            send(Paths.get(MESSAGE_FILE), Paths.get(IMAGE_FILE), Paths.get(ENC_FILE), Paths.get(KEY_FILE),
+                Paths.get(OUTPUT_IMAGE_FILE), System.out);
+            System.out.println("\n✅ Done! Check output.png");
 
-            // --- 2. Hybrid Encryption (Text) ---
-            System.out.println("\n--- 2. Encrypting Text (Hybrid) ---");
-            Output output = FileEncryptor.encryptText(content);
-            Files.write(Paths.get(ENC_FILE), output.finalOutput.getBytes());
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
 
-            // --- 3. Lattice Keys (Kyber) ---
-            System.out.println("\n--- 3. Generating Lattice Keys (Kyber) ---");
-            // Replaced ECCManager with LatticeManager
-            KeyPair latticePair = LatticeManager.generateLatticeKeyPair();
-            PublicKey receiverPub = latticePair.getPublic();
-            PrivateKey receiverPriv = latticePair.getPrivate();
+    /**
+     * Runs the sender pipeline on explicit paths, so several runs can work side by side in
+     * their own directories (as the load test harness in the test sources does).
+     *
+     * @param progress Receives the step banners
+     */
+    static void send(Path messageFile, Path imageFile, Path encFile, Path keyFile, Path outputImageFile, PrintStream progress) throws Exception {
+        progress.println("--- 1. Reading Message ---");
+        String content = new String(Files.readAllBytes(messageFile), StandardCharsets.UTF_8);
 
-            String keysOut = LatticeManager.keyToString(receiverPub) + "\n" + LatticeManager.keyToString(receiverPriv);
+        // --- 2. Hybrid Encryption (Text) ---
+        progress.println("\n--- 2. Encrypting Text (Hybrid) ---");
+        Output output = FileEncryptor.encryptText(content);
+        Files.write(encFile, output.finalOutput.getBytes());
 
-            // --- 4. Encrypt Session Keys (Lattice) ---
-            System.out.println("\n--- 4. Wrapping Keys with Kyber ---");
-            // Now calling the updated HybridEncryptor
-            String secureAES = HybridEncryptor.encryptAESKey(output.aesKey, receiverPub);
-            String secureVigenere = HybridEncryptor.encryptAESKey(output.vigenereKey, receiverPub);
+        // --- 3. Lattice Keys (Kyber) ---
+        progress.println("\n--- 3. Generating Lattice Keys (Kyber) ---");
+        // Replaced ECCManager with LatticeManager
+        KeyPair latticePair = LatticeManager.generateLatticeKeyPair();
+        PublicKey receiverPub = latticePair.getPublic();
+        PrivateKey receiverPriv = latticePair.getPrivate();
 
-            keysOut += "\n" + secureAES + "\n" + secureVigenere;
-            Files.write(Paths.get(KEY_FILE), keysOut.getBytes());
+        String keysOut = LatticeManager.keyToString(receiverPub) + "\n" + LatticeManager.keyToString(receiverPriv);
 
-            // --- 5. Split-Payload Orchestration (DCT) ---
-            // Reference: ACM CCS 2025 - "Split Unlearning"
-            System.out.println("\n--- 5. Split-Payload Orchestration (DCT) ---");
-            
-            String encryptedText = output.finalOutput;
-            int totalLen = encryptedText.length();
-            
-            // Split payload into 3 logical chunks: Header, Body, Metadata
-            int chunkSize = (totalLen + 2) / 3; // Divide into 3 parts with rounding
-            String chunk1 = encryptedText.substring(0, Math.min(chunkSize, totalLen));
-            String chunk2 = totalLen > chunkSize ? encryptedText.substring(chunkSize, Math.min(2 * chunkSize, totalLen)) : "";
-            String chunk3 = totalLen > 2 * chunkSize ? encryptedText.substring(2 * chunkSize) : "";
-            
-            System.out.println("Chunk 1 (Header) length: " + chunk1.length());
-            System.out.println("Chunk 2 (Body) length: " + chunk2.length());
-            System.out.println("Chunk 3 (Metadata) length: " + chunk3.length());
-            
-            // Load the base image
-            BufferedImage img = ImageIO.read(new File(IMAGE_FILE));
-            
-            // Embed Chunk 1 in Red Channel (low frequency)
-            System.out.println("Embedding Chunk 1 in RED channel...");
-            ImageStego.encode(IMAGE_FILE, OUTPUT_IMAGE_FILE + ".tmp1", chunk1, output.vigenereKey, ImageStego.CHANNEL_RED);
-            img = ImageIO.read(new File(OUTPUT_IMAGE_FILE + ".tmp1"));
-            
-            // Embed Chunk 2 in Green Channel (mid frequency)
-            if (!chunk2.isEmpty()) {
-                System.out.println("Embedding Chunk 2 in GREEN channel...");
-                // Create a temporary file with the current state
-                ImageIO.write(img, "png", new File(OUTPUT_IMAGE_FILE + ".tmp2"));
-                ImageStego.encode(OUTPUT_IMAGE_FILE + ".tmp2", OUTPUT_IMAGE_FILE + ".tmp1", chunk2, output.vigenereKey, ImageStego.CHANNEL_GREEN);
-                img = ImageIO.read(new File(OUTPUT_IMAGE_FILE + ".tmp1"));
-            }
-            
-            // Embed Chunk 3 in Blue Channel (high frequency)
-            if (!chunk3.isEmpty()) {
-                System.out.println("Embedding Chunk 3 in BLUE channel...");
-                // Create a temporary file with the current state
-                ImageIO.write(img, "png", new File(OUTPUT_IMAGE_FILE + ".tmp2"));
-                ImageStego.encode(OUTPUT_IMAGE_FILE + ".tmp2", OUTPUT_IMAGE_FILE, chunk3, output.vigenereKey, ImageStego.CHANNEL_BLUE);
-            } else {
-                // If chunk3 is empty, just save the current image
-                ImageIO.write(img, "png", new File(OUTPUT_IMAGE_FILE));
-            }
-            
-            // Clean up temporary files
-            new File(OUTPUT_IMAGE_FILE + ".tmp1").delete();
-            new File(OUTPUT_IMAGE_FILE + ".tmp2").delete();
-            
-            System.out.println("\n✅ Done! Check output.png");
+        // --- 4. Encrypt Session Keys (Lattice) ---
+        progress.println("\n--- 4. Wrapping Keys with Kyber ---");
+        // Now calling the updated HybridEncryptor
+        String secureAES = HybridEncryptor.encryptAESKey(output.aesKey, receiverPub);
+        String secureVigenere = HybridEncryptor.encryptAESKey(output.vigenereKey, receiverPub);
 
-        } catch (Exception e) {
-            e.printStackTrace();
+        keysOut += "\n" + secureAES + "\n" + secureVigenere;
+        Files.write(keyFile, keysOut.getBytes());
+
+        // --- 5. Split-Payload Orchestration (DCT) ---
+        // Reference: ACM CCS 2025 - "Split Unlearning"
+        progress.println("\n--- 5. Split-Payload Orchestration (DCT) ---");
+        
+        String encryptedText = output.finalOutput;
+        int totalLen = encryptedText.length();
+        
+        // Split payload into 3 logical chunks: Header, Body, Metadata
+        int chunkSize = (totalLen + 2) / 3; // Divide into 3 parts with rounding
+        String chunk1 = encryptedText.substring(0, Math.min(chunkSize, totalLen));
+        String chunk2 = totalLen > chunkSize ? encryptedText.substring(chunkSize, Math.min(2 * chunkSize, totalLen)) : "";
+        String chunk3 = totalLen > 2 * chunkSize ? encryptedText.substring(2 * chunkSize) : "";
+        
+        LOG.fine(() -> "Chunk lengths (Header/Body/Metadata): " + chunk1.length() + "/" + chunk2.length() + "/" + chunk3.length());
+        
+        // Load the base image once; all three chunks are embedded in memory and written once
+        BufferedImage img = ImageStego.readImage(imageFile.toFile());
+        
+        // Embed Chunk 1 in Red Channel (low frequency)
+        progress.println("Embedding Chunk 1 in RED channel...");
+        ImageStego.embed(img, chunk1, output.vigenereKey, ImageStego.CHANNEL_RED);
+        
+        // Embed Chunk 2 in Green Channel (mid frequency)
+        if (!chunk2.isEmpty()) {
+            progress.println("Embedding Chunk 2 in GREEN channel...");
+            ImageStego.embed(img, chunk2, output.vigenereKey, ImageStego.CHANNEL_GREEN);
+        }
+        
+        // Embed Chunk 3 in Blue Channel (high frequency)
+        if (!chunk3.isEmpty()) {
+            progress.println("Embedding Chunk 3 in BLUE channel...");
+            ImageStego.embed(img, chunk3, output.vigenereKey, ImageStego.CHANNEL_BLUE);
         }
+        
+        PngWriter.getDefault().write(img, outputImageFile.toFile());
     }
-}
\ No newline at end of file
+}
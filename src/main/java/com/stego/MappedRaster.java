@@ -0,0 +1,215 @@
+package com.stego;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Zero-copy {@link StegoRaster} over an uncompressed cover file mapped with {@link FileChannel#map}.
+ * Supports binary PPM (P6), binary PGM (P5) with maxval &lt;= 255, and uncompressed 24/32-bit BMP.
+ *
+ * Samples are read and modified in place in the page cache: nothing is decoded onto the
+ * heap, and on close only the pages of touched blocks are dirty and written back.
+ * Files larger than 2 GB are mapped as a sequence of 1 GB windows.
+ *
+ * PGM files have a single grey channel; every channel name maps to it.
+ */
+public class MappedRaster implements StegoRaster, AutoCloseable {
+
+    private static final int WINDOW_SHIFT = 30;
+    private static final long WINDOW_SIZE = 1L << WINDOW_SHIFT;
+    private static final long WINDOW_MASK = WINDOW_SIZE - 1;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] windows;
+    private final boolean writable;
+    private final int width;
+    private final int height;
+    private final long dataOffset;
+    private final long rowStride;
+    private final int bytesPerPixel;
+    // Byte index within a pixel of RED, GREEN, BLUE
+    private final int[] channelOffset;
+    private final boolean bottomUp;
+
+    private MappedRaster(FileChannel channel, boolean writable, Header header) throws IOException {
+        this.channel = channel;
+        this.writable = writable;
+        this.width = header.width;
+        this.height = header.height;
+        this.dataOffset = header.dataOffset;
+        this.rowStride = header.rowStride;
+        this.bytesPerPixel = header.bytesPerPixel;
+        this.channelOffset = header.channelOffset;
+        this.bottomUp = header.bottomUp;
+
+        long size = channel.size();
+        long needed = dataOffset + rowStride * height;
+        if (size < needed) {
+            throw new IOException("Truncated image data: expected " + needed + " bytes, file has " + size);
+        }
+        FileChannel.MapMode mode = writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY;
+        int count = (int) ((needed + WINDOW_SIZE - 1) >>> WINDOW_SHIFT);
+        windows = new MappedByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            long start = (long) i << WINDOW_SHIFT;
+            windows[i] = channel.map(mode, start, Math.min(WINDOW_SIZE, needed - start));
+        }
+    }
+
+    /**
+     * Maps a PPM/PGM/BMP file.
+     *
+     * @param path The cover file
+     * @param writable true to modify the file in place
+     */
+    public static MappedRaster open(Path path, boolean writable) throws IOException {
+        Header header = readHeader(path);
+        if (header == null) {
+            throw new IOException("Not an uncompressed PPM/PGM/BMP file: " + path);
+        }
+        FileChannel channel = writable
+            ? FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)
+            : FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new MappedRaster(channel, writable, header);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns true if the file is a raw format this class can map (checks the header, not the extension).
+     */
+    public static boolean isSupported(Path path) {
+        try {
+            return readHeader(path) != null;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public int getSample(int x, int y, int channel) {
+        long pos = offset(x, y, channel);
+        return windows[(int) (pos >>> WINDOW_SHIFT)].get((int) (pos & WINDOW_MASK)) & 0xFF;
+    }
+
+    @Override
+    public void setSample(int x, int y, int channel, int value) {
+        long pos = offset(x, y, channel);
+        windows[(int) (pos >>> WINDOW_SHIFT)].put((int) (pos & WINDOW_MASK), (byte) value);
+    }
+
+    private long offset(int x, int y, int channel) {
+        long row = bottomUp ? height - 1 - y : y;
+        return dataOffset + row * rowStride + (long) x * bytesPerPixel + channelOffset[channel];
+    }
+
+    /**
+     * Flushes dirty pages (writable mappings only) and releases the file.
+     */
+    @Override
+    public void close() throws IOException {
+        if (writable) {
+            for (MappedByteBuffer window : windows) window.force();
+        }
+        channel.close();
+    }
+
+    // --- HEADER PARSING ---
+
+    private static class Header {
+        int width, height;
+        long dataOffset;
+        long rowStride;
+        int bytesPerPixel;
+        int[] channelOffset;
+        boolean bottomUp;
+    }
+
+    private static Header readHeader(Path path) throws IOException {
+        byte[] head = new byte[512];
+        int n;
+        try (InputStream in = Files.newInputStream(path)) {
+            n = in.readNBytes(head, 0, head.length);
+        }
+        if (n < 2) return null;
+        if (head[0] == 'P' && (head[1] == '5' || head[1] == '6')) return readPnmHeader(head, n);
+        if (head[0] == 'B' && head[1] == 'M') return readBmpHeader(head, n);
+        return null;
+    }
+
+    private static Header readPnmHeader(byte[] head, int n) {
+        int[] values = new int[3];
+        int pos = 2;
+        for (int v = 0; v < 3; v++) {
+            // Skip whitespace and comments
+            while (pos < n && (Character.isWhitespace(head[pos]) || head[pos] == '#')) {
+                if (head[pos] == '#') {
+                    while (pos < n && head[pos] != '\n') pos++;
+                } else {
+                    pos++;
+                }
+            }
+            int start = pos;
+            while (pos < n && head[pos] >= '0' && head[pos] <= '9') {
+                values[v] = values[v] * 10 + (head[pos] - '0');
+                pos++;
+            }
+            if (pos == start) return null;
+        }
+        // Exactly one whitespace byte separates maxval from the raster
+        if (pos >= n || !Character.isWhitespace(head[pos])) return null;
+        if (values[2] <= 0 || values[2] > 255) return null;
+
+        Header h = new Header();
+        h.width = values[0];
+        h.height = values[1];
+        h.dataOffset = pos + 1;
+        h.bytesPerPixel = head[1] == '6' ? 3 : 1;
+        h.rowStride = (long) h.width * h.bytesPerPixel;
+        h.channelOffset = h.bytesPerPixel == 3 ? new int[] {0, 1, 2} : new int[] {0, 0, 0};
+        return h;
+    }
+
+    private static Header readBmpHeader(byte[] head, int n) {
+        if (n < 54) return null;
+        ByteBuffer buf = ByteBuffer.wrap(head, 0, n).order(ByteOrder.LITTLE_ENDIAN);
+        long dataOffset = buf.getInt(10) & 0xFFFFFFFFL;
+        int dibSize = buf.getInt(14);
+        if (dibSize < 40) return null; // OS/2 BITMAPCOREHEADER not supported
+        int width = buf.getInt(18);
+        int height = buf.getInt(22);
+        int bpp = buf.getShort(28);
+        int compression = buf.getInt(30);
+        if (compression != 0 || (bpp != 24 && bpp != 32) || width <= 0 || height == 0) return null;
+
+        Header h = new Header();
+        h.width = width;
+        h.height = Math.abs(height);
+        h.bottomUp = height > 0;
+        h.dataOffset = dataOffset;
+        h.bytesPerPixel = bpp / 8;
+        h.rowStride = (((long) width * bpp + 31) / 32) * 4;
+        h.channelOffset = new int[] {2, 1, 0}; // stored as B, G, R(, X)
+        return h;
+    }
+}
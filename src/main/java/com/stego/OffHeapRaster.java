@@ -0,0 +1,133 @@
+package com.stego;
+
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+
+/**
+ * {@link StegoRaster} that keeps the pixels in direct (off-heap) buffers.
+ *
+ * Meant for huge covers: the decoded image is copied once into native memory and can then be
+ * collected, so a long embedding run keeps only a few per-thread 8x8 block buffers on the heap
+ * and GC pauses no longer grow with the image. Rows are stored as 8-bit RGB or RGBA samples,
+ * which is the PNG scanline layout, in buffers of at most 1 GB as in {@link MappedRaster}.
+ *
+ * The native memory is released by the buffers' cleaners once the raster is unreachable. It
+ * counts against {@code -XX:MaxDirectMemorySize}, which defaults to the maximum heap size.
+ */
+public class OffHeapRaster implements StegoRaster {
+
+    private static final int WINDOW_SIZE = 1 << 30;
+
+    // Covers with at least this many pixels are embedded off-heap by ImageStego and AsyncImageStego
+    private static final long MIN_PIXELS = StegoConfig.getInt("OFFHEAP_MIN_MEGAPIXELS", 32) * 1_000_000L;
+
+    private final ByteBuffer[] windows;
+    private final int width;
+    private final int height;
+    private final int bands;
+    private final int rowBytes;
+    private final int rowsPerWindow;
+
+    private OffHeapRaster(int width, int height, int bands) {
+        if ((long) width * bands > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Image too wide: " + width + " pixels");
+        }
+        this.width = width;
+        this.height = height;
+        this.bands = bands;
+        this.rowBytes = width * bands;
+        this.rowsPerWindow = Math.max(1, WINDOW_SIZE / Math.max(1, rowBytes));
+        int count = (height + rowsPerWindow - 1) / rowsPerWindow;
+        windows = new ByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            int rows = Math.min(rowsPerWindow, height - i * rowsPerWindow);
+            windows[i] = ByteBuffer.allocateDirect(rows * rowBytes);
+        }
+    }
+
+    /**
+     * Copies a decoded image into native memory. Alpha is kept if the image has it.
+     */
+    public static OffHeapRaster copyOf(BufferedImage img) {
+        int width = img.getWidth();
+        int bands = img.getColorModel().hasAlpha() ? 4 : 3;
+        OffHeapRaster raster = new OffHeapRaster(width, img.getHeight(), bands);
+        int[] argb = new int[width];
+        byte[] row = new byte[raster.rowBytes];
+        for (int y = 0; y < raster.height; y++) {
+            img.getRGB(0, y, width, 1, argb, 0, width);
+            for (int x = 0, o = 0; x < width; x++, o += bands) {
+                row[o] = (byte) (argb[x] >> 16);
+                row[o + 1] = (byte) (argb[x] >> 8);
+                row[o + 2] = (byte) argb[x];
+                if (bands == 4) row[o + 3] = (byte) (argb[x] >>> 24);
+            }
+            raster.window(y).put(raster.rowOffset(y), row);
+        }
+        return raster;
+    }
+
+    /**
+     * An independent copy in new native memory.
+     */
+    public OffHeapRaster copy() {
+        OffHeapRaster copy = new OffHeapRaster(width, height, bands);
+        for (int i = 0; i < windows.length; i++) {
+            copy.windows[i].put(0, windows[i], 0, windows[i].capacity());
+        }
+        return copy;
+    }
+
+    /**
+     * Whether a cover is large enough to be worth moving off-heap (config OFFHEAP_MIN_MEGAPIXELS,
+     * 0 disables). Greyscale images stay on the heap: their samples are colour-converted by
+     * {@link BufferedImage#getRGB}, and only the heap path reproduces that conversion.
+     */
+    static boolean isPreferred(BufferedImage img) {
+        return MIN_PIXELS > 0
+            && img.getType() != BufferedImage.TYPE_BYTE_GRAY
+            && (long) img.getWidth() * img.getHeight() >= MIN_PIXELS;
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return 3 for RGB, 4 for RGBA
+     */
+    public int getBands() {
+        return bands;
+    }
+
+    @Override
+    public int getSample(int x, int y, int channel) {
+        return window(y).get(rowOffset(y) + x * bands + channel) & 0xFF;
+    }
+
+    @Override
+    public void setSample(int x, int y, int channel, int value) {
+        window(y).put(rowOffset(y) + x * bands + channel, (byte) value);
+    }
+
+    /**
+     * Copies one row of interleaved samples ({@link #getBands} per pixel) into {@code row}.
+     */
+    public void readRow(int y, byte[] row) {
+        window(y).get(rowOffset(y), row, 0, rowBytes);
+    }
+
+    private ByteBuffer window(int y) {
+        return windows[y / rowsPerWindow];
+    }
+
+    private int rowOffset(int y) {
+        return (y % rowsPerWindow) * rowBytes;
+    }
+}
@@ -0,0 +1,167 @@
+package com.stego;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.CRC32;
+
+/**
+ * Header written in front of every embedded message:
+ * <pre>
+ *   [tag:2][flags:1][length:4][crc32:4][message ...]
+ * </pre>
+ * <ul>
+ *   <li>tag - first two bytes of SHA-256("com.stego.tag:" + key). A wrong key or a clean image fails this
+ *       check after 8 to 16 coefficients with probability 1 - 2^-16.</li>
+ *   <li>flags - format version in bits 7..5; bit 4 marks a {@link ShardedStego} shard; bits 3..2
+ *       hold the {@link TextureMask#id} the carriers were selected with (0, the DCT mask, in images
+ *       from before the field existed); bits 1..0 hold the {@link CoefficientProfile#id} the
+ *       payload was written in (0, one byte per block, in images from before the field existed).</li>
+ *   <li>length - big-endian message length in bytes.</li>
+ *   <li>crc32 - CRC-32 of the message bytes.</li>
+ * </ul>
+ * The header is carried in the first carrier blocks, one byte per block in the base positions
+ * whatever the coefficient profile, so a reader can reject a non-carrier long before it reaches
+ * the message and learns the profile before it reads any message block.
+ */
+final class PayloadHeader {
+
+    static final int SIZE = 11;
+    static final int TAG_BYTES = 2;
+    static final int FLAGS_OFFSET = 2;
+    static final int LENGTH_OFFSET = 3;
+    static final int CRC_OFFSET = 7;
+
+    static final int VERSION = 1;
+    private static final int VERSION_SHIFT = 5;
+    static final int FLAG_SHARDED = 1 << 4;
+    private static final int TEXTURE_MASK_SHIFT = 2;
+    private static final int TEXTURE_MASK_BITS = 3 << TEXTURE_MASK_SHIFT;
+    private static final int PROFILE_BITS = 3;
+
+    private PayloadHeader() {
+    }
+
+    /**
+     * Returns header + message, ready to embed.
+     */
+    static byte[] wrap(String key, byte[] message) {
+        return wrap(key, message, 0);
+    }
+
+    /**
+     * @param flags Feature bits such as {@link #FLAG_SHARDED}
+     */
+    static byte[] wrap(String key, byte[] message, int flags) {
+        byte[] data = new byte[SIZE + message.length];
+        byte[] tag = tag(key);
+        data[0] = tag[0];
+        data[1] = tag[1];
+        data[FLAGS_OFFSET] = (byte) ((VERSION << VERSION_SHIFT) | flags);
+        putInt(data, LENGTH_OFFSET, message.length);
+        putInt(data, CRC_OFFSET, crc(message));
+        System.arraycopy(message, 0, data, SIZE, message.length);
+        return data;
+    }
+
+    /**
+     * Supplies embedded bytes one carrier block at a time; returns -1 when the carrier is exhausted.
+     */
+    interface Source {
+        int read();
+    }
+
+    /**
+     * Reads a header, stopping at the first byte that rules the carrier out.
+     *
+     * @param maxLength Largest message the carrier could hold
+     * @return The header bytes, or null if this is not a carrier for the key
+     */
+    static byte[] read(Source in, String key, int maxLength) {
+        byte[] tag = tag(key);
+        byte[] header = new byte[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            int b = in.read();
+            if (b < 0) return null;
+            header[i] = (byte) b;
+            if (i < TAG_BYTES && header[i] != tag[i]) return null;
+            if (i == FLAGS_OFFSET && !isSupported(b)) return null;
+            if (i == CRC_OFFSET - 1) {
+                int len = length(header);
+                if (len < 0 || len > maxLength) return null;
+            }
+        }
+        return header;
+    }
+
+    static byte[] tag(String key) {
+        try {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            byte[] digest = sha.digest(("com.stego.tag:" + key).getBytes(StandardCharsets.UTF_8));
+            return new byte[] {digest[0], digest[1]};
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    static boolean isSupported(int flags) {
+        return ((flags & 0xFF) >>> VERSION_SHIFT) == VERSION;
+    }
+
+    static boolean isSharded(byte[] header) {
+        return (header[FLAGS_OFFSET] & FLAG_SHARDED) != 0;
+    }
+
+    /**
+     * @return The {@link TextureMask#id} recorded in a header
+     */
+    static int textureMask(byte[] header) {
+        return (header[FLAGS_OFFSET] & TEXTURE_MASK_BITS) >>> TEXTURE_MASK_SHIFT;
+    }
+
+    /**
+     * Records the texture mask in the header of a wrapped payload, in place.
+     */
+    static void setTextureMask(byte[] data, int id) {
+        data[FLAGS_OFFSET] = (byte) ((data[FLAGS_OFFSET] & ~TEXTURE_MASK_BITS) | (id << TEXTURE_MASK_SHIFT));
+    }
+
+    /**
+     * @return The {@link CoefficientProfile#id} recorded in a header
+     */
+    static int profile(byte[] header) {
+        return header[FLAGS_OFFSET] & PROFILE_BITS;
+    }
+
+    /**
+     * Records the coefficient profile in the header of a wrapped payload, in place.
+     */
+    static void setProfile(byte[] data, int id) {
+        data[FLAGS_OFFSET] = (byte) ((data[FLAGS_OFFSET] & ~PROFILE_BITS) | id);
+    }
+
+    static int length(byte[] header) {
+        return getInt(header, LENGTH_OFFSET);
+    }
+
+    static int storedCrc(byte[] header) {
+        return getInt(header, CRC_OFFSET);
+    }
+
+    static int crc(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        return (int) crc.getValue();
+    }
+
+    private static void putInt(byte[] b, int off, int v) {
+        b[off] = (byte) (v >>> 24);
+        b[off + 1] = (byte) (v >>> 16);
+        b[off + 2] = (byte) (v >>> 8);
+        b[off + 3] = (byte) v;
+    }
+
+    private static int getInt(byte[] b, int off) {
+        return ((b[off] & 0xFF) << 24) | ((b[off + 1] & 0xFF) << 16) | ((b[off + 2] & 0xFF) << 8) | (b[off + 3] & 0xFF);
+    }
+}
@@ -0,0 +1,458 @@
+package com.stego;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Logger;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * PNG encoder for stego output with a configurable deflate level and filter strategy.
+ *
+ * Scanlines are split into independent row chunks that are filtered and deflated in
+ * parallel (pigz-style): each chunk is primed with the last 32 KB of the previous
+ * chunk as a preset dictionary and ends on a sync flush, so the raw deflate pieces
+ * concatenate into one valid zlib stream. The Adler-32 checksums of the chunks are
+ * combined instead of re-scanning the data.
+ *
+ * Output is 8-bit greyscale, RGB or RGBA depending on the source image. Rasters are written
+ * as RGB, or RGBA for an {@link OffHeapRaster} with alpha, without building a heap image.
+ */
+public class PngWriter {
+
+    /** PNG row filter strategy. ADAPTIVE picks the best filter per row (minimum sum of absolute differences). */
+    public enum Filter { NONE, SUB, UP, AVERAGE, PAETH, ADAPTIVE }
+
+    private static final Logger LOG = Logger.getLogger(PngWriter.class.getName());
+
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+    // Raw bytes per deflate chunk; smaller chunks parallelize better but lose a little ratio at each boundary
+    private static final int TARGET_CHUNK_BYTES = 256 * 1024;
+    private static final int IO_BUFFER_SIZE = 256 * 1024;
+
+    private static final PngWriter DEFAULT = new PngWriter(
+        configuredLevel(), configuredFilter(), StegoConfig.getInt("PNG_PARALLELISM", 0));
+
+    private final int compressionLevel;
+    private final Filter filter;
+    private final int parallelism;
+
+    /**
+     * @param compressionLevel Deflate level 0 (store) to 9 (smallest)
+     * @param filter Row filter strategy
+     * @param parallelism Number of chunks deflated concurrently; 0 uses all available processors
+     */
+    public PngWriter(int compressionLevel, Filter filter, int parallelism) {
+        if (compressionLevel < 0 || compressionLevel > 9) {
+            throw new IllegalArgumentException("PNG compression level must be 0-9: " + compressionLevel);
+        }
+        this.compressionLevel = compressionLevel;
+        this.filter = filter;
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+    }
+
+    // PNG_COMPRESSION_LEVEL in config.properties: 0..9, 4 by default
+    private static int configuredLevel() {
+        int level = StegoConfig.getInt("PNG_COMPRESSION_LEVEL", 4);
+        if (level < 0 || level > 9) {
+            LOG.warning("Invalid value for PNG_COMPRESSION_LEVEL: " + level + ", using 4");
+            return 4;
+        }
+        return level;
+    }
+
+    // PNG_FILTER in config.properties: a Filter name, ADAPTIVE by default
+    private static Filter configuredFilter() {
+        String value = StegoConfig.get("PNG_FILTER", Filter.ADAPTIVE.name());
+        try {
+            return Filter.valueOf(value.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            LOG.warning("Invalid value for PNG_FILTER: " + value + ", using " + Filter.ADAPTIVE);
+            return Filter.ADAPTIVE;
+        }
+    }
+
+    /**
+     * Writer configured from config.properties (PNG_COMPRESSION_LEVEL, PNG_FILTER, PNG_PARALLELISM).
+     */
+    public static PngWriter getDefault() {
+        return DEFAULT;
+    }
+
+    public void write(BufferedImage img, File output) throws IOException {
+        int bpp;
+        if (img.getType() == BufferedImage.TYPE_BYTE_GRAY) {
+            bpp = 1;
+        } else if (img.getColorModel().hasAlpha()) {
+            bpp = 4;
+        } else {
+            bpp = 3;
+        }
+        write(new Rows(img.getWidth(), img.getHeight(), bpp, (y, row) -> readRow(img, y, bpp, row)), output);
+    }
+
+    /**
+     * Writes a raster; heap images are written as by {@link #write(BufferedImage, File)}.
+     */
+    public void write(StegoRaster raster, File output) throws IOException {
+        if (raster instanceof BufferedImageRaster) {
+            write(((BufferedImageRaster) raster).image(), output);
+        } else if (raster instanceof OffHeapRaster) {
+            OffHeapRaster offHeap = (OffHeapRaster) raster;
+            write(new Rows(offHeap.getWidth(), offHeap.getHeight(), offHeap.getBands(), offHeap::readRow), output);
+        } else {
+            write(new Rows(raster.getWidth(), raster.getHeight(), 3, (y, row) -> readRow(raster, y, row)), output);
+        }
+    }
+
+    private void write(Rows source, File output) throws IOException {
+        try (StegoMetrics.Span span = StegoMetrics.start(StegoMetrics.Stage.PNG_WRITE)) {
+            writePng(source, output);
+            span.bytes(output.length());
+        }
+    }
+
+    private interface RowReader {
+        void read(int y, byte[] row);
+    }
+
+    /** Scanline source: dimensions, samples per pixel (1 = G, 3 = RGB, 4 = RGBA) and a row reader. */
+    private static final class Rows {
+        final int width;
+        final int height;
+        final int bpp;
+        final RowReader reader;
+
+        Rows(int width, int height, int bpp, RowReader reader) {
+            this.width = width;
+            this.height = height;
+            this.bpp = bpp;
+            this.reader = reader;
+        }
+    }
+
+    private void writePng(Rows source, File output) throws IOException {
+        int width = source.width;
+        int height = source.height;
+        int bpp = source.bpp;
+        int colorType = bpp == 1 ? 0 : bpp == 4 ? 6 : 2;
+        int rowBytes = width * bpp;
+
+        int rowsPerChunk = parallelism == 1 ? height : Math.max(1, Math.min(
+            (height + parallelism - 1) / parallelism,
+            Math.max(1, TARGET_CHUNK_BYTES / (rowBytes + 1))));
+        int chunkCount = (height + rowsPerChunk - 1) / rowsPerChunk;
+
+        // Chunks are independent; keep at most `parallelism` of them in flight so memory stays bounded
+        List<CompletableFuture<DeflatedChunk>> pieces = new ArrayList<>(chunkCount);
+        for (int c = 0; c < Math.min(parallelism, chunkCount); c++) {
+            pieces.add(submitChunk(source, c, rowsPerChunk, chunkCount, bpp));
+        }
+
+        try (FileChannel channel = FileChannel.open(output.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(IO_BUFFER_SIZE);
+            buffer.put(SIGNATURE);
+
+            ByteBuffer ihdr = ByteBuffer.allocate(13);
+            ihdr.putInt(width).putInt(height).put((byte) 8).put((byte) colorType)
+                .put((byte) 0).put((byte) 0).put((byte) 0);
+            writeChunk(channel, buffer, "IHDR", ihdr.array(), 0, 13);
+
+            long adler = 1;
+            for (int c = 0; c < chunkCount; c++) {
+                DeflatedChunk piece = pieces.get(c).join();
+                pieces.set(c, null);
+                if (c + parallelism < chunkCount) {
+                    pieces.add(submitChunk(source, c + parallelism, rowsPerChunk, chunkCount, bpp));
+                }
+                byte[] data = piece.data;
+                int length = piece.length;
+                if (c == 0) {
+                    // zlib header (CM=8, 32K window) with FLEVEL matching the compression level
+                    byte[] withHeader = new byte[length + 2];
+                    withHeader[0] = 0x78;
+                    withHeader[1] = (byte) zlibFlags(compressionLevel);
+                    System.arraycopy(data, 0, withHeader, 2, length);
+                    data = withHeader;
+                    length += 2;
+                }
+                adler = c == 0 ? piece.adler : adler32Combine(adler, piece.adler, piece.rawLength);
+                if (c == chunkCount - 1) {
+                    data = Arrays.copyOf(data, length + 4);
+                    data[length] = (byte) (adler >>> 24);
+                    data[length + 1] = (byte) (adler >>> 16);
+                    data[length + 2] = (byte) (adler >>> 8);
+                    data[length + 3] = (byte) adler;
+                    length += 4;
+                }
+                writeChunk(channel, buffer, "IDAT", data, 0, length);
+            }
+            writeChunk(channel, buffer, "IEND", new byte[0], 0, 0);
+            flush(channel, buffer);
+        }
+    }
+
+    private CompletableFuture<DeflatedChunk> submitChunk(Rows source, int c, int rowsPerChunk, int chunkCount, int bpp) {
+        int firstRow = c * rowsPerChunk;
+        int lastRow = Math.min(source.height, firstRow + rowsPerChunk);
+        boolean last = c == chunkCount - 1;
+        if (parallelism == 1) {
+            return CompletableFuture.completedFuture(deflateChunk(source, firstRow, lastRow, bpp, last));
+        }
+        return CompletableFuture.supplyAsync(() -> deflateChunk(source, firstRow, lastRow, bpp, last));
+    }
+
+    private static class DeflatedChunk {
+        final byte[] data;
+        final int length;
+        final long adler;
+        final long rawLength;
+
+        DeflatedChunk(byte[] data, int length, long adler, long rawLength) {
+            this.data = data;
+            this.length = length;
+            this.adler = adler;
+            this.rawLength = rawLength;
+        }
+    }
+
+    private DeflatedChunk deflateChunk(Rows source, int firstRow, int lastRow, int bpp, boolean last) {
+        byte[] raw = filterRows(source, firstRow, lastRow, bpp);
+
+        Deflater deflater = new Deflater(compressionLevel, true);
+        try {
+            if (firstRow > 0) {
+                // Prime with the tail of the previous chunk so matches can cross the boundary.
+                // Filtering is deterministic, so re-filtering those rows reproduces the previous chunk's bytes.
+                int rowBytes = source.width * bpp;
+                int rows = Math.min(firstRow, DICTIONARY_SIZE / (rowBytes + 1) + 1);
+                byte[] before = filterRows(source, firstRow - rows, firstRow, bpp);
+                deflater.setDictionary(before, Math.max(0, before.length - DICTIONARY_SIZE),
+                    Math.min(before.length, DICTIONARY_SIZE));
+            }
+            deflater.setInput(raw);
+            if (last) deflater.finish();
+            byte[] buf = new byte[Math.max(64, raw.length / 2)];
+            int len = 0;
+            while (true) {
+                if (len == buf.length) buf = Arrays.copyOf(buf, buf.length * 2);
+                int space = buf.length - len;
+                int n = last
+                    ? deflater.deflate(buf, len, space)
+                    : deflater.deflate(buf, len, space, Deflater.SYNC_FLUSH);
+                len += n;
+                // A sync flush is complete once it leaves output space unused
+                if (last ? deflater.finished() : n < space) break;
+            }
+            Adler32 checksum = new Adler32();
+            checksum.update(raw, 0, raw.length);
+            return new DeflatedChunk(buf, len, checksum.getValue(), raw.length);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /** Filters rows [startRow, endRow) into PNG scanline format (filter type byte + filtered samples). */
+    private byte[] filterRows(Rows source, int startRow, int endRow, int bpp) {
+        int rowBytes = source.width * bpp;
+        byte[] raw = new byte[(endRow - startRow) * (rowBytes + 1)];
+        byte[] prev = new byte[rowBytes];
+        byte[] cur = new byte[rowBytes];
+        byte[][] candidates = new byte[5][rowBytes];
+        if (startRow > 0) source.reader.read(startRow - 1, prev);
+
+        int out = 0;
+        for (int y = startRow; y < endRow; y++) {
+            source.reader.read(y, cur);
+            int type = filter.ordinal();
+            if (filter == Filter.ADAPTIVE) {
+                long bestScore = Long.MAX_VALUE;
+                for (int t = 0; t < 5; t++) {
+                    applyFilter(t, cur, prev, bpp, candidates[t]);
+                    long score = 0;
+                    for (byte b : candidates[t]) score += Math.abs((int) b);
+                    if (score < bestScore) {
+                        bestScore = score;
+                        type = t;
+                    }
+                }
+            } else {
+                applyFilter(type, cur, prev, bpp, candidates[type]);
+            }
+            raw[out] = (byte) type;
+            System.arraycopy(candidates[type], 0, raw, out + 1, rowBytes);
+            out += rowBytes + 1;
+            byte[] t = prev;
+            prev = cur;
+            cur = t;
+        }
+        return raw;
+    }
+
+    private static void applyFilter(int type, byte[] cur, byte[] prev, int bpp, byte[] out) {
+        int n = cur.length;
+        switch (type) {
+            case 0:
+                System.arraycopy(cur, 0, out, 0, n);
+                break;
+            case 1:
+                for (int i = 0; i < n; i++) {
+                    int left = i >= bpp ? cur[i - bpp] & 0xFF : 0;
+                    out[i] = (byte) ((cur[i] & 0xFF) - left);
+                }
+                break;
+            case 2:
+                for (int i = 0; i < n; i++) {
+                    out[i] = (byte) ((cur[i] & 0xFF) - (prev[i] & 0xFF));
+                }
+                break;
+            case 3:
+                for (int i = 0; i < n; i++) {
+                    int left = i >= bpp ? cur[i - bpp] & 0xFF : 0;
+                    out[i] = (byte) ((cur[i] & 0xFF) - ((left + (prev[i] & 0xFF)) >> 1));
+                }
+                break;
+            default:
+                for (int i = 0; i < n; i++) {
+                    int a = i >= bpp ? cur[i - bpp] & 0xFF : 0;
+                    int b = prev[i] & 0xFF;
+                    int c = i >= bpp ? prev[i - bpp] & 0xFF : 0;
+                    out[i] = (byte) ((cur[i] & 0xFF) - paeth(a, b, c));
+                }
+                break;
+        }
+    }
+
+    private static int paeth(int a, int b, int c) {
+        int p = a + b - c;
+        int pa = Math.abs(p - a);
+        int pb = Math.abs(p - b);
+        int pc = Math.abs(p - c);
+        if (pa <= pb && pa <= pc) return a;
+        if (pb <= pc) return b;
+        return c;
+    }
+
+    /** Copies one scanline as 8-bit samples (G, RGB or RGBA), using the backing array when possible. */
+    private static void readRow(BufferedImage img, int y, int bpp, byte[] row) {
+        int width = img.getWidth();
+        switch (img.getType()) {
+            case BufferedImage.TYPE_BYTE_GRAY: {
+                byte[] data = ((DataBufferByte) img.getRaster().getDataBuffer()).getData();
+                System.arraycopy(data, y * width, row, 0, width);
+                return;
+            }
+            case BufferedImage.TYPE_3BYTE_BGR: {
+                byte[] data = ((DataBufferByte) img.getRaster().getDataBuffer()).getData();
+                int p = y * width * 3;
+                for (int x = 0, o = 0; x < width; x++, p += 3, o += 3) {
+                    row[o] = data[p + 2];
+                    row[o + 1] = data[p + 1];
+                    row[o + 2] = data[p];
+                }
+                return;
+            }
+            case BufferedImage.TYPE_INT_RGB: {
+                int[] data = ((DataBufferInt) img.getRaster().getDataBuffer()).getData();
+                int p = y * width;
+                for (int x = 0, o = 0; x < width; x++, o += 3) {
+                    int rgb = data[p + x];
+                    row[o] = (byte) (rgb >> 16);
+                    row[o + 1] = (byte) (rgb >> 8);
+                    row[o + 2] = (byte) rgb;
+                }
+                return;
+            }
+            default: {
+                int[] rgbs = img.getRGB(0, y, width, 1, null, 0, width);
+                for (int x = 0, o = 0; x < width; x++, o += bpp) {
+                    int argb = rgbs[x];
+                    if (bpp == 1) {
+                        row[o] = (byte) argb;
+                        continue;
+                    }
+                    row[o] = (byte) (argb >> 16);
+                    row[o + 1] = (byte) (argb >> 8);
+                    row[o + 2] = (byte) argb;
+                    if (bpp == 4) row[o + 3] = (byte) (argb >>> 24);
+                }
+            }
+        }
+    }
+
+    /** Copies one scanline of a raster as RGB samples. */
+    private static void readRow(StegoRaster raster, int y, byte[] row) {
+        for (int x = 0, o = 0; x < raster.getWidth(); x++, o += 3) {
+            row[o] = (byte) raster.getSample(x, y, StegoRaster.RED);
+            row[o + 1] = (byte) raster.getSample(x, y, StegoRaster.GREEN);
+            row[o + 2] = (byte) raster.getSample(x, y, StegoRaster.BLUE);
+        }
+    }
+
+    private static int zlibFlags(int level) {
+        // FLEVEL 0-3, with FCHECK so that (CMF * 256 + FLG) % 31 == 0
+        if (level <= 1) return 0x01;
+        if (level <= 5) return 0x5E;
+        if (level == 6) return 0x9C;
+        return 0xDA;
+    }
+
+    /** zlib's adler32_combine: checksum of A||B from the checksums of A and B and the length of B. */
+    static long adler32Combine(long adler1, long adler2, long len2) {
+        final long base = 65521;
+        long rem = len2 % base;
+        long sum1 = adler1 & 0xFFFF;
+        long sum2 = (rem * sum1) % base;
+        sum1 += (adler2 & 0xFFFF) + base - 1;
+        sum2 += ((adler1 >> 16) & 0xFFFF) + ((adler2 >> 16) & 0xFFFF) + base - rem;
+        if (sum1 >= base) sum1 -= base;
+        if (sum1 >= base) sum1 -= base;
+        if (sum2 >= (base << 1)) sum2 -= (base << 1);
+        if (sum2 >= base) sum2 -= base;
+        return sum1 | (sum2 << 16);
+    }
+
+    private static void writeChunk(FileChannel channel, ByteBuffer buffer, String type, byte[] data, int off, int len) throws IOException {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, off, len);
+
+        ensureSpace(channel, buffer, 8);
+        buffer.putInt(len);
+        buffer.put(typeBytes);
+        int written = 0;
+        while (written < len) {
+            if (!buffer.hasRemaining()) flush(channel, buffer);
+            int n = Math.min(buffer.remaining(), len - written);
+            buffer.put(data, off + written, n);
+            written += n;
+        }
+        ensureSpace(channel, buffer, 4);
+        buffer.putInt((int) crc.getValue());
+    }
+
+    private static void ensureSpace(FileChannel channel, ByteBuffer buffer, int bytes) throws IOException {
+        if (buffer.remaining() < bytes) flush(channel, buffer);
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) channel.write(buffer);
+        buffer.clear();
+    }
+}
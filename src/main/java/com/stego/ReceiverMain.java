@@ -1,46 +1,26 @@
 package com.stego;
 
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.security.PrivateKey;
 import java.util.List;
+import java.util.logging.Logger;
 
 public class ReceiverMain {
+    private static final Logger LOG = Logger.getLogger(ReceiverMain.class.getName());
     private static final String STEGO_IMAGE = "output.png";
     private static final String KEY_FILE = "keys.enc";
+    // Ciphertext extracted ahead of the decryptor
+    private static final int PIPE_BYTES = 64 * 1024;
 
     public static void main(String[] args) {
         try {
-            System.out.println("--- RECEIVER STARTED ---");
-
-            System.out.println("\n--- 1. Decrypting Keys (Kyber) ---");
-            List<String> keyLines = Files.readAllLines(Paths.get(KEY_FILE));
-            PrivateKey latticePriv = LatticeManager.stringToPrivateKey(keyLines.get(1));
-
-            String aesKey = HybridDecryptor.decryptSessionKey(keyLines.get(2), latticePriv);
-            String vigenereKey = HybridDecryptor.decryptSessionKey(keyLines.get(3), latticePriv);
-            
-            System.out.println("Keys Recovered.");
-            
-            System.out.println("\n--- 2. Extracting Split-Payload (DCT) ---");
-            // Reference: ACM CCS 2025 - "Split Unlearning"
-            // Extract chunks from each channel and combine them
-            String chunk1 = ImageStego.decode(STEGO_IMAGE, vigenereKey, ImageStego.CHANNEL_RED);
-            String chunk2 = ImageStego.decode(STEGO_IMAGE, vigenereKey, ImageStego.CHANNEL_GREEN);
-            String chunk3 = ImageStego.decode(STEGO_IMAGE, vigenereKey, ImageStego.CHANNEL_BLUE);
-            
-            // Combine chunks in order: Header + Body + Metadata
-            String extractedCiphertext = chunk1 + chunk2 + chunk3;
-            System.out.println("Chunk 1 (RED) length: " + chunk1.length());
-            System.out.println("Chunk 2 (GREEN) length: " + chunk2.length());
-            System.out.println("Chunk 3 (BLUE) length: " + chunk3.length());
-            System.out.println("Combined Ciphertext length: " + extractedCiphertext.length());
-            if (extractedCiphertext.length() > 0) {
-                System.out.println("Ciphertext preview: " + extractedCiphertext.substring(0, Math.min(50, extractedCiphertext.length())) + "...");
-            }
-
-            System.out.println("\n--- 3. Decrypting Message ---");
-            String original = FileDecryptor.decryptText(extractedCiphertext, aesKey, vigenereKey);
+            String original = receive(Paths.get(KEY_FILE), Paths.get(STEGO_IMAGE), System.out);
 
             System.out.println("\n✅ SUCCESS! MESSAGE:");
             System.out.println("---------------------");
@@ -51,4 +31,43 @@ public class ReceiverMain {
             e.printStackTrace();
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Runs the receiver pipeline on explicit paths (see {@link Main#send}).
+     *
+     * @param progress Receives the step banners
+     * @return The decrypted message
+     */
+    static String receive(Path keyFile, Path stegoImage, PrintStream progress) throws Exception {
+        progress.println("--- RECEIVER STARTED ---");
+
+        progress.println("\n--- 1. Decrypting Keys (Kyber) ---");
+        List<String> keyLines = Files.readAllLines(keyFile);
+        PrivateKey latticePriv = LatticeManager.stringToPrivateKey(keyLines.get(1));
+
+        String aesKey = HybridDecryptor.decryptSessionKey(keyLines.get(2), latticePriv);
+        String vigenereKey = HybridDecryptor.decryptSessionKey(keyLines.get(3), latticePriv);
+        
+        progress.println("Keys Recovered.");
+        
+        progress.println("\n--- 2. Extracting Split-Payload (DCT) ---");
+        // Reference: ACM CCS 2025 - "Split Unlearning"
+        // The image is decoded once (raw PPM/PGM/BMP is mapped instead); the chunks are extracted in
+        // order (Header + Body + Metadata) on a background thread while the decryptor consumes them
+        MappedRaster mapped = MappedRaster.isSupported(stegoImage) ? MappedRaster.open(stegoImage, false) : null;
+        try {
+            StegoRaster stego = mapped != null ? mapped : StegoRaster.of(ImageStego.readImage(stegoImage.toFile()));
+
+            progress.println("\n--- 3. Decrypting Message ---");
+            StringBuilder original = new StringBuilder();
+            try (Reader ciphertext = new InputStreamReader(ImageStego.openStream(stego, vigenereKey, PIPE_BYTES,
+                    ImageStego.CHANNEL_RED, ImageStego.CHANNEL_GREEN, ImageStego.CHANNEL_BLUE), StandardCharsets.UTF_8)) {
+                long length = FileDecryptor.decryptStream(ciphertext, aesKey, vigenereKey, original);
+                LOG.fine(() -> "Combined ciphertext length: " + length);
+            }
+            return original.toString();
+        } finally {
+            if (mapped != null) mapped.close();
+        }
+    }
+}
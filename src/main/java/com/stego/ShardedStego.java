@@ -0,0 +1,231 @@
+package com.stego;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.logging.Logger;
+
+/**
+ * Splits one payload across an ordered set of cover images.
+ *
+ * Each cover gets a share proportional to its real capacity (a full texture-mask scan), so
+ * large covers carry more and the work is balanced. Every shard is a normal payload with the
+ * sharded flag set in its {@link PayloadHeader}, followed by a shard header:
+ * <pre>
+ *   [payloadId:8][index:2][count:2][totalLength:4][totalCrc:4][shard bytes ...]
+ * </pre>
+ * Shards are embedded and extracted in parallel. On decode they can be passed in any order,
+ * mixed with unrelated images; the shards are reassembled by index and the whole payload is
+ * checked against its length and CRC-32.
+ *
+ * Usage:
+ * <pre>
+ * ShardedStego.encode(covers, outputs, Files.readAllBytes(doc), key, ImageStego.CHANNEL_BLUE);
+ * byte[] doc = ShardedStego.decode(outputs, key, ImageStego.CHANNEL_BLUE);
+ * </pre>
+ */
+public class ShardedStego {
+
+    private static final Logger LOG = Logger.getLogger(ShardedStego.class.getName());
+
+    static final int SHARD_HEADER_SIZE = 20;
+    // Shard index and count are stored in two bytes
+    static final int MAX_SHARDS = 0xFFFF;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    /**
+     * Embeds a payload across covers, writing one stego image per cover.
+     * Covers are decoded twice (capacity pass, then embedding) so only the images being
+     * worked on are held in memory; raw PPM/PGM/BMP covers are memory-mapped as in {@link ImageStego}.
+     *
+     * @param covers Cover image paths, in shard order
+     * @param outputs Output paths, one per cover
+     */
+    public static void encode(List<String> covers, List<String> outputs, byte[] payload, String vigenereKey, String channel) throws Exception {
+        if (covers.size() != outputs.size()) {
+            throw new IllegalArgumentException("Need one output per cover: " + covers.size() + " covers, " + outputs.size() + " outputs");
+        }
+        int[] capacities = parallel(covers, cover -> {
+            File f = new File(cover);
+            if (!f.exists()) throw new RuntimeException("Image not found: " + cover);
+            return capacity(f);
+        }).stream().mapToInt(Integer::intValue).toArray();
+
+        List<byte[]> shards = split(payload, capacities, vigenereKey);
+        PngWriter pngWriter = PngWriter.getDefault();
+        List<Integer> indices = new ArrayList<>();
+        for (int i = 0; i < covers.size(); i++) indices.add(i);
+        parallel(indices, i -> {
+            ImageStego.encodePayload(new File(covers.get(i)), new File(outputs.get(i)), shards.get(i), vigenereKey, channel, pngWriter);
+            return null;
+        });
+        LOG.fine(() -> "Sharded " + payload.length + " bytes across " + covers.size() + " images");
+    }
+
+    /**
+     * In-memory variant of {@link #encode}: embeds into already opened rasters, in place.
+     */
+    public static void embed(List<? extends StegoRaster> covers, byte[] payload, String vigenereKey, String channel) {
+        int[] capacities = parallel(covers, ImageStego::capacity).stream().mapToInt(Integer::intValue).toArray();
+        List<byte[]> shards = split(payload, capacities, vigenereKey);
+        List<Integer> indices = new ArrayList<>();
+        for (int i = 0; i < covers.size(); i++) indices.add(i);
+        parallel(indices, i -> {
+            ImageStego.embedPayload(covers.get(i), shards.get(i), vigenereKey, channel, () -> false);
+            return null;
+        });
+    }
+
+    /**
+     * Extracts and reassembles a sharded payload. Images that carry no shard for this key are ignored.
+     *
+     * @param stegoImages Stego image paths, in any order
+     * @throws RuntimeException if shards are missing, duplicated, from different payloads or fail their checksum
+     */
+    public static byte[] decode(List<String> stegoImages, String vigenereKey, String channel) throws Exception {
+        return reassemble(parallel(stegoImages, image -> ImageStego.decodePayload(new File(image), vigenereKey, channel, true)));
+    }
+
+    /**
+     * In-memory variant of {@link #decode}.
+     */
+    public static byte[] extract(List<? extends StegoRaster> stegoImages, String vigenereKey, String channel) {
+        return reassemble(parallel(stegoImages, img -> ImageStego.extractPayload(img, vigenereKey, channel, true, () -> false)));
+    }
+
+    private static int capacity(File f) throws Exception {
+        if (MappedRaster.isSupported(f.toPath())) {
+            try (MappedRaster raster = MappedRaster.open(f.toPath(), false)) {
+                return ImageStego.capacity(raster);
+            }
+        }
+        return ImageStego.capacity(StegoRaster.of(ImageStego.readImage(f)));
+    }
+
+    // --- SPLIT / REASSEMBLE ---
+
+    /**
+     * Splits the payload in proportion to each cover's capacity and wraps every share in its headers.
+     */
+    static List<byte[]> split(byte[] payload, int[] capacities, String vigenereKey) {
+        int count = capacities.length;
+        if (count == 0) throw new IllegalArgumentException("No cover images");
+        if (count > MAX_SHARDS) throw new IllegalArgumentException("Too many cover images: " + count + " (max " + MAX_SHARDS + ")");
+
+        long total = 0;
+        int[] usable = new int[count];
+        for (int i = 0; i < count; i++) {
+            if (capacities[i] < SHARD_HEADER_SIZE) {
+                throw new RuntimeException("Cover " + i + " is too small or too smooth to carry a shard");
+            }
+            usable[i] = capacities[i] - SHARD_HEADER_SIZE;
+            total += usable[i];
+        }
+        if (payload.length > total) {
+            throw new RuntimeException("Message too long! Need larger images: " + payload.length + " bytes, capacity " + total);
+        }
+
+        byte[] payloadId = new byte[8];
+        RANDOM.nextBytes(payloadId);
+        int totalCrc = PayloadHeader.crc(payload);
+
+        List<byte[]> shards = new ArrayList<>(count);
+        long seen = 0;
+        int offset = 0;
+        for (int i = 0; i < count; i++) {
+            // Cumulative rounding keeps the shares summing exactly to the payload length
+            seen += usable[i];
+            int end = total == 0 ? 0 : (int) (payload.length * seen / total);
+            int len = end - offset;
+
+            ByteBuffer shard = ByteBuffer.allocate(SHARD_HEADER_SIZE + len);
+            shard.put(payloadId).putShort((short) i).putShort((short) count).putInt(payload.length).putInt(totalCrc);
+            shard.put(payload, offset, len);
+            shards.add(PayloadHeader.wrap(vigenereKey, shard.array(), PayloadHeader.FLAG_SHARDED));
+            offset = end;
+        }
+        return shards;
+    }
+
+    static byte[] reassemble(List<byte[]> extracted) {
+        byte[] payloadId = null;
+        byte[][] parts = null;
+        int totalLength = 0;
+        int totalCrc = 0;
+        for (byte[] shard : extracted) {
+            if (shard == null) continue;
+            if (shard.length < SHARD_HEADER_SIZE) throw new RuntimeException("Corrupt shard header");
+            ByteBuffer in = ByteBuffer.wrap(shard);
+            byte[] id = new byte[8];
+            in.get(id);
+            int index = in.getShort() & 0xFFFF;
+            int count = in.getShort() & 0xFFFF;
+            int length = in.getInt();
+            int crc = in.getInt();
+
+            if (payloadId == null) {
+                payloadId = id;
+                parts = new byte[count][];
+                totalLength = length;
+                totalCrc = crc;
+            } else if (!Arrays.equals(payloadId, id)) {
+                throw new RuntimeException("Images carry shards of more than one payload");
+            }
+            if (count != parts.length || length != totalLength || crc != totalCrc || index >= count) {
+                throw new RuntimeException("Inconsistent shard headers");
+            }
+            if (parts[index] != null) throw new RuntimeException("Duplicate shard " + index);
+            parts[index] = Arrays.copyOfRange(shard, SHARD_HEADER_SIZE, shard.length);
+        }
+        if (parts == null) throw new RuntimeException("No shards found for this key");
+
+        byte[] payload = new byte[totalLength];
+        int offset = 0;
+        for (int i = 0; i < parts.length; i++) {
+            if (parts[i] == null) throw new RuntimeException("Missing shard " + i + " of " + parts.length);
+            if (offset + parts[i].length > totalLength) throw new RuntimeException("Shards exceed payload length");
+            System.arraycopy(parts[i], 0, payload, offset, parts[i].length);
+            offset += parts[i].length;
+        }
+        if (offset != totalLength) throw new RuntimeException("Shards do not add up to payload length");
+        if (PayloadHeader.crc(payload) != totalCrc) throw new RuntimeException("Payload checksum mismatch");
+        return payload;
+    }
+
+    // --- PARALLELISM ---
+
+    private interface Task<T, R> {
+        R apply(T t) throws Exception;
+    }
+
+    /**
+     * Runs the task for every item on the common pool and returns the results in order.
+     */
+    private static <T, R> List<R> parallel(List<? extends T> items, Task<T, R> task) {
+        List<CompletableFuture<R>> futures = new ArrayList<>(items.size());
+        for (T item : items) {
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return task.apply(item);
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            }));
+        }
+        List<R> results = new ArrayList<>(items.size());
+        try {
+            for (CompletableFuture<R> f : futures) results.add(f.join());
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw e;
+        }
+        return results;
+    }
+}
@@ -0,0 +1,30 @@
+package com.stego;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JDK Flight Recorder event for one pipeline stage (one image, one message or one key operation).
+ * Per-block work (DCT, IDCT, bit embed/extract) is aggregated per image, so a recording stays small.
+ * Enable with e.g. {@code -XX:StartFlightRecording:filename=stego.jfr}.
+ */
+@Name("com.stego.Stage")
+@Label("Stego Stage")
+@Category("Steganography")
+@Description("Latency of a steganography pipeline stage")
+class StageEvent extends jdk.jfr.Event {
+
+    @Label("Stage")
+    String stage;
+
+    @Label("Operations")
+    @Description("Number of blocks / items processed within this stage")
+    long count;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+}
@@ -0,0 +1,53 @@
+package com.stego;
+
+import java.io.InputStream;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+/**
+ * Read-only view of config.properties, loaded once on first use.
+ */
+public class StegoConfig {
+
+    private static final Logger LOG = Logger.getLogger(StegoConfig.class.getName());
+
+    private static final String CONFIG_FILE = "/config.properties";
+
+    private static class Holder {
+        static final Properties PROPS = load();
+    }
+
+    private static Properties load() {
+        Properties props = new Properties();
+        try (InputStream configStream = StegoConfig.class.getResourceAsStream(CONFIG_FILE)) {
+            if (configStream != null) {
+                props.load(configStream);
+            }
+        } catch (Exception e) {
+            LOG.warning("Failed to load config.properties: " + e.getMessage());
+        }
+        return props;
+    }
+
+    /**
+     * Returns a trimmed property value, or the default if it is missing or blank.
+     */
+    public static String get(String key, String defaultValue) {
+        String value = Holder.PROPS.getProperty(key);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        return value.trim();
+    }
+
+    public static int getInt(String key, int defaultValue) {
+        String value = get(key, null);
+        if (value == null) return defaultValue;
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            LOG.warning("Invalid value for " + key + ": " + value + ", using " + defaultValue);
+            return defaultValue;
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package com.stego;
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.ObjectName;
+import jdk.jfr.FlightRecorder;
+
+/**
+ * In-process metrics registry for the stego pipeline.
+ * Every stage records its latency here and, when a Flight Recording is running, as a {@link StageEvent}.
+ * The registry is exposed over JMX as {@code com.stego:type=Metrics}, registered on a background
+ * thread: starting the platform MBean server takes a few hundred milliseconds, which would
+ * otherwise hold up the first output of every short command-line run.
+ *
+ * Usage:
+ * <pre>
+ * img = StegoMetrics.time(StegoMetrics.Stage.IMAGE_READ, () -&gt; ImageIO.read(f));
+ *
+ * try (StegoMetrics.Span span = StegoMetrics.start(StegoMetrics.Stage.PNG_WRITE)) {
+ *     span.bytes(write(img, out));
+ * }
+ * </pre>
+ */
+public final class StegoMetrics implements StegoMetricsMXBean {
+
+    private static final Logger LOG = Logger.getLogger(StegoMetrics.class.getName());
+
+    public enum Stage {
+        IMAGE_READ,
+        /** Texture mask pass, including the forward DCTs it needs. */
+        MASK_SCAN,
+        /** Forward DCT of payload blocks. */
+        DCT,
+        IDCT,
+        BIT_EMBED,
+        BIT_EXTRACT,
+        PNG_WRITE,
+        JPEG_WRITE,
+        TEXT_ENCRYPT,
+        TEXT_DECRYPT,
+        KYBER_KEYGEN,
+        KYBER_WRAP,
+        KYBER_UNWRAP
+    }
+
+    private static final class StageStats {
+        final LongAdder count = new LongAdder();
+        final LongAdder totalNanos = new LongAdder();
+        final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+    }
+
+    private static final StegoMetrics INSTANCE = new StegoMetrics();
+
+    private static final CompletableFuture<Void> REGISTRATION = CompletableFuture.runAsync(StegoMetrics::register, task -> {
+        Thread t = new Thread(task, "stego-metrics-jmx");
+        t.setDaemon(true);
+        t.start();
+    });
+
+    private static void register() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, new ObjectName("com.stego:type=Metrics"));
+        } catch (Exception e) {
+            LOG.log(Level.WARNING, "Could not register metrics MBean", e);
+        }
+    }
+
+    private final Map<Stage, StageStats> stages = new EnumMap<>(Stage.class);
+    private final LongAdder blocksScanned = new LongAdder();
+    private final LongAdder blocksSkipped = new LongAdder();
+    private final LongAdder bytesEmbedded = new LongAdder();
+    private final LongAdder bytesExtracted = new LongAdder();
+    private final LongAdder capacityBytes = new LongAdder();
+    private final LongAdder coverCacheHits = new LongAdder();
+    private final LongAdder coverCacheMisses = new LongAdder();
+    private final LongAdder coverCacheEvictions = new LongAdder();
+
+    private StegoMetrics() {
+        for (Stage stage : Stage.values()) {
+            stages.put(stage, new StageStats());
+        }
+    }
+
+    /**
+     * The registry, once it is visible over JMX.
+     */
+    public static StegoMetrics get() {
+        REGISTRATION.join();
+        return INSTANCE;
+    }
+
+    /**
+     * Stage events are only created once Flight Recorder is up, since the first event of a
+     * process otherwise loads and registers the whole JFR event machinery.
+     */
+    private static StageEvent newEvent() {
+        return FlightRecorder.isInitialized() ? new StageEvent() : null;
+    }
+
+    /**
+     * A timed stage. Closing it records the latency and commits the JFR event.
+     */
+    public static final class Span implements AutoCloseable {
+        private final Stage stage;
+        private final long start;
+        private final StageEvent event;
+        private long count = 1;
+        private long bytes;
+
+        private Span(Stage stage) {
+            this.stage = stage;
+            this.event = newEvent();
+            if (event != null) event.begin();
+            this.start = System.nanoTime();
+        }
+
+        public Span count(long count) {
+            this.count = count;
+            return this;
+        }
+
+        public Span bytes(long bytes) {
+            this.bytes = bytes;
+            return this;
+        }
+
+        @Override
+        public void close() {
+            long nanos = System.nanoTime() - start;
+            INSTANCE.add(stage, nanos, count);
+            if (event == null) return;
+            event.end();
+            if (event.shouldCommit()) {
+                event.stage = stage.name();
+                event.count = count;
+                event.bytes = bytes;
+                event.commit();
+            }
+        }
+    }
+
+    public static Span start(Stage stage) {
+        return new Span(stage);
+    }
+
+    /**
+     * Body of {@link #time}, which may throw a checked exception.
+     */
+    @FunctionalInterface
+    public interface Timed<T, E extends Exception> {
+        T call() throws E;
+    }
+
+    /**
+     * Runs {@code body} as one operation of {@code stage}.
+     *
+     * @return What {@code body} returned
+     */
+    public static <T, E extends Exception> T time(Stage stage, Timed<T, E> body) throws E {
+        Span span = start(stage);
+        try {
+            return body.call();
+        } finally {
+            span.close();
+        }
+    }
+
+    /**
+     * Records work that was timed by the caller, e.g. the DCTs of all payload blocks of one image.
+     *
+     * @param nanos Total time spent
+     * @param count Number of operations (blocks) it covers
+     */
+    public static void record(Stage stage, long nanos, long count) {
+        INSTANCE.add(stage, nanos, count);
+        StageEvent event = newEvent();
+        if (event != null && event.shouldCommit()) {
+            event.stage = stage.name();
+            event.count = count;
+            event.commit();
+        }
+    }
+
+    public static void blocks(long scanned, long skipped) {
+        INSTANCE.blocksScanned.add(scanned);
+        INSTANCE.blocksSkipped.add(skipped);
+    }
+
+    /**
+     * @param bytes Payload bytes (including header) written into one cover
+     * @param capacity Bytes the cover could hold after masking
+     */
+    public static void embedded(long bytes, long capacity) {
+        INSTANCE.bytesEmbedded.add(bytes);
+        INSTANCE.capacityBytes.add(capacity);
+    }
+
+    public static void extracted(long bytes) {
+        INSTANCE.bytesExtracted.add(bytes);
+    }
+
+    public static void coverCache(boolean hit) {
+        (hit ? INSTANCE.coverCacheHits : INSTANCE.coverCacheMisses).increment();
+    }
+
+    public static void coverCacheEvicted() {
+        INSTANCE.coverCacheEvictions.increment();
+    }
+
+    private void add(Stage stage, long nanos, long count) {
+        StageStats stats = stages.get(stage);
+        stats.count.add(count);
+        stats.totalNanos.add(nanos);
+        stats.maxNanos.accumulate(nanos);
+    }
+
+    // --- MXBean ---
+
+    @Override
+    public Map<String, Long> getStageCounts() {
+        Map<String, Long> out = new LinkedHashMap<>();
+        stages.forEach((stage, stats) -> out.put(stage.name(), stats.count.sum()));
+        return out;
+    }
+
+    @Override
+    public Map<String, Double> getStageTotalMillis() {
+        Map<String, Double> out = new LinkedHashMap<>();
+        stages.forEach((stage, stats) -> out.put(stage.name(), stats.totalNanos.sum() / 1e6));
+        return out;
+    }
+
+    @Override
+    public Map<String, Double> getStageMaxMillis() {
+        Map<String, Double> out = new LinkedHashMap<>();
+        stages.forEach((stage, stats) -> out.put(stage.name(), stats.maxNanos.get() / 1e6));
+        return out;
+    }
+
+    @Override
+    public long getBlocksScanned() {
+        return blocksScanned.sum();
+    }
+
+    @Override
+    public long getBlocksSkipped() {
+        return blocksSkipped.sum();
+    }
+
+    @Override
+    public long getBytesEmbedded() {
+        return bytesEmbedded.sum();
+    }
+
+    @Override
+    public long getBytesExtracted() {
+        return bytesExtracted.sum();
+    }
+
+    @Override
+    public double getCapacityUtilization() {
+        long capacity = capacityBytes.sum();
+        return capacity == 0 ? 0.0 : (double) bytesEmbedded.sum() / capacity;
+    }
+
+    @Override
+    public long getCoverCacheHits() {
+        return coverCacheHits.sum();
+    }
+
+    @Override
+    public long getCoverCacheMisses() {
+        return coverCacheMisses.sum();
+    }
+
+    @Override
+    public long getCoverCacheEvictions() {
+        return coverCacheEvictions.sum();
+    }
+
+    @Override
+    public void reset() {
+        for (StageStats stats : stages.values()) {
+            stats.count.reset();
+            stats.totalNanos.reset();
+            stats.maxNanos.reset();
+        }
+        blocksScanned.reset();
+        blocksSkipped.reset();
+        bytesEmbedded.reset();
+        bytesExtracted.reset();
+        capacityBytes.reset();
+        coverCacheHits.reset();
+        coverCacheMisses.reset();
+        coverCacheEvictions.reset();
+    }
+}
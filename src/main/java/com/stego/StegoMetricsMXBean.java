@@ -0,0 +1,40 @@
+package com.stego;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link StegoMetrics}, registered as {@code com.stego:type=Metrics}.
+ */
+public interface StegoMetricsMXBean {
+
+    /** Completed operations per stage: images/messages/keys for whole stages, blocks for DCT, IDCT and bit embed/extract. */
+    Map<String, Long> getStageCounts();
+
+    /** Accumulated wall time per stage, in milliseconds. */
+    Map<String, Double> getStageTotalMillis();
+
+    /** Longest single recording per stage, in milliseconds. */
+    Map<String, Double> getStageMaxMillis();
+
+    /** 8x8 blocks examined by the texture mask. */
+    long getBlocksScanned();
+
+    /** Blocks rejected by the texture mask as smooth. */
+    long getBlocksSkipped();
+
+    long getBytesEmbedded();
+
+    long getBytesExtracted();
+
+    /** Embedded bytes divided by the usable capacity of the covers they went into. */
+    double getCapacityUtilization();
+
+    /** Encodes whose cover was found in the {@link CoverCache}. */
+    long getCoverCacheHits();
+
+    long getCoverCacheMisses();
+
+    long getCoverCacheEvictions();
+
+    void reset();
+}
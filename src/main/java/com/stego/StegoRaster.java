@@ -0,0 +1,43 @@
+package com.stego;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * 8-bit per-channel pixel access used by the DCT embedding.
+ * Lets the same block logic run over a heap {@link BufferedImage} or a memory-mapped file.
+ */
+public interface StegoRaster {
+
+    int RED = 0;
+    int GREEN = 1;
+    int BLUE = 2;
+
+    int getWidth();
+
+    int getHeight();
+
+    /**
+     * @param channel RED, GREEN or BLUE
+     * @return Sample value 0-255
+     */
+    int getSample(int x, int y, int channel);
+
+    void setSample(int x, int y, int channel, int value);
+
+    /**
+     * Reads samples {@code 0 .. out.length - 1} of one channel of row {@code y}. Overridden where
+     * a row reads faster than sample by sample.
+     */
+    default void getRow(int y, int channel, int[] out) {
+        for (int x = 0; x < out.length; x++) {
+            out[x] = getSample(x, y, channel);
+        }
+    }
+
+    /**
+     * Wraps a decoded image; writes go straight into the image.
+     */
+    static StegoRaster of(BufferedImage img) {
+        return new BufferedImageRaster(img);
+    }
+}
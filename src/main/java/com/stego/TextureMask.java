@@ -0,0 +1,311 @@
+package com.stego;
+
+import java.util.logging.Logger;
+
+/**
+ * How a {@link StegoEngine} tells textured blocks, which carry data, from smooth ones, which
+ * are skipped. Each mask compares one score per 8x8 block of the mask channel with the engine's
+ * threshold, so the threshold is in the units of the mask. An engine gets the scores from the
+ * {@link Scorer} its mask builds for it ({@link #scorer}), one block at a time or a whole channel
+ * in one row-major pass ({@link Scorer#scoreBlocks}); both give exactly the same scores.
+ *
+ * {@link #DCT_VARIANCE} needs a forward transform of every block it examines, so its scorer is
+ * bound to the engine's transform and carrier positions. The pixel-domain masks are computed
+ * from integer sums over the block's samples and the differences between adjacent samples
+ * inside the block, and cost a fraction of a transform per block. Only pairs inside a block
+ * count, so embedding into one block never changes the score of another.
+ *
+ * The mask is recorded in the payload header as its {@link #id}, so a reader that finds no
+ * message with its own mask can retry with the one that was used.
+ */
+public enum TextureMask {
+
+    /**
+     * Variance of the absolute AC coefficients outside the carrier positions. Embedding barely
+     * moves it, since the carrier coefficients are left out.
+     */
+    DCT_VARIANCE(0, ImageStego.VARIANCE_THRESHOLD) {
+        @Override
+        Scorer scorer(StegoEngine.BlockTransform transform, boolean[] carriers) {
+            return new DctVariance(transform, carriers);
+        }
+    },
+    /** Variance of the 64 samples of the block. */
+    LOCAL_VARIANCE(1, 300) {
+        @Override
+        Scorer scorer(StegoEngine.BlockTransform transform, boolean[] carriers) {
+            return new PixelScorer((sum, sumSq, gradient, edges) -> (N * N * sumSq - sum * sum) / (double) (N * N * N * N));
+        }
+    },
+    /** Mean squared difference between horizontally and vertically adjacent samples. */
+    GRADIENT_ENERGY(2, 200) {
+        @Override
+        Scorer scorer(StegoEngine.BlockTransform transform, boolean[] carriers) {
+            return new PixelScorer((sum, sumSq, gradient, edges) -> gradient / (double) PAIRS);
+        }
+    },
+    /** Fraction of adjacent sample pairs that differ by at least {@link #EDGE_STEP}. */
+    EDGE_DENSITY(3, 0.3) {
+        @Override
+        Scorer scorer(StegoEngine.BlockTransform transform, boolean[] carriers) {
+            return new PixelScorer((sum, sumSq, gradient, edges) -> edges / (double) PAIRS);
+        }
+    };
+
+    private static final Logger LOG = Logger.getLogger(TextureMask.class.getName());
+
+    /** Sample difference that counts as an edge for {@link #EDGE_DENSITY}. */
+    public static final int EDGE_STEP = 8;
+
+    private static final int N = 8;
+    // Adjacent pairs inside a block: 7 per row and 7 per column
+    private static final int PAIRS = 2 * N * (N - 1);
+
+    private final int id;
+    private final double defaultThreshold;
+
+    TextureMask(int id, double defaultThreshold) {
+        this.id = id;
+        this.defaultThreshold = defaultThreshold;
+    }
+
+    /**
+     * @return The 2-bit code of this mask in the payload header
+     */
+    public int id() {
+        return id;
+    }
+
+    /**
+     * Threshold a {@link StegoEngine.Builder} uses with this mask unless told otherwise, chosen
+     * to pass about as many blocks of a photograph as {@link #DCT_VARIANCE} does at its default.
+     */
+    public double defaultThreshold() {
+        return defaultThreshold;
+    }
+
+    static TextureMask fromId(int id) {
+        for (TextureMask mask : values()) {
+            if (mask.id == id) return mask;
+        }
+        throw new IllegalArgumentException("Unknown texture mask id: " + id);
+    }
+
+    /**
+     * Whether the score is computed from samples rather than transform coefficients, so that
+     * scoring a whole channel costs much less than transforming every block of it.
+     */
+    boolean isPixelDomain() {
+        return this != DCT_VARIANCE;
+    }
+
+    // TEXTURE_MASK in config.properties: default mask of StegoEngine.builder()
+    static TextureMask configured() {
+        String value = StegoConfig.get("TEXTURE_MASK", DCT_VARIANCE.name());
+        try {
+            return valueOf(value.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            LOG.warning("Invalid value for TEXTURE_MASK: " + value + ", using " + DCT_VARIANCE);
+            return DCT_VARIANCE;
+        }
+    }
+
+    /**
+     * Builds the block scorer of this mask for one engine.
+     *
+     * @param transform The engine's block transform
+     * @param carriers Whether each block index {@code x * 8 + y} is a carrier position of the engine
+     */
+    abstract Scorer scorer(StegoEngine.BlockTransform transform, boolean[] carriers);
+
+    /**
+     * Texture score of 8x8 blocks, in the units of the mask's threshold. Thread-safe.
+     */
+    interface Scorer {
+
+        /**
+         * Scores one block.
+         *
+         * @param samples The 8x8 block, row-major, holding integer sample values
+         */
+        double score(double[] samples);
+
+        /**
+         * Scores every block in block rows {@code [fromRow, toRow)} of a channel, reading it one
+         * row at a time through {@link StegoRaster#getRow}.
+         *
+         * @param scores Receives the score of block (bx, by) at {@code by * blocksX + bx}, with
+         *        {@code blocksX = width / 8}
+         */
+        void scoreBlocks(StegoRaster img, int channel, int fromRow, int toRow, double[] scores);
+    }
+
+    /**
+     * {@link #DCT_VARIANCE}: transforms each block and takes the variance of the absolute AC
+     * coefficients. High variance indicates textured areas (good for embedding), low variance
+     * smooth areas, which are skipped to avoid visible artifacts.
+     * Reference: ACM TOMM 2024 - "Enhancing Adversarial Embedding"
+     *
+     * The carrier positions are left out, so writing a payload into the mask channel does not
+     * by itself move a block across the threshold.
+     */
+    private static final class DctVariance implements Scorer {
+        private static final ThreadLocal<double[][]> SCRATCH = ThreadLocal.withInitial(() -> new double[2][N * N]);
+
+        private final StegoEngine.BlockTransform transform;
+        private final boolean[] carriers;
+
+        DctVariance(StegoEngine.BlockTransform transform, boolean[] carriers) {
+            this.transform = transform;
+            this.carriers = carriers.clone();
+        }
+
+        @Override
+        public double score(double[] samples) {
+            double[][] scratch = SCRATCH.get();
+            transform.forward(samples, scratch[0], scratch[1]);
+            return variance(scratch[0]);
+        }
+
+        @Override
+        public void scoreBlocks(StegoRaster img, int channel, int fromRow, int toRow, double[] scores) {
+            int blocksX = img.getWidth() / N;
+            int[][] rows = new int[N][blocksX * N];
+            double[] samples = new double[N * N];
+            for (int by = fromRow; by < toRow; by++) {
+                for (int y = 0; y < N; y++) img.getRow(by * N + y, channel, rows[y]);
+                for (int bx = 0; bx < blocksX; bx++) {
+                    int x0 = bx * N;
+                    for (int y = 0; y < N; y++) {
+                        for (int x = 0; x < N; x++) samples[y * N + x] = rows[y][x0 + x];
+                    }
+                    scores[by * blocksX + bx] = score(samples);
+                }
+            }
+        }
+
+        private double variance(double[] coeffs) {
+            // Mean of the absolute AC coefficients (excluding DC component at [0][0])
+            double sum = 0.0;
+            int count = 0;
+            for (int i = 1; i < N * N; i++) {
+                if (!carriers[i]) {
+                    sum += Math.abs(coeffs[i]);
+                    count++;
+                }
+            }
+            if (count == 0) return 0.0;
+            double mean = sum / count;
+
+            double sumSqDiff = 0.0;
+            for (int i = 1; i < N * N; i++) {
+                if (!carriers[i]) {
+                    double diff = Math.abs(coeffs[i]) - mean;
+                    sumSqDiff += diff * diff;
+                }
+            }
+            return sumSqDiff / count;
+        }
+    }
+
+    /**
+     * Pixel-domain score from a block's sample sum, sum of squares, squared differences of
+     * adjacent samples, and number of edges among those pairs.
+     */
+    @FunctionalInterface
+    private interface PixelScore {
+        double of(long sum, long sumSq, long gradient, long edges);
+    }
+
+    /**
+     * Scorer of the pixel-domain masks, from integer sums over the samples of each block.
+     */
+    private static final class PixelScorer implements Scorer {
+        private final PixelScore score;
+
+        PixelScorer(PixelScore score) {
+            this.score = score;
+        }
+
+        @Override
+        public double score(double[] samples) {
+            long sum = 0, sumSq = 0, gradient = 0, edges = 0;
+            for (int y = 0; y < N; y++) {
+                for (int x = 0; x < N; x++) {
+                    int v = (int) samples[y * N + x];
+                    sum += v;
+                    sumSq += v * v;
+                    if (x > 0) {
+                        int d = v - (int) samples[y * N + x - 1];
+                        gradient += d * d;
+                        edges += edge(d);
+                    }
+                    if (y > 0) {
+                        int d = v - (int) samples[(y - 1) * N + x];
+                        gradient += d * d;
+                        edges += edge(d);
+                    }
+                }
+            }
+            return score.of(sum, sumSq, gradient, edges);
+        }
+
+        @Override
+        public void scoreBlocks(StegoRaster img, int channel, int fromRow, int toRow, double[] scores) {
+            int blocksX = img.getWidth() / N;
+            int width = blocksX * N;
+            long[] sum = new long[blocksX];
+            long[] sumSq = new long[blocksX];
+            long[] gradient = new long[blocksX];
+            long[] edges = new long[blocksX];
+            int[] above = new int[width];
+            int[] row = new int[width];
+            for (int by = fromRow; by < toRow; by++) {
+                for (int y = 0; y < N; y++) {
+                    img.getRow(by * N + y, channel, row);
+                    for (int bx = 0; bx < blocksX; bx++) {
+                        // One row of one block; ints cannot overflow over 8 samples
+                        int x0 = bx * N;
+                        int s = 0, sq = 0, g = 0, e = 0;
+                        for (int x = x0; x < x0 + N; x++) {
+                            int v = row[x];
+                            s += v;
+                            sq += v * v;
+                        }
+                        for (int x = x0 + 1; x < x0 + N; x++) {
+                            int d = row[x] - row[x - 1];
+                            g += d * d;
+                            e += edge(d);
+                        }
+                        if (y > 0) {
+                            for (int x = x0; x < x0 + N; x++) {
+                                int d = row[x] - above[x];
+                                g += d * d;
+                                e += edge(d);
+                            }
+                        }
+                        sum[bx] += s;
+                        sumSq[bx] += sq;
+                        gradient[bx] += g;
+                        edges[bx] += e;
+                    }
+                    int[] t = above;
+                    above = row;
+                    row = t;
+                }
+                for (int bx = 0; bx < blocksX; bx++) {
+                    scores[by * blocksX + bx] = score.of(sum[bx], sumSq[bx], gradient[bx], edges[bx]);
+                    sum[bx] = sumSq[bx] = gradient[bx] = edges[bx] = 0;
+                }
+            }
+        }
+
+        /**
+         * @return 1 if a sample difference counts as an edge, else 0; without a branch, since edges
+         *         in a textured block are close to random
+         */
+        private static int edge(int d) {
+            return (EDGE_STEP - 1 - Math.abs(d)) >>> 31;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.stego;
+
+/**
+ * A well-formed JPEG that {@link JpegCodec} cannot edit in the coefficient domain: progressive,
+ * 12-bit or otherwise not baseline Huffman. Callers can still decode it to pixels.
+ */
+public class UnsupportedJpegException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    public UnsupportedJpegException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,87 @@
+package com.stego;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.imageio.ImageIO;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class AsyncImageStegoTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private File cover(String name, int width, int height) throws Exception {
+        BufferedImage img = TestImages.noise(width, height, 5);
+        File f = tmp.newFile(name);
+        ImageIO.write(img, "png", f);
+        return f;
+    }
+
+    @Test
+    public void concurrentJobsRoundTripWithinBudget() throws Exception {
+        File cover = cover("cover.png", 160, 120);
+        // Budget fits a single decoded image, so jobs are admitted one at a time
+        try (AsyncImageStego stego = new AsyncImageStego(2, 2, 160 * 120 * 4)) {
+            List<CompletableFuture<String>> jobs = new ArrayList<>();
+            for (int i = 0; i < 6; i++) {
+                String out = new File(tmp.getRoot(), "stego" + i + ".png").getPath();
+                String key = "KEY" + i;
+                jobs.add(stego.encodeAsync(cover.getPath(), out, "async payload " + i, key, ImageStego.CHANNEL_GREEN)
+                    .thenCompose(v -> stego.decodeAsync(out, key, ImageStego.CHANNEL_GREEN)));
+            }
+            for (int i = 0; i < jobs.size(); i++) {
+                assertEquals("async payload " + i, jobs.get(i).get());
+            }
+        }
+    }
+
+    @Test
+    public void failuresCompleteExceptionally() throws Exception {
+        try (AsyncImageStego stego = new AsyncImageStego(1, 1, 0)) {
+            CompletableFuture<Void> job = stego.encodeAsync(new File(tmp.getRoot(), "missing.png").getPath(),
+                new File(tmp.getRoot(), "out.png").getPath(), "x", "KEY");
+            assertTrue(job.isCompletedExceptionally());
+        }
+    }
+
+    @Test
+    public void cancelledJobWaitingForMemoryNeverRuns() throws Exception {
+        File cover = cover("big.png", 256, 256);
+        File first = new File(tmp.getRoot(), "first.png");
+        File second = new File(tmp.getRoot(), "second.png");
+        try (AsyncImageStego stego = new AsyncImageStego(1, 1, 1)) {
+            CompletableFuture<Void> a = stego.encodeAsync(cover.getPath(), first.getPath(), "one", "KEY");
+            CompletableFuture<Void> b = stego.encodeAsync(cover.getPath(), second.getPath(), "two", "KEY");
+            assertTrue(b.cancel(true));
+            a.get();
+        }
+        assertTrue(first.exists());
+        assertFalse(second.exists());
+    }
+
+    @Test
+    public void embeddingStopsMidImageWhenCancelled() throws Exception {
+        BufferedImage img = ImageIO.read(cover("mid.png", 256, 256));
+        AtomicInteger polls = new AtomicInteger();
+        try {
+            ImageStego.embed(StegoRaster.of(img), "payload", "KEY", ImageStego.CHANNEL_BLUE, () -> polls.incrementAndGet() > 3);
+            fail("expected cancellation");
+        } catch (CancellationException expected) {
+            // Polled once per carrier block: stopped after the third of 18
+            assertEquals(4, polls.get());
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.stego;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import javax.imageio.ImageIO;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CoverCacheTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private File cover(String name, int width, int height, long seed) throws Exception {
+        BufferedImage img = TestImages.noise(width, height, seed);
+        File f = tmp.newFile(name);
+        ImageIO.write(img, "png", f);
+        return f;
+    }
+
+    @Test
+    public void repeatEmbedsMatchUncachedEmbeds() throws Exception {
+        File file = cover("template.png", 320, 240, 1);
+        CoverCache cache = new CoverCache(64L * 1024 * 1024);
+        long hits = StegoMetrics.get().getCoverCacheHits();
+
+        for (String message : new String[] {"first message", "second, longer message", "first message"}) {
+            CoverCache.Template template = cache.get(file);
+            ImageStego.Cover cached = new ImageStego.Cover(template.copy(), template);
+            ImageStego.embedPayload(cached, PayloadHeader.wrap("KEY", message.getBytes()), "KEY", ImageStego.CHANNEL_BLUE, () -> false);
+
+            BufferedImage plain = ImageIO.read(file);
+            ImageStego.embed(plain, message, "KEY", ImageStego.CHANNEL_BLUE);
+            for (int y = 0; y < 240; y++) {
+                for (int x = 0; x < 320; x++) {
+                    assertEquals(plain.getRGB(x, y) & 0xFFFFFF, rgb(cached.raster, x, y));
+                }
+            }
+            assertEquals(message, ImageStego.extract(cached.raster, "KEY", ImageStego.CHANNEL_BLUE));
+        }
+        assertEquals(hits + 2, StegoMetrics.get().getCoverCacheHits());
+        // The pristine pixels were never written to
+        assertEquals("", ImageStego.extract(cache.get(file).pixels, "KEY", ImageStego.CHANNEL_BLUE));
+    }
+
+    @Test
+    public void leastRecentlyUsedCoverIsEvicted() throws Exception {
+        File a = cover("a.png", 64, 64, 2);
+        File b = cover("b.png", 64, 64, 3);
+        File copyOfA = tmp.newFile("copy-of-a.png");
+        Files.copy(a.toPath(), copyOfA.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        // Room for one 64x64 cover, not two
+        CoverCache cache = new CoverCache(64 * 64 * 6);
+        long evictions = StegoMetrics.get().getCoverCacheEvictions();
+
+        CoverCache.Template first = cache.get(a);
+        // Same contents under another name: same entry
+        assertSame(first, cache.get(copyOfA));
+        cache.get(b);
+        assertEquals(1, cache.size());
+        assertEquals(evictions + 1, StegoMetrics.get().getCoverCacheEvictions());
+        assertNotSame(first, cache.get(a));
+    }
+
+    private static int rgb(StegoRaster raster, int x, int y) {
+        return raster.getSample(x, y, StegoRaster.RED) << 16
+            | raster.getSample(x, y, StegoRaster.GREEN) << 8
+            | raster.getSample(x, y, StegoRaster.BLUE);
+    }
+}
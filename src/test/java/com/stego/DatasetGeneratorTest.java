@@ -0,0 +1,222 @@
+package com.stego;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.FloatBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DatasetGeneratorTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void leasesAreExclusiveUntilTheyExpire() throws Exception {
+        Path dir = tmp.getRoot().toPath();
+        LeaseQueue a = new LeaseQueue(dir, "a", Duration.ofMillis(200));
+        LeaseQueue b = new LeaseQueue(dir, "b", Duration.ofMinutes(1));
+
+        LeaseQueue.Lease first = a.tryClaim("item");
+        assertNotNull(first);
+        assertNull(b.tryClaim("item"));
+
+        // a stalls past its lease: b takes over, and a can no longer release b's lease
+        Thread.sleep(300);
+        LeaseQueue.Lease second = b.tryClaim("item");
+        assertNotNull(second);
+        a.release(first);
+        assertNull(a.tryClaim("item"));
+
+        b.complete(second, "OK");
+        assertTrue(a.isDone("item"));
+        assertNull(a.tryClaim("item"));
+        assertEquals(0, a.pending(List.of("item")));
+        assertEquals(1, a.pending(List.of("item", "other")));
+    }
+
+    @Test
+    public void processesShareTheQueueAndMergeIntoOneManifest() throws Exception {
+        Path source = tmp.newFolder("source").toPath();
+        Path output = tmp.newFolder("output").toPath();
+        Random rnd = new Random(7);
+        for (int i = 0; i < 9; i++) {
+            BufferedImage img = TestImages.noise(96, 96, rnd);
+            ImageIO.write(img, "png", source.resolve("cover" + i + ".png").toFile());
+        }
+        // Same content under another name: one pair
+        Files.copy(source.resolve("cover0.png"), source.resolve("copy.png"));
+
+        List<Process> nodes = new ArrayList<>();
+        for (int n = 0; n < 3; n++) {
+            nodes.add(new ProcessBuilder(Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", System.getProperty("java.class.path"), DatasetGenerator.class.getName(), "work",
+                "--source=" + source, "--output=" + output, "--node=node" + n, "--threads=2")
+                .redirectErrorStream(true)
+                .redirectOutput(tmp.newFile("node" + n + ".log"))
+                .start());
+        }
+        for (Process p : nodes) {
+            assertTrue(p.waitFor(2, TimeUnit.MINUTES));
+            assertEquals(0, p.exitValue());
+        }
+
+        DatasetGenerator.Options o = DatasetGenerator.Options.parse(new String[] {"--source=" + source, "--output=" + output});
+        ByteArrayOutputStream report = new ByteArrayOutputStream();
+        assertEquals(0, DatasetGenerator.merge(o, new PrintStream(report, true, "UTF-8")));
+
+        List<String> lines = Files.readAllLines(output.resolve(DatasetGenerator.MANIFEST), StandardCharsets.UTF_8);
+        assertEquals(report.toString("UTF-8"), 1 + 9, lines.size());
+        Set<String> sources = new HashSet<>();
+        for (String line : lines.subList(1, lines.size())) {
+            String[] f = line.split("\t");
+            sources.add(f[1]);
+            assertEquals(f[4], ImageStego.decode(output.resolve(f[3]).toString(), "DEFAULT", ImageStego.CHANNEL_BLUE));
+        }
+        // The duplicate keeps the first name in sort order
+        assertTrue(sources.contains("copy.png"));
+        assertEquals(9, sources.size());
+        try (Stream<Path> covers = Files.list(output.resolve("cover"))) {
+            assertEquals(9, covers.count());
+        }
+    }
+
+    @Test
+    public void featuresAreWrittenToAnIndexedColumnarFile() throws Exception {
+        Path source = tmp.newFolder("source").toPath();
+        Path output = tmp.newFolder("output").toPath();
+        DatasetGenerator.Options o = DatasetGenerator.Options.parse(new String[] {"--output=" + output, "--threads=2"});
+        Random rnd = new Random(11);
+        StringBuilder manifest = new StringBuilder("# header\n");
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            BufferedImage img = TestImages.noise(128, 96, rnd);
+            Path cover = source.resolve("cover" + i + ".png");
+            ImageIO.write(img, "png", cover.toFile());
+            lines.add(DatasetGenerator.writePair(cover, Files.createDirectories(output.resolve("cover")),
+                Files.createDirectories(output.resolve("stego")), o));
+        }
+        lines.sort(null);
+        for (String line : lines) manifest.append(line).append('\n');
+        Files.write(output.resolve(DatasetGenerator.MANIFEST), manifest.toString().getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(0, DatasetGenerator.features(o, new PrintStream(new ByteArrayOutputStream(), true, "UTF-8")));
+
+        FeatureExtractor extractor = new FeatureExtractor(StegoEngine.getDefault(), ImageStego.CHANNEL_BLUE);
+        try (FeatureFile file = FeatureFile.open(output.resolve(DatasetGenerator.FEATURES))) {
+            assertEquals(8, file.rows());
+            assertEquals(1 + extractor.columns().size(), file.columns().size());
+            FloatBuffer label = file.column("label");
+            for (String line : lines) {
+                String[] f = line.split("\t");
+                int row = file.find(f[0]);
+                assertEquals(f[0], file.digest(row));
+                assertEquals(0f, label.get(row), 0f);
+                assertEquals(1f, label.get(row + 1), 0f);
+                for (int r = 0; r < 2; r++) {
+                    float[] expected = extractor.extract(StegoRaster.of(ImageIO.read(output.resolve(f[2 + r]).toFile())));
+                    for (int c = 0; c < expected.length; c++) {
+                        assertEquals(expected[c], file.column(extractor.columns().get(c)).get(row + r), 0f);
+                    }
+                }
+            }
+            assertEquals(-1, file.find("00".repeat(32)));
+            float sum = 0;
+            for (int q = -FeatureExtractor.HISTOGRAM_T; q <= FeatureExtractor.HISTOGRAM_T; q++) sum += file.column("hist_ac_" + q).get(0);
+            assertEquals(1f, sum, 1e-5f);
+        }
+    }
+
+    @Test
+    public void featureFileRowsAreTransposedAcrossChunks() throws Exception {
+        Path path = tmp.getRoot().toPath().resolve("chunked.bin");
+        List<String> columns = List.of("a", "b", "c");
+        int rows = 23;
+        // 3 rows per chunk, so the last chunk is partial
+        try (FeatureFile.Writer writer = new FeatureFile.Writer(path, columns, 3 * (32 + 3 * Float.BYTES) + 5)) {
+            for (int r = 0; r < rows; r++) {
+                writer.add(String.format("%064x", r / 2), new float[] {r, 100 + r, -r});
+            }
+            writer.finish();
+        }
+        assertFalse(Files.exists(tmp.getRoot().toPath().resolve("chunked.bin.rows")));
+        try (FeatureFile file = FeatureFile.open(path)) {
+            assertEquals(rows, file.rows());
+            for (int r = 0; r < rows; r++) {
+                assertEquals(r, file.column("a").get(r), 0f);
+                assertEquals(100 + r, file.column("b").get(r), 0f);
+                assertEquals(-r, file.column("c").get(r), 0f);
+                assertEquals(String.format("%064x", r / 2), file.digest(r));
+            }
+            assertEquals(10, file.find(String.format("%064x", 5)));
+        }
+    }
+
+    @Test
+    public void progressiveJpegCoversFallBackToThePixelPath() throws Exception {
+        Path source = tmp.newFolder("source").toPath();
+        Path output = tmp.newFolder("output").toPath();
+        DatasetGenerator.Options o = DatasetGenerator.Options.parse(new String[] {"--output=" + output});
+        Path jpeg = source.resolve("progressive.jpg");
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(jpeg.toFile())) {
+            writer.setOutput(out);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+            writer.write(null, new IIOImage(TestImages.noise(128, 96, 9), null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        try {
+            JpegCodec.read(Files.readAllBytes(jpeg));
+            fail("progressive JPEG is not baseline");
+        } catch (UnsupportedJpegException expected) {
+        }
+
+        String[] f = DatasetGenerator.writePair(jpeg, Files.createDirectories(output.resolve("cover")),
+            Files.createDirectories(output.resolve("stego")), o).split("\t");
+        assertTrue(f[2], f[2].endsWith(".png"));
+        assertEquals(f[4], ImageStego.decode(output.resolve(f[3]).toString(), o.key));
+        try (Stream<Path> covers = Files.list(output.resolve("cover"))) {
+            assertEquals(1, covers.count());
+        }
+    }
+
+    @Test
+    public void carrierResidualsDropWhereDataIsEmbedded() {
+        BufferedImage img = TestImages.noise(128, 128, 5);
+        StegoRaster raster = StegoRaster.of(img);
+        FeatureExtractor extractor = new FeatureExtractor(StegoEngine.getDefault(), ImageStego.CHANNEL_BLUE);
+        int residual = extractor.columns().indexOf("residual_0");
+        float before = extractor.extract(raster)[residual];
+        StegoEngine.getDefault().embed(raster, "x".repeat(200), "DEFAULT", ImageStego.CHANNEL_BLUE);
+        float after = extractor.extract(raster)[residual];
+        assertTrue(before + " -> " + after, before > 0.2f && after < before / 2);
+    }
+}
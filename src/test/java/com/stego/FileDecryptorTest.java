@@ -0,0 +1,106 @@
+package com.stego;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.security.GeneralSecurityException;
+
+import org.junit.Test;
+
+public class FileDecryptorTest {
+
+    // Reads a few characters at a time, so words straddle read boundaries
+    private static Reader trickle(String s) {
+        return new StringReader(s) {
+            @Override
+            public int read(char[] buf, int off, int len) throws IOException {
+                return super.read(buf, off, Math.min(len, 3));
+            }
+        };
+    }
+
+    @Test
+    public void streamMatchesWholeTextDecryption() throws Exception {
+        FileEncryptor.Output output = FileEncryptor.encryptText("At evening we attack  the\tsouth gate.\nFrom Northwest, ships will invade!");
+        String expected = FileDecryptor.decryptText(output.finalOutput, output.aesKey, output.vigenereKey);
+
+        StringBuilder streamed = new StringBuilder();
+        long read = FileDecryptor.decryptStream(trickle(output.finalOutput), output.aesKey, output.vigenereKey, streamed);
+        assertEquals(expected, streamed.toString());
+        assertEquals(output.finalOutput.length(), read);
+    }
+
+    @Test
+    public void gcmModeRoundTripsExactlyAndIsSmaller() throws Exception {
+        String message = "Coordinates 48.8584N 2.2945E confirmed; rendezvous with the extraction team at 0400.\n"
+            + "  Exact   spacing is kept, and the authentication codes X9-kQz2 and Lm7#Rt4p rotate hourly.";
+        FileEncryptor.Output gcm = FileEncryptor.encryptText(message, FileEncryptor.Mode.GCM);
+        FileEncryptor.Output perWord = FileEncryptor.encryptText(message, FileEncryptor.Mode.ENTROPY);
+        assertTrue(gcm.finalOutput.length() < perWord.finalOutput.length());
+        // One word, so it survives the whitespace-insensitive split/extract path unchanged
+        assertFalse(gcm.finalOutput.matches(".*\\s.*"));
+
+        assertEquals(message, FileDecryptor.decryptText(gcm.finalOutput, gcm.aesKey, gcm.vigenereKey));
+        StringBuilder streamed = new StringBuilder();
+        FileDecryptor.decryptStream(trickle(gcm.finalOutput), gcm.aesKey, gcm.vigenereKey, streamed);
+        assertEquals(message, streamed.toString());
+
+        // Fresh nonce per message
+        assertNotEquals(gcm.finalOutput, CipherEnvelope.seal(message, gcm.aesKey));
+    }
+
+    @Test
+    public void compressedEnvelopesRoundTripAndShrink() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            text.append("Convoy ").append(i).append(" leaves the northern depot at 0400 with full escort.\n");
+        }
+        String message = text.toString().trim();
+        int plain = FileEncryptor.encryptText(message, FileEncryptor.Mode.GCM, FileEncryptor.Compression.NONE, 0).finalOutput.length();
+
+        for (FileEncryptor.Compression compression : new FileEncryptor.Compression[] {FileEncryptor.Compression.DEFLATE, FileEncryptor.Compression.LZ}) {
+            FileEncryptor.Output output = FileEncryptor.encryptText(message, FileEncryptor.Mode.GCM, compression, 9);
+            assertTrue(compression + " did not shrink the envelope", output.finalOutput.length() < plain / 3);
+            assertEquals(message, FileDecryptor.decryptText(output.finalOutput, output.aesKey, output.vigenereKey));
+            StringBuilder streamed = new StringBuilder();
+            FileDecryptor.decryptStream(trickle(output.finalOutput), output.aesKey, output.vigenereKey, streamed);
+            assertEquals(message, streamed.toString());
+        }
+        // Incompressible text is sealed as is rather than grown
+        String key = FileEncryptor.generateAESKey();
+        assertEquals(CipherEnvelope.seal("x", key).length(), CipherEnvelope.seal("x", key, FileEncryptor.Compression.DEFLATE, 6).length());
+
+        try {
+            FileEncryptor.encryptText(message, FileEncryptor.Mode.ENTROPY, FileEncryptor.Compression.LZ, 6);
+            fail("Per-word ciphertext cannot be compressed");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void tamperedOrLookalikeEnvelopesAreNotTrusted() throws Exception {
+        String key = FileEncryptor.generateAESKey();
+        String sealed = CipherEnvelope.seal("attack at dawn", key);
+        char last = sealed.charAt(sealed.length() - 2);
+        String tampered = sealed.substring(0, sealed.length() - 2) + (last == 'A' ? 'B' : 'A') + sealed.charAt(sealed.length() - 1);
+        try {
+            CipherEnvelope.open(tampered, key);
+            fail("Modified envelope must fail its tag");
+        } catch (GeneralSecurityException expected) {
+        }
+        try {
+            CipherEnvelope.open(sealed, FileEncryptor.generateAESKey());
+            fail("Envelope opened with the wrong key");
+        } catch (GeneralSecurityException expected) {
+        }
+        // A per-word message whose first word starts with the prefix still decrypts per word
+        FileEncryptor.Output output = FileEncryptor.encryptText("@team ping me", FileEncryptor.Mode.ENTROPY);
+        assertEquals("@team ping me", FileDecryptor.decryptText(output.finalOutput, output.aesKey, output.vigenereKey));
+    }
+}
@@ -0,0 +1,188 @@
+package com.stego;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class ImageStegoTest {
+
+    @Test
+    public void roundTripAllChannels() {
+        BufferedImage img = TestImages.noise(200, 160, 1);
+        ImageStego.embed(img, "red part", "KEY", ImageStego.CHANNEL_RED);
+        ImageStego.embed(img, "green part", "KEY", ImageStego.CHANNEL_GREEN);
+        ImageStego.embed(img, "blue part", "KEY", ImageStego.CHANNEL_BLUE);
+
+        StegoRaster raster = StegoRaster.of(img);
+        assertEquals("red part", ImageStego.extract(raster, "KEY", ImageStego.CHANNEL_RED));
+        assertEquals("green part", ImageStego.extract(raster, "KEY", ImageStego.CHANNEL_GREEN));
+        assertEquals("blue part", ImageStego.extract(raster, "KEY", ImageStego.CHANNEL_BLUE));
+    }
+
+    @Test
+    public void emptyMessageRoundTrips() {
+        BufferedImage img = TestImages.noise(64, 64, 2);
+        ImageStego.embed(img, "", "KEY", ImageStego.CHANNEL_BLUE);
+        assertTrue(ImageStego.probe(StegoRaster.of(img), "KEY", ImageStego.CHANNEL_BLUE));
+        assertEquals("", ImageStego.extract(StegoRaster.of(img), "KEY", ImageStego.CHANNEL_BLUE));
+    }
+
+    @Test
+    public void probeRejectsCleanImagesAndWrongKeys() {
+        BufferedImage img = TestImages.noise(256, 256, 3);
+        StegoRaster raster = StegoRaster.of(img);
+        assertFalse(ImageStego.probe(raster, "KEY", ImageStego.CHANNEL_GREEN));
+
+        ImageStego.embed(img, "hidden", "KEY", ImageStego.CHANNEL_GREEN);
+        assertTrue(ImageStego.probe(raster, "KEY", ImageStego.CHANNEL_GREEN));
+        assertFalse(ImageStego.probe(raster, "OTHER", ImageStego.CHANNEL_GREEN));
+        assertFalse(ImageStego.probe(raster, "KEY", ImageStego.CHANNEL_RED));
+        assertEquals("", ImageStego.extract(raster, "OTHER", ImageStego.CHANNEL_GREEN));
+    }
+
+    @Test
+    public void probeReadsOnlyTheFirstBlocks() {
+        BufferedImage img = TestImages.noise(1024, 1024, 4);
+        StegoRaster raster = StegoRaster.of(img);
+        StegoMetrics.get().reset();
+        for (int i = 0; i < 100; i++) {
+            assertFalse(ImageStego.probe(raster, "KEY" + i, ImageStego.CHANNEL_BLUE));
+        }
+        // 16384 blocks per image; a non-carrier is rejected within the header
+        assertTrue(StegoMetrics.get().getBlocksScanned() <= 100 * PayloadHeader.SIZE * 4);
+    }
+
+    @Test
+    public void corruptedPayloadFailsChecksum() {
+        BufferedImage img = TestImages.noise(128, 128, 5);
+        byte[] data = PayloadHeader.wrap("KEY", "checksummed payload".getBytes());
+        data[PayloadHeader.SIZE + 3] ^= 0x01;
+        ImageStego.embedPayload(StegoRaster.of(img), data, "KEY", ImageStego.CHANNEL_RED, () -> false);
+
+        assertTrue(ImageStego.probe(StegoRaster.of(img), "KEY", ImageStego.CHANNEL_RED));
+        assertEquals("", ImageStego.extract(StegoRaster.of(img), "KEY", ImageStego.CHANNEL_RED));
+    }
+
+    @Test
+    public void largePayloadsRoundTripThroughParallelPath() {
+        BufferedImage img = TestImages.noise(512, 512, 6);
+        StringBuilder sb = new StringBuilder();
+        Random rnd = new Random(6);
+        while (sb.length() < 3000) sb.append((char) ('a' + rnd.nextInt(26)));
+        String message = sb.toString();
+
+        ImageStego.embed(img, message, "KEY", ImageStego.CHANNEL_RED);
+        ImageStego.embed(img, message, "KEY", ImageStego.CHANNEL_BLUE);
+        assertEquals(message, ImageStego.extract(StegoRaster.of(img), "KEY", ImageStego.CHANNEL_RED));
+        assertEquals(message, ImageStego.extract(StegoRaster.of(img), "KEY", ImageStego.CHANNEL_BLUE));
+    }
+
+    @Test
+    public void updateRewritesOnlyTheChangedBlocks() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 300; i++) text.append("line ").append(i).append(' ');
+        String message = text.toString();
+        String edited = message.replace("line 150 ", "LINE 150 ");
+        BufferedImage img = TestImages.noise(512, 512, 4);
+        ImageStego.embed(img, message, "KEY", ImageStego.CHANNEL_BLUE);
+        StegoRaster raster = StegoRaster.of(img);
+        BufferedImage before = copy(img);
+
+        // At most the 4 changed message bytes and the 4 CRC bytes
+        int rewritten = ImageStego.update(raster, edited, "KEY", ImageStego.CHANNEL_BLUE);
+        assertTrue("rewrote " + rewritten + " blocks", rewritten > 0 && rewritten <= 8);
+        assertEquals(edited, ImageStego.extract(raster, "KEY", ImageStego.CHANNEL_BLUE));
+        assertTrue(changedBlocks(before, img) <= rewritten);
+
+        // Against the known old message, back to the original
+        assertTrue(ImageStego.update(raster, edited, message, "KEY", ImageStego.CHANNEL_BLUE) <= 8);
+        assertEquals(message, ImageStego.extract(raster, "KEY", ImageStego.CHANNEL_BLUE));
+    }
+
+    @Test
+    public void updateHandlesLengthChangesAndCleanImages() {
+        BufferedImage img = TestImages.noise(256, 256, 5);
+        StegoRaster raster = StegoRaster.of(img);
+        ImageStego.update(raster, "first version", "KEY", ImageStego.CHANNEL_GREEN);
+        assertEquals("first version", ImageStego.extract(raster, "KEY", ImageStego.CHANNEL_GREEN));
+        ImageStego.update(raster, "first version, now quite a bit longer", "KEY", ImageStego.CHANNEL_GREEN);
+        assertEquals("first version, now quite a bit longer", ImageStego.extract(raster, "KEY", ImageStego.CHANNEL_GREEN));
+        ImageStego.update(raster, "short", "KEY", ImageStego.CHANNEL_GREEN);
+        assertEquals("short", ImageStego.extract(raster, "KEY", ImageStego.CHANNEL_GREEN));
+
+        // A large payload takes the parallel path
+        Random rnd = new Random(6);
+        StringBuilder large = new StringBuilder();
+        for (int i = 0; i < 3000; i++) large.append((char) ('a' + rnd.nextInt(26)));
+        String message = large.toString();
+        BufferedImage big = TestImages.noise(640, 640, 7);
+        ImageStego.embed(big, message, "KEY", ImageStego.CHANNEL_BLUE);
+        String edited = message.substring(0, 2000) + "X" + message.substring(2001);
+        assertTrue(ImageStego.update(StegoRaster.of(big), edited, "KEY", ImageStego.CHANNEL_BLUE) <= 5);
+        assertEquals(edited, ImageStego.extract(StegoRaster.of(big), "KEY", ImageStego.CHANNEL_BLUE));
+    }
+
+    private static BufferedImage copy(BufferedImage img) {
+        BufferedImage copy = new BufferedImage(img.getWidth(), img.getHeight(), img.getType());
+        copy.setData(img.getData());
+        return copy;
+    }
+
+    private static int changedBlocks(BufferedImage a, BufferedImage b) {
+        int changed = 0;
+        for (int by = 0; by < a.getHeight() / 8; by++) {
+            for (int bx = 0; bx < a.getWidth() / 8; bx++) {
+                boolean differs = false;
+                for (int y = 0; y < 8 && !differs; y++) {
+                    for (int x = 0; x < 8 && !differs; x++) {
+                        differs = a.getRGB(bx * 8 + x, by * 8 + y) != b.getRGB(bx * 8 + x, by * 8 + y);
+                    }
+                }
+                if (differs) changed++;
+            }
+        }
+        return changed;
+    }
+
+    @Test
+    public void streamConcatenatesChannelsInOrder() throws Exception {
+        BufferedImage img = TestImages.noise(640, 640, 7);
+        StringBuilder sb = new StringBuilder();
+        Random rnd = new Random(7);
+        // More than one streaming chunk
+        while (sb.length() < 4500) sb.append((char) ('a' + rnd.nextInt(26)));
+        String head = sb.toString();
+
+        ImageStego.embed(img, head, "KEY", ImageStego.CHANNEL_RED);
+        ImageStego.embed(img, " tail \u00e9", "KEY", ImageStego.CHANNEL_BLUE);
+        // Nothing in GREEN: it contributes no bytes
+        try (InputStream in = ImageStego.openStream(StegoRaster.of(img), "KEY", 512,
+                ImageStego.CHANNEL_RED, ImageStego.CHANNEL_GREEN, ImageStego.CHANNEL_BLUE)) {
+            assertEquals(head + " tail \u00e9", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void streamReportsCorruptionAtTheEnd() throws Exception {
+        BufferedImage img = TestImages.noise(128, 128, 8);
+        byte[] data = PayloadHeader.wrap("KEY", "checksummed payload".getBytes());
+        data[PayloadHeader.SIZE + 3] ^= 0x01;
+        ImageStego.embedPayload(StegoRaster.of(img), data, "KEY", ImageStego.CHANNEL_RED, () -> false);
+
+        try (InputStream in = ImageStego.openStream(StegoRaster.of(img), "KEY", 512, ImageStego.CHANNEL_RED)) {
+            in.readAllBytes();
+            fail("expected checksum failure");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().contains("checksum"));
+        }
+    }
+}
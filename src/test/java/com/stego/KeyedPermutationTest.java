@@ -0,0 +1,38 @@
+package com.stego;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class KeyedPermutationTest {
+
+    @Test
+    public void isABijectionForAwkwardSizes() {
+        for (int size : new int[] {0, 1, 2, 3, 5, 64, 1000, 4097, 65537}) {
+            KeyedPermutation p = new KeyedPermutation(42, size);
+            boolean[] seen = new boolean[size];
+            for (int i = 0; i < size; i++) {
+                int v = p.get(i);
+                assertTrue(v >= 0 && v < size);
+                assertFalse("duplicate " + v + " for size " + size, seen[v]);
+                seen[v] = true;
+            }
+        }
+    }
+
+    @Test
+    public void dependsOnTheKey() {
+        KeyedPermutation a = new KeyedPermutation(ImageStego.seedFromKey("alpha"), 10000);
+        KeyedPermutation b = new KeyedPermutation(ImageStego.seedFromKey("beta"), 10000);
+        KeyedPermutation a2 = new KeyedPermutation(ImageStego.seedFromKey("alpha"), 10000);
+        int same = 0;
+        for (int i = 0; i < 10000; i++) {
+            assertEquals(a.get(i), a2.get(i));
+            if (a.get(i) == b.get(i)) same++;
+        }
+        // Two unrelated permutations agree on about one position
+        assertTrue("agree on " + same, same < 10);
+    }
+}
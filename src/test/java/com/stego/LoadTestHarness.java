@@ -0,0 +1,481 @@
+package com.stego;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.imageio.ImageIO;
+
+/**
+ * Load and soak test of the full {@link Main#send} / {@link ReceiverMain#receive} pipeline.
+ *
+ * Each worker thread runs round trips back to back in its own directory, with a synthetic noise
+ * cover and synthetic messages mixing plain words (Vigenère path) and high-entropy words (AES
+ * path). The harness reports send, receive and round-trip latency percentiles, throughput,
+ * allocation per round trip, GC time and retained heap growth, checks every decrypted message
+ * and every working directory for stray files, and compares the results to the LOADTEST_*
+ * thresholds of config.properties. Any threshold can be overridden on the command line, e.g.
+ * {@code --workers=8 --duration-seconds=600 --max-p99-ms=4000} for LOADTEST_WORKERS,
+ * LOADTEST_DURATION_SECONDS and LOADTEST_MAX_P99_MS. The exit code is 1 if a threshold is
+ * exceeded or a round trip fails.
+ *
+ * The harness lives in the test sources and is not shipped in the CLI jars; run it from the test
+ * class path, e.g. {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.stego.LoadTestHarness -Dexec.args="--workers=8"}.
+ */
+public class LoadTestHarness {
+
+    private static final String MESSAGE_FILE = "message.txt";
+    private static final String IMAGE_FILE = "image.png";
+    private static final String ENC_FILE = "encrypted_text.txt";
+    private static final String KEY_FILE = "keys.enc";
+    private static final String OUTPUT_IMAGE_FILE = "output.png";
+
+    // Everything a round trip may leave in its directory
+    private static final Set<String> EXPECTED_FILES = Set.of(MESSAGE_FILE, IMAGE_FILE, ENC_FILE, KEY_FILE, OUTPUT_IMAGE_FILE);
+
+    private static final PrintStream QUIET = new PrintStream(OutputStream.nullOutputStream());
+
+    public static void main(String[] args) {
+        try {
+            Settings settings = Settings.fromConfig();
+            for (String arg : args) settings.override(arg);
+            Path dir = Files.createTempDirectory("stego-load");
+            Result result = run(settings, dir, System.out);
+            System.exit(result.passed() ? 0 : 1);
+        } catch (Exception e) {
+            e.printStackTrace();
+            System.exit(2);
+        }
+    }
+
+    /**
+     * Runs the load test in subdirectories of {@code dir} and prints the report to {@code out}.
+     */
+    static Result run(Settings s, Path dir, PrintStream out) throws Exception {
+        out.println("--- Load Test: " + s.workers + " workers, "
+            + (s.durationSeconds > 0 ? s.durationSeconds + " s soak" : s.roundTrips + " round trips each")
+            + ", " + s.coverSize + "x" + s.coverSize + " covers, " + s.messageWords + " words ---");
+
+        List<Worker> workers = new ArrayList<>();
+        for (int i = 0; i < s.workers; i++) {
+            workers.add(new Worker(i, Files.createDirectories(dir.resolve("worker-" + i)), s));
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(s.workers, r -> {
+            Thread t = new Thread(r, "stego-load");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            // Warm-up: JIT, Kyber provider and the PNG codec, not counted
+            runAll(pool, workers, w -> w.warmUp());
+
+            MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+            System.gc();
+            long heapBefore = memory.getHeapMemoryUsage().getUsed();
+            long allocatedBefore = allocatedBytes();
+            long[] gcBefore = gcTotals();
+            long start = System.nanoTime();
+            long deadline = s.durationSeconds > 0 ? start + s.durationSeconds * 1_000_000_000L : Long.MAX_VALUE;
+
+            runAll(pool, workers, w -> w.measure(deadline));
+
+            long wallNanos = System.nanoTime() - start;
+            long[] gcAfter = gcTotals();
+            long allocatedAfter = allocatedBytes();
+            System.gc();
+            long heapAfter = memory.getHeapMemoryUsage().getUsed();
+
+            Result r = new Result();
+            for (Worker w : workers) {
+                r.send.add(w.send);
+                r.receive.add(w.receive);
+                r.roundTrip.add(w.roundTrip);
+                r.failures += w.failures;
+                r.strayFiles += w.strayFiles;
+            }
+            r.wallNanos = wallNanos;
+            r.allocatedBytes = allocatedBefore < 0 || allocatedAfter < 0 ? -1 : allocatedAfter - allocatedBefore;
+            r.gcCount = gcAfter[0] - gcBefore[0];
+            r.gcMillis = gcAfter[1] - gcBefore[1];
+            r.heapGrowth = heapAfter - heapBefore;
+            r.check(s);
+            r.print(out);
+            return r;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private interface Task {
+        void run(Worker w) throws Exception;
+    }
+
+    private static void runAll(ExecutorService pool, List<Worker> workers, Task task) throws Exception {
+        List<Future<?>> futures = new ArrayList<>();
+        for (Worker w : workers) {
+            futures.add(pool.submit(() -> {
+                task.run(w);
+                return null;
+            }));
+        }
+        for (Future<?> f : futures) f.get();
+    }
+
+    /**
+     * Heap allocated by all threads since JVM start, or -1 if the JVM does not track it.
+     */
+    private static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) threads;
+            if (hotspot.isThreadAllocatedMemorySupported() && hotspot.isThreadAllocatedMemoryEnabled()) {
+                return hotspot.getTotalThreadAllocatedBytes();
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return {collections, milliseconds} over all collectors
+     */
+    private static long[] gcTotals() {
+        long[] totals = new long[2];
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            totals[0] += Math.max(0, gc.getCollectionCount());
+            totals[1] += Math.max(0, gc.getCollectionTime());
+        }
+        return totals;
+    }
+
+    private static final class Worker {
+        private final int id;
+        private final Path dir;
+        private final Settings settings;
+        private final Random rnd;
+
+        final LatencyHistogram send = new LatencyHistogram();
+        final LatencyHistogram receive = new LatencyHistogram();
+        final LatencyHistogram roundTrip = new LatencyHistogram();
+        long failures;
+        long strayFiles;
+
+        Worker(int id, Path dir, Settings settings) throws Exception {
+            this.id = id;
+            this.dir = dir;
+            this.settings = settings;
+            this.rnd = new Random(id);
+            ImageIO.write(TestImages.noise(settings.coverSize, settings.coverSize, rnd), "png", dir.resolve(IMAGE_FILE).toFile());
+        }
+
+        void warmUp() throws Exception {
+            for (int i = 0; i < settings.warmUp; i++) roundTrip(false);
+        }
+
+        void measure(long deadline) {
+            for (int i = 0; settings.durationSeconds > 0 ? System.nanoTime() < deadline : i < settings.roundTrips; i++) {
+                try {
+                    roundTrip(true);
+                } catch (Exception e) {
+                    failures++;
+                    System.err.println("⚠️ Worker " + id + " round trip " + i + " failed: " + e);
+                }
+            }
+        }
+
+        private void roundTrip(boolean record) throws Exception {
+            String message = message(settings.messageWords, rnd);
+            Files.write(dir.resolve(MESSAGE_FILE), message.getBytes(StandardCharsets.UTF_8));
+
+            long t0 = System.nanoTime();
+            Main.send(dir.resolve(MESSAGE_FILE), dir.resolve(IMAGE_FILE), dir.resolve(ENC_FILE),
+                dir.resolve(KEY_FILE), dir.resolve(OUTPUT_IMAGE_FILE), QUIET);
+            long t1 = System.nanoTime();
+            String received = ReceiverMain.receive(dir.resolve(KEY_FILE), dir.resolve(OUTPUT_IMAGE_FILE), QUIET);
+            long t2 = System.nanoTime();
+
+            if (!record) return;
+            send.record(t1 - t0);
+            receive.record(t2 - t1);
+            roundTrip.record(t2 - t0);
+            if (!message.equals(received)) {
+                failures++;
+                System.err.println("⚠️ Worker " + id + " received a different message");
+            }
+            try (Stream<Path> files = Files.list(dir)) {
+                List<String> stray = files.map(p -> p.getFileName().toString())
+                    .filter(name -> !EXPECTED_FILES.contains(name))
+                    .collect(Collectors.toList());
+                if (!stray.isEmpty()) {
+                    strayFiles += stray.size();
+                    System.err.println("⚠️ Worker " + id + " found stray files: " + stray);
+                }
+            }
+        }
+    }
+
+    private static final String PLAIN = "abcdefghijklmnopqrstuvwxyz";
+    private static final String DENSE = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
+
+    /**
+     * Space-separated words; about one in four is long and high-entropy, so it is AES-encrypted.
+     */
+    static String message(int words, Random rnd) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) sb.append(' ');
+            boolean dense = rnd.nextInt(4) == 0;
+            String alphabet = dense ? DENSE : PLAIN;
+            int length = dense ? 12 + rnd.nextInt(12) : 2 + rnd.nextInt(6);
+            for (int j = 0; j < length; j++) sb.append(alphabet.charAt(rnd.nextInt(alphabet.length())));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Log-linear latency histogram: 32 linear sub-buckets per power of two microseconds, so
+     * percentiles are exact to about 3% at any scale in a fixed 15 KB array.
+     */
+    static final class LatencyHistogram {
+        private static final int SUB_BITS = 5;
+        private static final int SUB_COUNT = 1 << SUB_BITS;
+
+        private final long[] counts = new long[(64 - SUB_BITS + 1) * SUB_COUNT];
+        private long total;
+        private long sumMicros;
+        private long maxMicros;
+
+        void record(long nanos) {
+            long micros = Math.max(0, nanos / 1000);
+            counts[index(micros)]++;
+            total++;
+            sumMicros += micros;
+            maxMicros = Math.max(maxMicros, micros);
+        }
+
+        void add(LatencyHistogram other) {
+            for (int i = 0; i < counts.length; i++) counts[i] += other.counts[i];
+            total += other.total;
+            sumMicros += other.sumMicros;
+            maxMicros = Math.max(maxMicros, other.maxMicros);
+        }
+
+        long count() {
+            return total;
+        }
+
+        double meanMillis() {
+            return total == 0 ? 0 : sumMicros / 1000.0 / total;
+        }
+
+        double maxMillis() {
+            return maxMicros / 1000.0;
+        }
+
+        /**
+         * @param p Percentile in (0, 100]
+         * @return Upper bound of the bucket holding the percentile, in milliseconds (0 if empty)
+         */
+        double percentileMillis(double p) {
+            if (total == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(p / 100 * total));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) return Math.min(upperBound(i), maxMicros) / 1000.0;
+            }
+            return maxMillis();
+        }
+
+        static int index(long micros) {
+            if (micros < SUB_COUNT) return (int) micros;
+            int exp = 63 - Long.numberOfLeadingZeros(micros);
+            int sub = (int) (micros >>> (exp - SUB_BITS)) & (SUB_COUNT - 1);
+            return (exp - SUB_BITS + 1) * SUB_COUNT + sub;
+        }
+
+        static long upperBound(int index) {
+            if (index < SUB_COUNT) return index;
+            int exp = index / SUB_COUNT + SUB_BITS - 1;
+            long lower = (long) (SUB_COUNT + index % SUB_COUNT) << (exp - SUB_BITS);
+            return lower + (1L << (exp - SUB_BITS)) - 1;
+        }
+    }
+
+    /**
+     * Workload and regression thresholds. A threshold of 0 is not checked.
+     */
+    static final class Settings {
+        int workers;
+        int roundTrips;
+        int durationSeconds;
+        int warmUp;
+        int coverSize;
+        int messageWords;
+        int maxP50Ms;
+        int maxP99Ms;
+        int maxP999Ms;
+        int minRoundTripsPerMinute;
+        int maxAllocMbPerRoundTrip;
+        int maxHeapGrowthMb;
+        int maxGcPercent;
+
+        static Settings fromConfig() {
+            Settings s = new Settings();
+            for (Map.Entry<String, Integer> e : s.values().entrySet()) {
+                s.set(e.getKey(), StegoConfig.getInt(e.getKey(), e.getValue()));
+            }
+            return s;
+        }
+
+        /**
+         * Defaults for a short run on a developer machine.
+         */
+        Settings() {
+            workers = Math.max(2, Runtime.getRuntime().availableProcessors());
+            roundTrips = 20;
+            warmUp = 2;
+            coverSize = 512;
+            messageWords = 200;
+        }
+
+        /**
+         * Applies a {@code --name=value} argument, e.g. {@code --max-p99-ms=500} for LOADTEST_MAX_P99_MS.
+         */
+        void override(String arg) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) throw new IllegalArgumentException("Expected --name=value: " + arg);
+            String key = "LOADTEST_" + arg.substring(2, eq).toUpperCase().replace('-', '_');
+            if (!values().containsKey(key)) throw new IllegalArgumentException("Unknown setting: " + arg);
+            set(key, Integer.parseInt(arg.substring(eq + 1)));
+        }
+
+        private Map<String, Integer> values() {
+            Map<String, Integer> v = new HashMap<>();
+            v.put("LOADTEST_WORKERS", workers);
+            v.put("LOADTEST_ROUND_TRIPS", roundTrips);
+            v.put("LOADTEST_DURATION_SECONDS", durationSeconds);
+            v.put("LOADTEST_WARM_UP", warmUp);
+            v.put("LOADTEST_COVER_SIZE", coverSize);
+            v.put("LOADTEST_MESSAGE_WORDS", messageWords);
+            v.put("LOADTEST_MAX_P50_MS", maxP50Ms);
+            v.put("LOADTEST_MAX_P99_MS", maxP99Ms);
+            v.put("LOADTEST_MAX_P999_MS", maxP999Ms);
+            v.put("LOADTEST_MIN_ROUND_TRIPS_PER_MINUTE", minRoundTripsPerMinute);
+            v.put("LOADTEST_MAX_ALLOC_MB_PER_ROUND_TRIP", maxAllocMbPerRoundTrip);
+            v.put("LOADTEST_MAX_HEAP_GROWTH_MB", maxHeapGrowthMb);
+            v.put("LOADTEST_MAX_GC_PERCENT", maxGcPercent);
+            return v;
+        }
+
+        private void set(String key, int value) {
+            switch (key) {
+                case "LOADTEST_WORKERS": workers = Math.max(1, value); break;
+                case "LOADTEST_ROUND_TRIPS": roundTrips = value; break;
+                case "LOADTEST_DURATION_SECONDS": durationSeconds = value; break;
+                case "LOADTEST_WARM_UP": warmUp = value; break;
+                case "LOADTEST_COVER_SIZE": coverSize = value; break;
+                case "LOADTEST_MESSAGE_WORDS": messageWords = Math.max(1, value); break;
+                case "LOADTEST_MAX_P50_MS": maxP50Ms = value; break;
+                case "LOADTEST_MAX_P99_MS": maxP99Ms = value; break;
+                case "LOADTEST_MAX_P999_MS": maxP999Ms = value; break;
+                case "LOADTEST_MIN_ROUND_TRIPS_PER_MINUTE": minRoundTripsPerMinute = value; break;
+                case "LOADTEST_MAX_ALLOC_MB_PER_ROUND_TRIP": maxAllocMbPerRoundTrip = value; break;
+                case "LOADTEST_MAX_HEAP_GROWTH_MB": maxHeapGrowthMb = value; break;
+                case "LOADTEST_MAX_GC_PERCENT": maxGcPercent = value; break;
+                default: throw new IllegalArgumentException("Unknown setting: " + key);
+            }
+        }
+    }
+
+    static final class Result {
+        final LatencyHistogram send = new LatencyHistogram();
+        final LatencyHistogram receive = new LatencyHistogram();
+        final LatencyHistogram roundTrip = new LatencyHistogram();
+        long failures;
+        long strayFiles;
+        long wallNanos;
+        long allocatedBytes;
+        long gcCount;
+        long gcMillis;
+        long heapGrowth;
+        final List<String> violations = new ArrayList<>();
+
+        boolean passed() {
+            return violations.isEmpty();
+        }
+
+        double roundTripsPerMinute() {
+            return wallNanos == 0 ? 0 : roundTrip.count() * 60e9 / wallNanos;
+        }
+
+        double allocMbPerRoundTrip() {
+            return allocatedBytes < 0 || roundTrip.count() == 0 ? -1 : allocatedBytes / (1024.0 * 1024.0) / roundTrip.count();
+        }
+
+        double gcPercent() {
+            return wallNanos == 0 ? 0 : gcMillis * 1e8 / wallNanos;
+        }
+
+        void check(Settings s) {
+            if (failures > 0) violations.add(failures + " round trips failed");
+            if (strayFiles > 0) violations.add(strayFiles + " stray files in working directories");
+            max("p50", roundTrip.percentileMillis(50), s.maxP50Ms);
+            max("p99", roundTrip.percentileMillis(99), s.maxP99Ms);
+            max("p99.9", roundTrip.percentileMillis(99.9), s.maxP999Ms);
+            if (s.minRoundTripsPerMinute > 0 && roundTripsPerMinute() < s.minRoundTripsPerMinute) {
+                violations.add(String.format("throughput %.1f/min < %d/min", roundTripsPerMinute(), s.minRoundTripsPerMinute));
+            }
+            if (allocMbPerRoundTrip() >= 0) {
+                max("allocation MB per round trip", allocMbPerRoundTrip(), s.maxAllocMbPerRoundTrip);
+            }
+            max("heap growth MB", heapGrowth / (1024.0 * 1024.0), s.maxHeapGrowthMb);
+            max("GC time %", gcPercent(), s.maxGcPercent);
+        }
+
+        private void max(String name, double value, int limit) {
+            if (limit > 0 && value > limit) violations.add(String.format("%s %.1f > %d", name, value, limit));
+        }
+
+        void print(PrintStream out) {
+            out.println(String.format("%-12s %8s %10s %10s %10s %10s %10s", "", "count", "mean ms", "p50 ms", "p99 ms", "p99.9 ms", "max ms"));
+            row(out, "send", send);
+            row(out, "receive", receive);
+            row(out, "round trip", roundTrip);
+            out.println(String.format("Throughput: %.1f round trips/min over %.1f s", roundTripsPerMinute(), wallNanos / 1e9));
+            out.println(allocatedBytes < 0 ? "Allocation: not measured by this JVM"
+                : String.format("Allocation: %.1f MB per round trip (%.1f MB/s)", allocMbPerRoundTrip(),
+                    allocatedBytes / (1024.0 * 1024.0) / (wallNanos / 1e9)));
+            out.println(String.format("GC: %d collections, %d ms (%.1f%% of wall time); heap growth after GC: %.1f MB",
+                gcCount, gcMillis, gcPercent(), heapGrowth / (1024.0 * 1024.0)));
+            out.println("Failures: " + failures + ", stray files: " + strayFiles);
+            if (passed()) {
+                out.println("\n✅ PASSED");
+            } else {
+                out.println("\n❌ FAILED");
+                for (String v : violations) out.println("  - " + v);
+            }
+        }
+
+        private static void row(PrintStream out, String name, LatencyHistogram h) {
+            out.println(String.format("%-12s %8d %10.1f %10.1f %10.1f %10.1f %10.1f", name, h.count(), h.meanMillis(),
+                h.percentileMillis(50), h.percentileMillis(99), h.percentileMillis(99.9), h.maxMillis()));
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.stego;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class LoadTestHarnessTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void histogramPercentilesAreWithinBucketPrecision() {
+        LoadTestHarness.LatencyHistogram h = new LoadTestHarness.LatencyHistogram();
+        for (int ms = 1; ms <= 1000; ms++) h.record(ms * 1_000_000L);
+        assertEquals(1000, h.count());
+        assertEquals(500, h.percentileMillis(50), 500 * 0.04);
+        assertEquals(990, h.percentileMillis(99), 990 * 0.04);
+        assertEquals(1000, h.percentileMillis(99.9), 1000 * 0.04);
+        assertEquals(1000, h.percentileMillis(100), 0);
+        for (long micros : new long[] {0, 31, 32, 33, 1000, 123_456_789}) {
+            int i = LoadTestHarness.LatencyHistogram.index(micros);
+            assertTrue(micros <= LoadTestHarness.LatencyHistogram.upperBound(i));
+            assertTrue(i == 0 || micros > LoadTestHarness.LatencyHistogram.upperBound(i - 1));
+        }
+    }
+
+    @Test
+    public void concurrentRoundTripsPassAndThresholdsAreEnforced() throws Exception {
+        LoadTestHarness.Settings s = new LoadTestHarness.Settings();
+        for (String arg : new String[] {"--workers=2", "--round-trips=2", "--warm-up=1", "--cover-size=128", "--message-words=30"}) {
+            s.override(arg);
+        }
+        ByteArrayOutputStream report = new ByteArrayOutputStream();
+        LoadTestHarness.Result result = LoadTestHarness.run(s, tmp.getRoot().toPath(), new PrintStream(report, true, "UTF-8"));
+        assertTrue(report.toString(StandardCharsets.UTF_8.name()), result.passed());
+        assertEquals(4, result.roundTrip.count());
+        assertEquals(0, result.failures);
+        assertEquals(0, result.strayFiles);
+
+        // A throughput nobody can reach
+        s.override("--min-round-trips-per-minute=1000000000");
+        result.check(s);
+        assertEquals(1, result.violations.size());
+    }
+}
@@ -0,0 +1,65 @@
+package com.stego;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class LzCodecTest {
+
+    private static byte[] roundTrip(byte[] data) throws IOException {
+        InputStream in = LzCodec.decompress(new ByteArrayInputStream(LzCodec.compress(data)));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        // Odd-sized reads, so copies straddle block boundaries
+        byte[] buf = new byte[777];
+        for (int n; (n = in.read(buf)) >= 0; ) out.write(buf, 0, n);
+        return out.toByteArray();
+    }
+
+    @Test
+    public void roundTripsAcrossBlocksAndMatchKinds() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 4000; i++) {
+            text.append("Rendezvous at gate ").append(i % 7).append(", bring the keys. ");
+        }
+        byte[] redundant = text.toString().getBytes(StandardCharsets.UTF_8);
+        byte[] random = new byte[70000];
+        new Random(1).nextBytes(random);
+        // Long runs overlap their own output and need length extension bytes
+        byte[] runs = new byte[200000];
+        Arrays.fill(runs, 0, 100000, (byte) 'a');
+        Arrays.fill(runs, 100000, 200000, (byte) 'b');
+
+        for (byte[] data : new byte[][] {new byte[0], "abc".getBytes(), redundant, random, runs}) {
+            assertArrayEquals(data, roundTrip(data));
+        }
+        assertTrue(LzCodec.compress(redundant).length < redundant.length / 5);
+        assertTrue(LzCodec.compress(runs).length < 2000);
+    }
+
+    @Test
+    public void corruptInputIsAnIOException() throws Exception {
+        byte[] data = "attack at dawn, attack at dusk, attack at dawn".getBytes(StandardCharsets.UTF_8);
+        byte[] packed = LzCodec.compress(data);
+        byte[] truncated = Arrays.copyOf(packed, packed.length - 3);
+        byte[] badOffset = packed.clone();
+        for (int i = 2; i < badOffset.length; i++) badOffset[i] = (byte) 0xF0;
+
+        for (byte[] corrupt : new byte[][] {truncated, badOffset}) {
+            try {
+                LzCodec.decompress(new ByteArrayInputStream(corrupt)).readAllBytes();
+                fail("Corrupt LZ data decoded");
+            } catch (IOException expected) {
+            }
+        }
+    }
+}
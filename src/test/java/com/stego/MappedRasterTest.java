@@ -0,0 +1,96 @@
+package com.stego;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+import javax.imageio.ImageIO;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MappedRasterTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private static BufferedImage texture(int width, int height) {
+        BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+        Random rnd = new Random(11);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                img.setRGB(x, y, (rnd.nextInt(256) << 16) | (((x * 7) & 0xFF) << 8) | rnd.nextInt(256));
+            }
+        }
+        return img;
+    }
+
+    private File writePpm(BufferedImage img) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(("P6\n# test cover\n" + img.getWidth() + " " + img.getHeight() + "\n255\n").getBytes(StandardCharsets.US_ASCII));
+        for (int y = 0; y < img.getHeight(); y++) {
+            for (int x = 0; x < img.getWidth(); x++) {
+                int rgb = img.getRGB(x, y);
+                out.write((rgb >> 16) & 0xFF);
+                out.write((rgb >> 8) & 0xFF);
+                out.write(rgb & 0xFF);
+            }
+        }
+        File f = tmp.newFile("cover.ppm");
+        Files.write(f.toPath(), out.toByteArray());
+        return f;
+    }
+
+    @Test
+    public void bmpSamplesMatchImageIO() throws Exception {
+        BufferedImage img = texture(37, 21); // odd width exercises row padding
+        File bmp = tmp.newFile("cover.bmp");
+        ImageIO.write(img, "bmp", bmp);
+
+        try (MappedRaster raster = MappedRaster.open(bmp.toPath(), false)) {
+            assertEquals(37, raster.getWidth());
+            assertEquals(21, raster.getHeight());
+            for (int y = 0; y < 21; y++) {
+                for (int x = 0; x < 37; x++) {
+                    int rgb = img.getRGB(x, y);
+                    assertEquals((rgb >> 16) & 0xFF, raster.getSample(x, y, StegoRaster.RED));
+                    assertEquals((rgb >> 8) & 0xFF, raster.getSample(x, y, StegoRaster.GREEN));
+                    assertEquals(rgb & 0xFF, raster.getSample(x, y, StegoRaster.BLUE));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void ppmRoundTripThroughMappedFile() throws Exception {
+        File cover = writePpm(texture(160, 120));
+        File stego = new File(tmp.getRoot(), "stego.ppm");
+        long coverSize = cover.length();
+
+        ImageStego.encode(cover.getPath(), stego.getPath(), "mapped payload", "MAPKEY", ImageStego.CHANNEL_RED);
+
+        // Written back as the same raw format, not re-encoded
+        assertEquals(coverSize, stego.length());
+        assertTrue(MappedRaster.isSupported(stego.toPath()));
+        assertEquals("mapped payload", ImageStego.decode(stego.getPath(), "MAPKEY", ImageStego.CHANNEL_RED));
+    }
+
+    @Test
+    public void bmpRoundTripThroughMappedFile() throws Exception {
+        File cover = tmp.newFile("cover2.bmp");
+        ImageIO.write(texture(128, 96), "bmp", cover);
+        File stego = new File(tmp.getRoot(), "stego.bmp");
+
+        ImageStego.encode(cover.getPath(), stego.getPath(), "bmp payload", "MAPKEY");
+
+        assertEquals("bmp payload", ImageStego.decode(stego.getPath(), "MAPKEY"));
+        // Still readable by standard decoders
+        assertEquals(128, ImageIO.read(stego).getWidth());
+    }
+}
@@ -0,0 +1,71 @@
+package com.stego;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Random;
+import javax.imageio.ImageIO;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class OffHeapRasterTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private static BufferedImage texture(int width, int height, int type) {
+        BufferedImage img = new BufferedImage(width, height, type);
+        Random rnd = new Random(13);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                img.setRGB(x, y, rnd.nextInt());
+            }
+        }
+        return img;
+    }
+
+    @Test
+    public void samplesAndPngMatchHeapImage() throws Exception {
+        BufferedImage img = texture(45, 19, BufferedImage.TYPE_INT_ARGB);
+        OffHeapRaster raster = OffHeapRaster.copyOf(img);
+        assertEquals(4, raster.getBands());
+        for (int y = 0; y < 19; y++) {
+            for (int x = 0; x < 45; x++) {
+                int rgb = img.getRGB(x, y);
+                assertEquals((rgb >> 16) & 0xFF, raster.getSample(x, y, StegoRaster.RED));
+                assertEquals((rgb >> 8) & 0xFF, raster.getSample(x, y, StegoRaster.GREEN));
+                assertEquals(rgb & 0xFF, raster.getSample(x, y, StegoRaster.BLUE));
+            }
+        }
+
+        File heap = tmp.newFile("heap.png");
+        File offHeap = tmp.newFile("offheap.png");
+        PngWriter writer = new PngWriter(6, PngWriter.Filter.ADAPTIVE, 3);
+        writer.write(img, heap);
+        writer.write(raster, offHeap);
+        assertArrayEquals(Files.readAllBytes(heap.toPath()), Files.readAllBytes(offHeap.toPath()));
+    }
+
+    @Test
+    public void embeddingOffHeapMatchesHeap() throws Exception {
+        BufferedImage img = texture(256, 192, BufferedImage.TYPE_INT_RGB);
+        OffHeapRaster raster = OffHeapRaster.copyOf(img);
+        ImageStego.embed(StegoRaster.of(img), "same bits either way", "KEY", ImageStego.CHANNEL_GREEN);
+        ImageStego.embed(raster, "same bits either way", "KEY", ImageStego.CHANNEL_GREEN);
+
+        File out = tmp.newFile("stego.png");
+        PngWriter.getDefault().write(raster, out);
+        BufferedImage decoded = ImageIO.read(out);
+        for (int y = 0; y < 192; y++) {
+            for (int x = 0; x < 256; x++) {
+                assertEquals(img.getRGB(x, y), decoded.getRGB(x, y));
+            }
+        }
+        assertEquals("same bits either way", ImageStego.extract(raster, "KEY", ImageStego.CHANNEL_GREEN));
+    }
+}
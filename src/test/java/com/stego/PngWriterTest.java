@@ -0,0 +1,68 @@
+package com.stego;
+
+import static org.junit.Assert.assertEquals;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.Random;
+import javax.imageio.ImageIO;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PngWriterTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private static BufferedImage noise(int width, int height, int type) {
+        BufferedImage img = new BufferedImage(width, height, type);
+        Random rnd = new Random(7);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                // Mix of smooth gradient and noise so every filter type gets exercised
+                int v = (x + y) & 0xFF;
+                int argb = (rnd.nextInt(256) << 24) | (v << 16) | (rnd.nextInt(256) << 8) | ((v * 3) & 0xFF);
+                img.setRGB(x, y, argb);
+            }
+        }
+        return img;
+    }
+
+    private void assertSamePixels(BufferedImage expected, File png) throws Exception {
+        BufferedImage actual = ImageIO.read(png);
+        assertEquals(expected.getWidth(), actual.getWidth());
+        assertEquals(expected.getHeight(), actual.getHeight());
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                assertEquals("pixel " + x + "," + y, expected.getRGB(x, y), actual.getRGB(x, y));
+            }
+        }
+    }
+
+    @Test
+    public void everyFilterAndParallelismDecodesLosslessly() throws Exception {
+        BufferedImage img = noise(301, 517, BufferedImage.TYPE_INT_RGB);
+        for (PngWriter.Filter filter : PngWriter.Filter.values()) {
+            for (int parallelism : new int[] {1, 4}) {
+                File out = new File(tmp.getRoot(), filter + "_" + parallelism + ".png");
+                new PngWriter(filter == PngWriter.Filter.NONE ? 0 : 6, filter, parallelism).write(img, out);
+                assertSamePixels(img, out);
+            }
+        }
+    }
+
+    @Test
+    public void alphaAndGreyscaleImages() throws Exception {
+        BufferedImage argb = noise(64, 900, BufferedImage.TYPE_INT_ARGB);
+        File out = new File(tmp.getRoot(), "argb.png");
+        new PngWriter(1, PngWriter.Filter.PAETH, 3).write(argb, out);
+        assertSamePixels(argb, out);
+
+        BufferedImage grey = noise(640, 480, BufferedImage.TYPE_BYTE_GRAY);
+        out = new File(tmp.getRoot(), "grey.png");
+        new PngWriter(9, PngWriter.Filter.ADAPTIVE, 8).write(grey, out);
+        assertSamePixels(grey, out);
+    }
+}
@@ -0,0 +1,83 @@
+package com.stego;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import javax.imageio.ImageIO;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ShardedStegoTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private static byte[] payload(int size) {
+        byte[] data = new byte[size];
+        new Random(99).nextBytes(data);
+        return data;
+    }
+
+    @Test
+    public void payloadLargerThanAnySingleCoverRoundTrips() throws Exception {
+        List<String> covers = new ArrayList<>();
+        List<String> outputs = new ArrayList<>();
+        int[] sizes = {96, 160, 128, 64};
+        for (int i = 0; i < sizes.length; i++) {
+            File cover = tmp.newFile("cover" + i + ".png");
+            ImageIO.write(TestImages.noise(sizes[i], sizes[i], i), "png", cover);
+            covers.add(cover.getPath());
+            outputs.add(new File(tmp.getRoot(), "stego" + i + ".png").getPath());
+        }
+        // 160x160 holds at most 400 bytes on its own
+        byte[] doc = payload(700);
+
+        ShardedStego.encode(covers, outputs, doc, "SHARDKEY", ImageStego.CHANNEL_BLUE);
+
+        // Order does not matter and unrelated images are skipped
+        List<String> shuffled = new ArrayList<>(outputs);
+        shuffled.add(covers.get(0));
+        Collections.shuffle(shuffled, new Random(1));
+        assertArrayEquals(doc, ShardedStego.decode(shuffled, "SHARDKEY", ImageStego.CHANNEL_BLUE));
+
+        // A shard is not a plain message
+        assertEquals("", ImageStego.decode(outputs.get(0), "SHARDKEY", ImageStego.CHANNEL_BLUE));
+    }
+
+    @Test
+    public void sharesFollowCapacity() {
+        List<byte[]> shards = ShardedStego.split(payload(1000), new int[] {120, 620, 320}, "KEY");
+        int overhead = PayloadHeader.SIZE + ShardedStego.SHARD_HEADER_SIZE;
+        assertEquals(100 + overhead, shards.get(0).length);
+        assertEquals(600 + overhead, shards.get(1).length);
+        assertEquals(300 + overhead, shards.get(2).length);
+    }
+
+    @Test
+    public void missingShardIsReported() {
+        List<BufferedImage> images = Arrays.asList(TestImages.noise(128, 128, 1), TestImages.noise(128, 128, 2), TestImages.noise(128, 128, 3));
+        List<StegoRaster> rasters = new ArrayList<>();
+        for (BufferedImage img : images) rasters.add(StegoRaster.of(img));
+        byte[] doc = payload(500);
+        ShardedStego.embed(rasters, doc, "KEY", ImageStego.CHANNEL_GREEN);
+
+        assertArrayEquals(doc, ShardedStego.extract(rasters, "KEY", ImageStego.CHANNEL_GREEN));
+        try {
+            ShardedStego.extract(rasters.subList(0, 2), "KEY", ImageStego.CHANNEL_GREEN);
+            fail("expected missing shard");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Missing shard 2"));
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.stego;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+import javax.imageio.ImageIO;
+
+/**
+ * Prepares and checks the class data sharing (AppCDS) archives of the {@code stego-encoder} and
+ * {@code stego-decoder} jars; run from the test classes by the {@code startup} Maven profile, so
+ * it is not part of either jar.
+ *
+ * <ul>
+ *   <li>{@code prepare <dir>}: writes the synthetic message and cover a {@link Main} run reads
+ *       into {@code dir}. The profile then runs each jar there under
+ *       {@code -XX:ArchiveClassesAtExit}, leaving an archive of the classes a real run of that
+ *       jar loads, on exactly the class path it is launched with.</li>
+ *   <li>{@code measure <encoder.jar> <decoder.jar> [--runs=N]}: launches each jar the way a
+ *       user does, N times without and N times with its archive ({@code <jar name>.jsa} next to
+ *       the jar), and reports the median time to the first line of output and to exit. The
+ *       exit code is 1 if a run fails or an archive cannot be mapped.</li>
+ * </ul>
+ */
+public final class StartupProbe {
+
+    private static final int COVER_SIZE = 512;
+    private static final int MESSAGE_WORDS = 200;
+    private static final int DEFAULT_RUNS = 5;
+
+    private StartupProbe() {
+    }
+
+    public static void main(String[] args) {
+        try {
+            if (args.length == 2 && args[0].equals("prepare")) {
+                Files.createDirectories(Path.of(args[1]));
+                prepare(Path.of(args[1]));
+            } else if (args.length >= 3 && args[0].equals("measure")) {
+                int runs = DEFAULT_RUNS;
+                for (String arg : Arrays.copyOfRange(args, 3, args.length)) {
+                    if (!arg.startsWith("--runs=")) throw new IllegalArgumentException("Unknown option: " + arg);
+                    runs = Math.max(1, Integer.parseInt(arg.substring("--runs=".length())));
+                }
+                System.exit(measure(Path.of(args[1]), Path.of(args[2]), runs, System.out) ? 0 : 1);
+            } else {
+                System.err.println("Usage: StartupProbe prepare <dir> | measure <encoder.jar> <decoder.jar> [--runs=N]");
+                System.exit(2);
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            System.exit(2);
+        }
+    }
+
+    /**
+     * Writes the message and cover a {@link Main} run expects in its working directory.
+     */
+    private static void prepare(Path dir) throws IOException {
+        Random rnd = new Random(42);
+        Files.write(dir.resolve("message.txt"), LoadTestHarness.message(MESSAGE_WORDS, rnd).getBytes(StandardCharsets.UTF_8));
+        ImageIO.write(TestImages.noise(COVER_SIZE, COVER_SIZE, rnd), "png", dir.resolve("image.png").toFile());
+    }
+
+    /**
+     * @return Whether every run succeeded and both archives were usable
+     */
+    static boolean measure(Path encoderJar, Path decoderJar, int runs, PrintStream out) throws Exception {
+        out.println("--- Startup: " + runs + " runs each, " + COVER_SIZE + "x" + COVER_SIZE + " cover, " + MESSAGE_WORDS + " words ---");
+        out.println(String.format("%-22s %18s %12s", "", "first output ms", "exit ms"));
+        Path dir = Files.createTempDirectory("stego-startup");
+        boolean ok = true;
+        try {
+            prepare(dir);
+            // The decoder reads what the last encoder run wrote
+            for (Path jar : new Path[] {encoderJar, decoderJar}) {
+                String name = jar.getFileName().toString().replaceFirst("\\.jar$", "");
+                Path archive = jar.resolveSibling(name + ".jsa");
+                ok &= report(out, name, launch(dir, jar, null, runs));
+                if (!Files.exists(archive)) {
+                    out.println(String.format("%-22s %s", name + " + CDS", "no archive at " + archive));
+                    ok = false;
+                    continue;
+                }
+                // -Xshare:on fails instead of silently running without an archive it cannot map
+                if (launch(dir, jar, List.of("-Xshare:on", "-XX:SharedArchiveFile=" + archive), 1) == null) {
+                    out.println(String.format("%-22s %s", name + " + CDS", "archive not usable by this JVM or jar"));
+                    ok = false;
+                    continue;
+                }
+                ok &= report(out, name + " + CDS", launch(dir, jar, List.of("-XX:SharedArchiveFile=" + archive), runs));
+            }
+        } finally {
+            delete(dir);
+        }
+        return ok;
+    }
+
+    private static boolean report(PrintStream out, String name, long[][] times) {
+        if (times == null) {
+            out.println(String.format("%-22s %s", name, "FAILED"));
+            return false;
+        }
+        out.println(String.format("%-22s %18.0f %12.0f", name, medianMillis(times[0]), medianMillis(times[1])));
+        return true;
+    }
+
+    /**
+     * Runs {@code java [options] -jar jar} in {@code dir}.
+     *
+     * @return Nanoseconds to the first output byte and to exit, per run; null if a run failed.
+     *         Main and ReceiverMain print a stack trace and exit normally on errors, so that
+     *         counts as failure too
+     */
+    private static long[][] launch(Path dir, Path jar, List<String> options, int runs) throws Exception {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        if (options != null) command.addAll(options);
+        command.add("-jar");
+        command.add(jar.toAbsolutePath().toString());
+
+        long[][] times = new long[2][runs];
+        for (int i = 0; i < runs; i++) {
+            long start = System.nanoTime();
+            Process p = new ProcessBuilder(command).directory(dir.toFile()).redirectErrorStream(true).start();
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            try (InputStream in = p.getInputStream()) {
+                int first = in.read();
+                times[0][i] = System.nanoTime() - start;
+                if (first >= 0) in.transferTo(output);
+            }
+            int exit = p.waitFor();
+            times[1][i] = System.nanoTime() - start;
+            if (exit != 0 || output.toString(StandardCharsets.UTF_8).contains("Exception")) return null;
+        }
+        return times;
+    }
+
+    private static double medianMillis(long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2] / 1e6;
+    }
+
+    private static void delete(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.stego;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Test;
+
+public class StegoEngineTest {
+
+    private static final StegoEngine ROBUST = StegoEngine.builder()
+        .persistence(32)
+        .varianceThreshold(400)
+        .coefficients(new int[] {1, 2, 1, 2, 3, 1, 3, 2}, new int[] {1, 1, 2, 2, 1, 3, 2, 3})
+        .maskChannel(ImageStego.CHANNEL_GREEN)
+        .channels(ImageStego.CHANNEL_RED, ImageStego.CHANNEL_BLUE)
+        .build();
+
+    @Test
+    public void defaultEngineMatchesStaticApi() {
+        BufferedImage a = TestImages.noise(128, 96, 1);
+        BufferedImage b = TestImages.noise(128, 96, 1);
+        ImageStego.embed(a, "same", "KEY", ImageStego.CHANNEL_RED);
+        StegoEngine.getDefault().toBuilder().build().embed(StegoRaster.of(b), "same", "KEY", ImageStego.CHANNEL_RED);
+        for (int y = 0; y < 96; y++) {
+            for (int x = 0; x < 128; x++) {
+                assertEquals(a.getRGB(x, y), b.getRGB(x, y));
+            }
+        }
+        assertEquals(StegoEngine.getDefault(), StegoEngine.builder().build());
+    }
+
+    @Test
+    public void differentlyTunedEnginesRunConcurrently() {
+        List<CompletableFuture<Void>> jobs = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            int n = i;
+            StegoEngine engine = n % 2 == 0 ? ROBUST : StegoEngine.getDefault();
+            jobs.add(CompletableFuture.runAsync(() -> {
+                StegoRaster raster = StegoRaster.of(TestImages.noise(160, 160, n));
+                engine.embed(raster, "job " + n, "KEY", ImageStego.CHANNEL_BLUE);
+                assertEquals("job " + n, engine.extract(raster, "KEY", ImageStego.CHANNEL_BLUE));
+            }));
+        }
+        jobs.forEach(CompletableFuture::join);
+
+        StegoRaster raster = StegoRaster.of(TestImages.noise(160, 160, 9));
+        ROBUST.embed(raster, "tenant A", "KEY", ImageStego.CHANNEL_BLUE);
+        // Other carriers, other mask: the default engine finds no message
+        assertEquals("", ImageStego.extract(raster, "KEY", ImageStego.CHANNEL_BLUE));
+        assertNotEquals(StegoEngine.getDefault(), ROBUST);
+    }
+
+    /**
+     * Noise in the left two thirds, a smooth gradient in the rest.
+     */
+    private static BufferedImage halfTextured(int width, int height, long seed) {
+        BufferedImage img = TestImages.noise(width, height, seed);
+        for (int y = 0; y < height; y++) {
+            for (int x = width * 2 / 3; x < width; x++) {
+                int v = 64 + x * 128 / width;
+                img.setRGB(x, y, v << 16 | v << 8 | v);
+            }
+        }
+        return img;
+    }
+
+    @Test
+    public void maskScoresMatchBetweenBlockAndRasterPasses() {
+        StegoRaster raster = StegoRaster.of(halfTextured(72, 40, 5));
+        double[] samples = new double[64];
+        for (TextureMask mask : TextureMask.values()) {
+            TextureMask.Scorer scorer = StegoEngine.builder().textureMask(mask).build().maskScorer();
+            double[] scores = new double[9 * 5];
+            scorer.scoreBlocks(raster, StegoRaster.GREEN, 0, 2, scores);
+            scorer.scoreBlocks(raster, StegoRaster.GREEN, 2, 5, scores);
+            for (int i = 0; i < scores.length; i++) {
+                for (int y = 0; y < 8; y++) {
+                    for (int x = 0; x < 8; x++) {
+                        samples[y * 8 + x] = raster.getSample((i % 9) * 8 + x, (i / 9) * 8 + y, StegoRaster.GREEN);
+                    }
+                }
+                assertEquals(mask + " block " + i, scorer.score(samples), scores[i], 0.0);
+            }
+            assertTrue(mask + " passes noise", scores[0] >= mask.defaultThreshold());
+            assertTrue(mask + " skips the gradient", scores[8] < mask.defaultThreshold());
+        }
+    }
+
+    @Test
+    public void pixelMasksRoundTripAndAreFoundFromTheHeader() {
+        // Large enough for the parallel path and the raster-order mask pass
+        String message = new String(new char[3000]).replace('\0', 'x') + "end";
+        for (TextureMask mask : TextureMask.values()) {
+            StegoEngine engine = StegoEngine.builder().textureMask(mask).build();
+            assertEquals(mask.defaultThreshold(), engine.getVarianceThreshold(), 0.0);
+            StegoRaster raster = StegoRaster.of(halfTextured(640, 640, 11));
+            int capacity = engine.capacity(raster);
+            assertTrue(mask + " capacity " + capacity, capacity > message.length() && capacity < 6400 * 3 / 4);
+            engine.embed(raster, message, "KEY", ImageStego.CHANNEL_BLUE);
+            assertEquals(mask.name(), message, engine.extract(raster, "KEY", ImageStego.CHANNEL_BLUE));
+            // Any other engine finds the mask in the header
+            assertEquals(mask.name(), message, ImageStego.extract(raster, "KEY", ImageStego.CHANNEL_BLUE));
+            assertTrue(ImageStego.probe(raster, "KEY", ImageStego.CHANNEL_BLUE));
+            assertEquals("", engine.extract(raster, "OTHER", ImageStego.CHANNEL_BLUE));
+        }
+        assertNotEquals(StegoEngine.getDefault(), StegoEngine.builder().textureMask(TextureMask.LOCAL_VARIANCE).build());
+    }
+
+    @Test
+    public void profilesPackMoreBytesPerBlockAndAreFoundFromTheHeader() throws Exception {
+        for (CoefficientProfile profile : CoefficientProfile.values()) {
+            StegoEngine engine = StegoEngine.builder().profile(profile).build();
+            int[] positions = engine.carrierPositions();
+            assertEquals(profile.bits(), positions.length);
+            assertEquals(profile.bits(), Arrays.stream(positions).distinct().count());
+            assertEquals(ImageStego.COEFF_X[0] * 8 + ImageStego.COEFF_Y[0], positions[0]);
+
+            StegoRaster raster = StegoRaster.of(TestImages.noise(512, 512, 17));
+            int capacity = engine.capacity(raster);
+            assertTrue(profile + " capacity " + capacity, capacity > 3900 * profile.bytesPerBlock());
+            // Past the parallel threshold in blocks, and not a whole number of blocks
+            StringBuilder sb = new StringBuilder();
+            Random rnd = new Random(profile.id());
+            while (sb.length() < 2700 * profile.bytesPerBlock() + 1) sb.append((char) ('a' + rnd.nextInt(26)));
+            String message = sb.toString();
+            engine.embed(raster, message, "KEY", ImageStego.CHANNEL_BLUE);
+            assertEquals(profile.name(), message, engine.extract(raster, "KEY", ImageStego.CHANNEL_BLUE));
+            // Any other engine finds the profile in the header, streamed or not
+            assertEquals(profile.name(), message, ImageStego.extract(raster, "KEY", ImageStego.CHANNEL_BLUE));
+            ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+            assertTrue(StegoEngine.getDefault().extract(raster, "KEY", ImageStego.CHANNEL_BLUE, streamed));
+            assertEquals(profile.name(), message, streamed.toString("UTF-8"));
+
+            String edited = "Z" + message.substring(1);
+            int rewritten = engine.update(raster, message, edited, "KEY", ImageStego.CHANNEL_BLUE);
+            // The checksum's four header blocks and the first message block
+            assertTrue(profile + " rewrote " + rewritten, rewritten <= Integer.BYTES + 1);
+            assertEquals(profile.name(), edited, ImageStego.extract(raster, "KEY", ImageStego.CHANNEL_BLUE));
+            assertEquals("", engine.extract(raster, "OTHER", ImageStego.CHANNEL_BLUE));
+        }
+        assertNotEquals(StegoEngine.getDefault(), StegoEngine.builder().profile(CoefficientProfile.BITS_16).build());
+    }
+
+    @Test
+    public void channelsOutsideTheEngineAreRejected() {
+        StegoRaster raster = StegoRaster.of(TestImages.noise(64, 64, 3));
+        try {
+            ROBUST.embed(raster, "x", "KEY", ImageStego.CHANNEL_GREEN);
+            fail("GREEN is not one of the engine's channels");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void builderValidatesParameters() {
+        assertInvalid(() -> StegoEngine.builder().persistence(1));
+        assertInvalid(() -> StegoEngine.builder().varianceThreshold(-1));
+        assertInvalid(() -> StegoEngine.builder().channels());
+        assertInvalid(() -> StegoEngine.builder().channels("RED", "red"));
+        assertInvalid(() -> StegoEngine.builder().maskChannel("ALPHA"));
+        assertInvalid(() -> StegoEngine.builder().coefficients(new int[] {0, 1, 1, 2, 2, 3, 3, 4}, new int[] {0, 0, 1, 1, 2, 2, 3, 3}));
+        assertInvalid(() -> StegoEngine.builder().coefficients(new int[] {1, 1, 1, 2, 2, 3, 3, 4}, new int[] {1, 1, 2, 1, 2, 2, 3, 3}));
+        assertInvalid(() -> StegoEngine.builder().coefficients(new int[] {1, 2}, new int[] {1, 2}));
+    }
+
+    private static void assertInvalid(Runnable r) {
+        try {
+            r.run();
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.stego;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+public class StegoMetricsTest {
+
+    @Test
+    public void embedAndExtractAreRecordedAndExposedOverJmx() throws Exception {
+        BufferedImage img = TestImages.noise(128, 128, 3);
+        StegoMetrics metrics = StegoMetrics.get();
+        long scannedBefore = metrics.getBlocksScanned();
+        long embedBefore = metrics.getStageCounts().get("BIT_EMBED");
+
+        ImageStego.embed(img, "metrics", "KEY", ImageStego.CHANNEL_GREEN);
+        assertEquals("metrics", ImageStego.extract(StegoRaster.of(img), "KEY", ImageStego.CHANNEL_GREEN));
+
+        // Encoder and decoder draw the same blocks of the 16x16 grid, up to the 18th carrier
+        long scanned = metrics.getBlocksScanned() - scannedBefore;
+        assertEquals(0, scanned % 2);
+        assertTrue(scanned >= 2 * 18 && scanned <= 2 * 256);
+        assertEquals(embedBefore + 18, (long) metrics.getStageCounts().get("BIT_EMBED"));
+        assertTrue(metrics.getCapacityUtilization() > 0);
+
+        ObjectName name = new ObjectName("com.stego:type=Metrics");
+        assertTrue(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+        Object counts = ManagementFactory.getPlatformMBeanServer().getAttribute(name, "StageCounts");
+        assertTrue(counts instanceof javax.management.openmbean.TabularData);
+        Map<String, Double> total = metrics.getStageTotalMillis();
+        assertTrue(total.get("MASK_SCAN") > 0);
+    }
+
+    @Test
+    public void spansRecordTheirCountAndTimedBodiesOneOperation() throws Exception {
+        StegoMetrics metrics = StegoMetrics.get();
+        long before = metrics.getStageCounts().get("JPEG_WRITE");
+
+        try (StegoMetrics.Span span = StegoMetrics.start(StegoMetrics.Stage.JPEG_WRITE)) {
+            span.count(5);
+        }
+        assertEquals("done", StegoMetrics.time(StegoMetrics.Stage.JPEG_WRITE, () -> "done"));
+        assertEquals(before + 6, (long) metrics.getStageCounts().get("JPEG_WRITE"));
+    }
+}
@@ -0,0 +1,33 @@
+package com.stego;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+/**
+ * Synthetic covers shared by the tests and test tools.
+ */
+final class TestImages {
+
+    private TestImages() {
+    }
+
+    /**
+     * Uniform RGB noise: every block is textured, so capacity is the whole block grid.
+     */
+    static BufferedImage noise(int width, int height, long seed) {
+        return noise(width, height, new Random(seed));
+    }
+
+    /**
+     * Uniform RGB noise drawn from {@code rnd}, for callers that make several images from one stream.
+     */
+    static BufferedImage noise(int width, int height, Random rnd) {
+        BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                img.setRGB(x, y, rnd.nextInt(0x1000000));
+            }
+        }
+        return img;
+    }
+}